@@ -0,0 +1,110 @@
+package com.example.orm.benchmark;
+
+import com.example.orm.OrmApplication;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Embedded PostgreSQL plus a non-web application context pointing at it. One environment is
+ * started per benchmark trial, so each parameter combination gets a fresh database.
+ */
+final class BenchmarkEnvironment implements AutoCloseable {
+
+    private final List<EmbeddedPostgres> databases;
+    private final ConfigurableApplicationContext context;
+
+    private BenchmarkEnvironment(List<EmbeddedPostgres> databases, ConfigurableApplicationContext context) {
+        this.databases = databases;
+        this.context = context;
+    }
+
+    static BenchmarkEnvironment start(int catalogSize, int warehouses, int productsPerWarehouse,
+                                      String... args) throws IOException {
+        return start(WebApplicationType.NONE, catalogSize, warehouses, productsPerWarehouse, args);
+    }
+
+    /**
+     * Like {@link #start(int, int, int, String...)} but with the embedded web server on a random port;
+     * {@code args} are passed through as additional command-line properties.
+     */
+    static BenchmarkEnvironment startWeb(int catalogSize, int warehouses, int productsPerWarehouse,
+                                         String... args) throws IOException {
+        return start(WebApplicationType.SERVLET, catalogSize, warehouses, productsPerWarehouse, args);
+    }
+
+    /**
+     * One embedded PostgreSQL per shard, with sharding enabled. Every shard gets the full catalog
+     * and the warehouses (and their links) whose IDs map to it.
+     */
+    static BenchmarkEnvironment startSharded(int shards, int catalogSize, int warehouses, int productsPerWarehouse,
+                                             String... args) throws IOException {
+        List<EmbeddedPostgres> databases = new ArrayList<>();
+        List<String> arguments = new ArrayList<>(List.of("--app.datasource.sharding.enabled=true"));
+        for (int shard = 0; shard < shards; shard++) {
+            EmbeddedPostgres postgres = EmbeddedPostgres.builder().start();
+            databases.add(postgres);
+            new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(postgres.getPostgresDatabase());
+            SyntheticDataGenerator.generateShard(postgres.getPostgresDatabase(), catalogSize, warehouses,
+                    productsPerWarehouse, shard, shards);
+            if (shard > 0) {
+                arguments.add("--app.datasource.shards[" + (shard - 1) + "].jdbc-url=" + postgres.getJdbcUrl("postgres", "postgres"));
+            }
+        }
+        arguments.addAll(List.of(args));
+        return start(WebApplicationType.NONE, databases, arguments);
+    }
+
+    private static BenchmarkEnvironment start(WebApplicationType webType, int catalogSize, int warehouses,
+                                              int productsPerWarehouse, String... args) throws IOException {
+        EmbeddedPostgres postgres = EmbeddedPostgres.builder().start();
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(postgres.getPostgresDatabase());
+        SyntheticDataGenerator.generate(postgres.getPostgresDatabase(), catalogSize, warehouses, productsPerWarehouse);
+        return start(webType, List.of(postgres), List.of(args));
+    }
+
+    private static BenchmarkEnvironment start(WebApplicationType webType, List<EmbeddedPostgres> databases,
+                                              List<String> args) {
+        // Command-line arguments, because builder default properties lose against application.properties
+        List<String> arguments = new ArrayList<>(List.of(
+                "--spring.datasource.url=" + databases.get(0).getJdbcUrl("postgres", "postgres"),
+                "--spring.datasource.username=postgres",
+                "--spring.datasource.password=",
+                "--spring.jpa.hibernate.ddl-auto=none",
+                "--spring.jpa.show-sql=false",
+                "--spring.sql.init.mode=never",
+                "--server.port=0",
+                "--logging.level.root=WARN",
+                "--logging.level.org.hibernate=WARN",
+                "--logging.level.org.springframework.web=WARN",
+                "--logging.level.com.example.orm=WARN"));
+        arguments.addAll(args);
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(OrmApplication.class)
+                .web(webType)
+                .run(arguments.toArray(String[]::new));
+        return new BenchmarkEnvironment(databases, context);
+    }
+
+    int port() {
+        return context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+    }
+
+    <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    @Override
+    public void close() throws IOException {
+        context.close();
+        for (EmbeddedPostgres postgres : databases) {
+            postgres.close();
+        }
+    }
+}
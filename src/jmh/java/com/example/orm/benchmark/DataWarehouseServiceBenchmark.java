@@ -0,0 +1,94 @@
+package com.example.orm.benchmark;
+
+import com.example.orm.dto.MembershipChangeDTO;
+import com.example.orm.dto.WarehouseWithProductsDTO;
+import com.example.orm.model.DataWarehouse;
+import com.example.orm.model.Product;
+import com.example.orm.service.DataWarehouseService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DataWarehouseServiceBenchmark {
+
+    private static final int WAREHOUSES = 200;
+    private static final int BATCH = 10;
+
+    @Param({"100000"})
+    public int catalogSize;
+
+    @Param({"10", "1000"})
+    public int productsPerWarehouse;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private BenchmarkEnvironment environment;
+    private DataWarehouseService warehouseService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        environment = BenchmarkEnvironment.start(catalogSize, WAREHOUSES, productsPerWarehouse);
+        warehouseService = environment.bean(DataWarehouseService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        environment.close();
+    }
+
+    @Benchmark
+    public List<Product> getProductsFromWarehouse() {
+        return warehouseService.getProductsFromWarehouse(randomWarehouseId());
+    }
+
+    @Benchmark
+    public DataWarehouse addProductsToWarehouse() {
+        return warehouseService.addProductsToWarehouse(randomWarehouseId(), randomProductIds());
+    }
+
+    // The link write alone, without reloading the warehouse graph that addProductsToWarehouse returns
+    @Benchmark
+    public MembershipChangeDTO linkProducts() {
+        return warehouseService.linkProducts(randomWarehouseId(), randomProductIds());
+    }
+
+    @Benchmark
+    public DataWarehouse createWarehouseWithNewProducts() {
+        long run = sequence.incrementAndGet();
+        WarehouseWithProductsDTO request = new WarehouseWithProductsDTO();
+        request.setWarehouseName("Benchmark " + run);
+        request.setWarehouseCity("Benchmark City");
+        List<Product> products = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            Product product = new Product();
+            product.setProductName("Benchmark product " + i);
+            product.setProductCategory("Benchmark");
+            product.setProductQuantity(i);
+            product.setProductUnit("pieces");
+            products.add(product);
+        }
+        request.setProducts(products);
+        return warehouseService.createWarehouseWithNewProducts(request);
+    }
+
+    private List<String> randomProductIds() {
+        List<String> productIds = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            productIds.add(SyntheticDataGenerator.productId(ThreadLocalRandom.current().nextInt(catalogSize)));
+        }
+        return productIds;
+    }
+
+    private long randomWarehouseId() {
+        return 1 + ThreadLocalRandom.current().nextInt(WAREHOUSES);
+    }
+}
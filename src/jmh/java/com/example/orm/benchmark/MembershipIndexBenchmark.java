@@ -0,0 +1,85 @@
+package com.example.orm.benchmark;
+
+import com.example.orm.dto.MembershipIndexStatsDTO;
+import com.example.orm.membership.WarehouseMembershipIndex;
+import com.example.orm.membership.WarehouseMembershipIndex.ProductIdPage;
+import com.example.orm.membership.WarehouseMembershipIndex.SetOperation;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup and set-operation latency of the membership bitmaps, filled directly without a database.
+ * Warehouses stock contiguous product ranges plus a random tail, as regional assortments tend to;
+ * the footprint per million links is printed once the index is built.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MembershipIndexBenchmark {
+
+    @Param({"1000000"})
+    public int products;
+
+    @Param({"500"})
+    public int warehouses;
+
+    @Param({"20000"})
+    public int productsPerWarehouse;
+
+    private WarehouseMembershipIndex index;
+    private String probeProduct;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        index = new WarehouseMembershipIndex(null, null, Optional.empty(), 0, false);
+        Random random = new Random(42);
+        for (long warehouse = 1; warehouse <= warehouses; warehouse++) {
+            int start = random.nextInt(products - productsPerWarehouse);
+            List<String> ids = new ArrayList<>(productsPerWarehouse);
+            for (int i = 0; i < productsPerWarehouse * 3 / 4; i++) {
+                ids.add(SyntheticDataGenerator.productId(start + i));
+            }
+            while (ids.size() < productsPerWarehouse) {
+                ids.add(SyntheticDataGenerator.productId(random.nextInt(products)));
+            }
+            index.link(warehouse, ids);
+        }
+        probeProduct = SyntheticDataGenerator.productId(products / 2);
+        MembershipIndexStatsDTO stats = index.stats();
+        System.out.printf("%nmembership index: %d links, %d bitmap bytes (%d per million links), %d dictionary bytes%n",
+                stats.getLinks(), stats.getBitmapBytes(), stats.getBitmapBytesPerMillionLinks(), stats.getDictionaryBytes());
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return index.contains(7L, probeProduct);
+    }
+
+    @Benchmark
+    public List<Long> warehousesOfProduct() {
+        return index.warehousesOf(probeProduct);
+    }
+
+    @Benchmark
+    public ProductIdPage intersectionOfThree() {
+        return index.combine(SetOperation.INTERSECTION, List.of(1L, 2L, 3L), null, 50);
+    }
+
+    @Benchmark
+    public ProductIdPage unionOfTen() {
+        return index.combine(SetOperation.UNION, List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L), null, 50);
+    }
+
+    @Benchmark
+    public ProductIdPage differenceOfTwo() {
+        return index.combine(SetOperation.DIFFERENCE, List.of(1L, 2L), null, 50);
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.orm.benchmark;
+
+import com.example.orm.dto.WarehouseWithProductsDTO;
+import com.example.orm.model.DataWarehouse;
+import com.example.orm.model.Product;
+import com.example.orm.service.DataWarehouseService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Product insert throughput of {@code createWarehouseWithNewProducts} with generated IDs, with
+ * JDBC batching off ({@code batchSize=1}, what an IDENTITY key forces) and on. Scores are
+ * products per second; requests are large enough that the commit does not dominate.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ProductInsertBenchmark {
+
+    private static final int PRODUCTS_PER_REQUEST = 1000;
+
+    @Param({"1", "50"})
+    public int batchSize;
+
+    @Param({"true"})
+    public boolean rewriteBatchedInserts;
+
+    private BenchmarkEnvironment environment;
+    private DataWarehouseService warehouseService;
+    private long run;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        environment = BenchmarkEnvironment.start(10_000, 10, 10,
+                "--spring.jpa.properties.hibernate.jdbc.batch_size=" + batchSize,
+                "--spring.datasource.hikari.data-source-properties.reWriteBatchedInserts=" + rewriteBatchedInserts);
+        warehouseService = environment.bean(DataWarehouseService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        environment.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PRODUCTS_PER_REQUEST)
+    public DataWarehouse createWarehouseWithNewProducts() {
+        WarehouseWithProductsDTO request = new WarehouseWithProductsDTO();
+        request.setWarehouseName("Insert benchmark " + ++run);
+        request.setWarehouseCity("Benchmark City");
+        List<Product> products = new ArrayList<>(PRODUCTS_PER_REQUEST);
+        for (int i = 0; i < PRODUCTS_PER_REQUEST; i++) {
+            Product product = new Product();
+            product.setProductName("Inserted product " + i);
+            product.setProductCategory("Benchmark");
+            product.setProductQuantity(i);
+            product.setProductUnit("pieces");
+            products.add(product);
+        }
+        request.setProducts(products);
+        return warehouseService.createWarehouseWithNewProducts(request);
+    }
+}
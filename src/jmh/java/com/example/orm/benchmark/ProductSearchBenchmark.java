@@ -0,0 +1,65 @@
+package com.example.orm.benchmark;
+
+import com.example.orm.dto.ProductSearchHitDTO;
+import com.example.orm.model.Product;
+import com.example.orm.search.ProductSearchIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query latency of the in-memory product search index, filled directly without a database.
+ * Names are drawn from a fixed vocabulary so term frequencies resemble a real catalog.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProductSearchBenchmark {
+
+    private static final String[] BRANDS = {"Samsung", "Sony", "Dell", "Nike", "Bosch", "Philips", "Apple", "Lenovo"};
+    private static final String[] NOUNS = {"Smartphone", "Laptop", "Headphones", "Shoes", "Drill", "Kettle",
+            "Tablet", "Monitor", "Jacket", "Blender", "Camera", "Speaker"};
+    private static final String[] ADJECTIVES = {"Wireless", "Pro", "Compact", "Deluxe", "Classic", "Smart", "Ultra"};
+    private static final String[] CATEGORIES = {"Electronics", "Clothing", "Home & Garden", "Sports", "Books"};
+
+    @Param({"100000", "1000000"})
+    public int products;
+
+    private ProductSearchIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        index = new ProductSearchIndex(null, null, Optional.empty(), 0, false);
+        Random random = new Random(42);
+        Product product = new Product();
+        for (int i = 0; i < products; i++) {
+            product.setProductID(SyntheticDataGenerator.productId(i));
+            product.setProductName(ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " "
+                    + BRANDS[random.nextInt(BRANDS.length)] + " "
+                    + NOUNS[random.nextInt(NOUNS.length)] + " " + random.nextInt(1000));
+            product.setProductCategory(CATEGORIES[random.nextInt(CATEGORIES.length)]);
+            index.index(product);
+        }
+    }
+
+    @Benchmark
+    public List<ProductSearchHitDTO> selectiveTerms() {
+        return index.search("sony headph 42", null, null, 51);
+    }
+
+    @Benchmark
+    public List<ProductSearchHitDTO> prefixWithCategory() {
+        return index.search("lapt", "electronics", null, 51);
+    }
+
+    @Benchmark
+    public List<ProductSearchHitDTO> infixTerm() {
+        return index.search("phon", null, null, 51);
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.orm.benchmark;
+
+import com.example.orm.cache.ProductLookupCache;
+import com.example.orm.model.Product;
+import com.example.orm.service.ProductService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProductServiceBenchmark {
+
+    @Param({"10000", "100000"})
+    public int catalogSize;
+
+    private BenchmarkEnvironment environment;
+    private ProductService productService;
+    private ProductLookupCache cache;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        environment = BenchmarkEnvironment.start(catalogSize, catalogSize / 100, 100);
+        productService = environment.bean(ProductService.class);
+        cache = environment.bean(ProductLookupCache.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        environment.close();
+    }
+
+    @Benchmark
+    public Product getProductById() {
+        return productService.getProductById(randomProductId());
+    }
+
+    @Benchmark
+    public Product getProductByIdUncached() {
+        cache.invalidateAll();
+        return productService.getProductById(randomProductId());
+    }
+
+    @Benchmark
+    public Object getProductPage() {
+        return productService.getProductPage(null, 50, null);
+    }
+
+    private String randomProductId() {
+        return SyntheticDataGenerator.productId(ThreadLocalRandom.current().nextInt(catalogSize));
+    }
+}
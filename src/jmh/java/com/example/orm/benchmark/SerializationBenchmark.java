@@ -0,0 +1,82 @@
+package com.example.orm.benchmark;
+
+import com.example.orm.model.DataWarehouse;
+import com.example.orm.model.Product;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON serialisation of warehouse graphs, without a database: isolates Jackson's share of
+ * the list endpoints from query time.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializationBenchmark {
+
+    @Param({"10", "1000"})
+    public int productsPerWarehouse;
+
+    @Param({"50"})
+    public int warehouses;
+
+    private ObjectMapper objectMapper;
+    private DataWarehouse warehouse;
+    private List<DataWarehouse> page;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Same settings as Spring Boot's auto-configured mapper
+        objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        page = new ArrayList<>(warehouses);
+        for (int w = 0; w < warehouses; w++) {
+            page.add(warehouse(w));
+        }
+        warehouse = page.get(0);
+    }
+
+    @Benchmark
+    public byte[] serializeWarehouse() throws Exception {
+        return objectMapper.writeValueAsBytes(warehouse);
+    }
+
+    @Benchmark
+    public byte[] serializeWarehousePage() throws Exception {
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+    private DataWarehouse warehouse(int index) {
+        DataWarehouse warehouse = new DataWarehouse();
+        warehouse.setWarehouseID((long) index);
+        warehouse.setWarehouseName("Warehouse " + index);
+        warehouse.setWarehouseAddress("Street " + index);
+        warehouse.setWarehousePostalCode("1010");
+        warehouse.setWarehouseCity("Vienna");
+        warehouse.setWarehouseCountry("Austria");
+        warehouse.setTimestamp(LocalDateTime.of(2025, 1, 1, 0, 0));
+        List<Product> products = new ArrayList<>(productsPerWarehouse);
+        for (int p = 0; p < productsPerWarehouse; p++) {
+            Product product = new Product();
+            product.setProductID(SyntheticDataGenerator.productId(index * productsPerWarehouse + p));
+            product.setProductName("Product " + p);
+            product.setProductCategory("Electronics");
+            product.setProductQuantity(p);
+            product.setProductUnit("pieces");
+            products.add(product);
+        }
+        warehouse.setProducts(products);
+        return warehouse;
+    }
+}
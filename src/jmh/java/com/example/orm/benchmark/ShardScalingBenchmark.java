@@ -0,0 +1,74 @@
+package com.example.orm.benchmark;
+
+import com.example.orm.dto.CursorPageDTO;
+import com.example.orm.dto.MembershipChangeDTO;
+import com.example.orm.dto.WarehouseListItemDTO;
+import com.example.orm.model.DataWarehouse;
+import com.example.orm.service.DataWarehouseService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the warehouse service over 1, 2 and 4 shards, each its own embedded PostgreSQL.
+ * Reads and writes of one warehouse go to a single shard; the city listing asks every shard.
+ * All databases share the machine's cores, so shards only add throughput where cores are left
+ * idle by a single database.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Threads(8)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ShardScalingBenchmark {
+
+    private static final int CATALOG_SIZE = 100_000;
+    private static final int WAREHOUSES = 2_000;
+    private static final int PRODUCTS_PER_WAREHOUSE = 100;
+    private static final int BATCH = 10;
+
+    @Param({"1", "2", "4"})
+    public int shards;
+
+    private BenchmarkEnvironment environment;
+    private DataWarehouseService warehouseService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        environment = BenchmarkEnvironment.startSharded(shards, CATALOG_SIZE, WAREHOUSES, PRODUCTS_PER_WAREHOUSE);
+        warehouseService = environment.bean(DataWarehouseService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        environment.close();
+    }
+
+    @Benchmark
+    public DataWarehouse getWarehouseById() {
+        return warehouseService.getWarehouseById(randomWarehouseId());
+    }
+
+    @Benchmark
+    public MembershipChangeDTO linkProducts() {
+        List<String> productIds = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            productIds.add(SyntheticDataGenerator.productId(ThreadLocalRandom.current().nextInt(CATALOG_SIZE)));
+        }
+        return warehouseService.linkProducts(randomWarehouseId(), productIds);
+    }
+
+    @Benchmark
+    public CursorPageDTO<WarehouseListItemDTO> listByCity() {
+        return warehouseService.getWarehouseListPage(null, 20, "City " + ThreadLocalRandom.current().nextInt(100));
+    }
+
+    private long randomWarehouseId() {
+        return 1 + ThreadLocalRandom.current().nextInt(WAREHOUSES);
+    }
+}
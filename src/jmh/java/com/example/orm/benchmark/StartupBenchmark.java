@@ -0,0 +1,177 @@
+package com.example.orm.benchmark;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold start of the packaged application in a fresh JVM: time from process launch to the first
+ * successful API response, and the resident set size right after it (printed per trial).
+ * {@code current} starts the executable jar with the default configuration, {@code prod} adds the
+ * prod profile, and
+ * {@code prod-aot-cds} runs the extracted jar with the AOT-generated context and a CDS archive
+ * trained against the same database. Needs a jar built with {@code -Pprod} and Linux for the RSS:
+ * {@code ./gradlew bootJar -Pprod jmh -Pjmh.args="StartupBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StartupBenchmark {
+
+    @Param({"current", "prod", "prod-aot-cds"})
+    public String configuration;
+
+    // Relative to the project directory, which is the working directory of the jmh task
+    @Param({"build/libs/ORM-0.0.1-SNAPSHOT.jar"})
+    public String bootJar;
+
+    private EmbeddedPostgres postgres;
+    private Path workDir;
+    private List<String> command;
+    private HttpClient client;
+    private Process process;
+    private int port;
+    private final List<Long> residentKilobytes = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        File jar = new File(bootJar);
+        if (!jar.isFile()) {
+            throw new IllegalStateException(jar.getAbsolutePath() + " not found, run ./gradlew bootJar -Pprod first");
+        }
+        postgres = EmbeddedPostgres.builder().start();
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(postgres.getPostgresDatabase());
+        SyntheticDataGenerator.generate(postgres.getPostgresDatabase(), 10_000, 100, 50);
+        workDir = Files.createTempDirectory("startup-benchmark");
+        client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        command = new ArrayList<>(List.of(java));
+        switch (configuration) {
+            case "current" -> command.addAll(List.of("-jar", jar.getAbsolutePath()));
+            case "prod" -> command.addAll(List.of("-jar", jar.getAbsolutePath(), "--spring.profiles.active=prod"));
+            case "prod-aot-cds" -> {
+                run(List.of(java, "-Djarmode=tools", "-jar", jar.getAbsolutePath(), "extract", "--destination", "app"));
+                String extracted = workDir.resolve("app").resolve(jar.getName()).toString();
+                List<String> aot = List.of("-Dspring.aot.enabled=true", "-jar", extracted, "--spring.profiles.active=prod");
+                List<String> training = new ArrayList<>(List.of(java, "-XX:ArchiveClassesAtExit=application.jsa",
+                        "-Dspring.context.exit=onRefresh"));
+                training.addAll(aot);
+                training.addAll(databaseArguments());
+                run(training);
+                command.add("-XX:SharedArchiveFile=application.jsa");
+                command.addAll(aot);
+            }
+            default -> throw new IllegalArgumentException("Unknown configuration " + configuration);
+        }
+        command.addAll(databaseArguments());
+    }
+
+    @Setup(Level.Invocation)
+    public void pickPort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+    }
+
+    @Benchmark
+    public int startToFirstRequest() throws Exception {
+        List<String> arguments = new ArrayList<>(command);
+        arguments.add("--server.port=" + port);
+        process = new ProcessBuilder(arguments)
+                .directory(workDir.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/products?size=1"))
+                .timeout(Duration.ofSeconds(30))
+                .build();
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(2);
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Application exited with " + process.exitValue());
+            }
+            try {
+                HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() != 200) {
+                    throw new IllegalStateException("Unexpected status " + response.statusCode());
+                }
+                residentKilobytes.add(residentKilobytes(process.pid()));
+                return response.statusCode();
+            } catch (IOException notListeningYet) {
+                Thread.sleep(5);
+            }
+        }
+        throw new IllegalStateException("Application did not answer within two minutes");
+    }
+
+    @TearDown(Level.Invocation)
+    public void stop() throws InterruptedException {
+        if (process != null) {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        postgres.close();
+        // Every start, warmup included; RSS does not depend on JIT warmup of the benchmark JVM
+        System.out.printf("%n%s: %.0f MB resident after the first request (mean of %d starts)%n", configuration,
+                residentKilobytes.stream().mapToLong(Long::longValue).average().orElse(-1) / 1024,
+                residentKilobytes.size());
+    }
+
+    private List<String> databaseArguments() {
+        return List.of(
+                "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+                "--spring.datasource.username=postgres",
+                "--spring.datasource.password=",
+                "--spring.sql.init.mode=never");
+    }
+
+    private void run(List<String> arguments) throws IOException, InterruptedException {
+        Process step = new ProcessBuilder(arguments)
+                .directory(workDir.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        if (step.waitFor() != 0) {
+            throw new IllegalStateException(String.join(" ", arguments) + " exited with " + step.exitValue());
+        }
+    }
+
+    // VmRSS from /proc, so -1 on systems without it
+    private static long residentKilobytes(long pid) throws IOException {
+        Path status = Path.of("/proc", String.valueOf(pid), "status");
+        if (!Files.exists(status)) {
+            return -1;
+        }
+        for (String line : Files.readAllLines(status)) {
+            if (line.startsWith("VmRSS:")) {
+                return Long.parseLong(line.replaceAll("\\D", ""));
+            }
+        }
+        return -1;
+    }
+}
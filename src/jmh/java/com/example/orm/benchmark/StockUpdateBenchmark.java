@@ -0,0 +1,76 @@
+package com.example.orm.benchmark;
+
+import com.example.orm.dto.StockAdjustmentDTO;
+import com.example.orm.model.Product;
+import com.example.orm.service.ProductService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stock updates per second: the full-entity PUT path against buffered and synchronous deltas.
+ * Eight threads hit a small set of hot products, like concurrent scanners in one warehouse.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+public class StockUpdateBenchmark {
+
+    private static final int CATALOG_SIZE = 10_000;
+
+    @Param({"100"})
+    public int hotProducts;
+
+    private BenchmarkEnvironment environment;
+    private ProductService productService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        environment = BenchmarkEnvironment.start(CATALOG_SIZE, 10, 100);
+        productService = environment.bean(ProductService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        environment.close();
+    }
+
+    @Benchmark
+    public Product putPath() {
+        // What clients do today: read, modify, write back the whole product
+        Product product = productService.getProductById(randomHotProduct());
+        Product update = new Product();
+        update.setProductID(product.getProductID());
+        update.setProductName(product.getProductName());
+        update.setProductCategory(product.getProductCategory());
+        update.setProductQuantity(product.getProductQuantity() + 1);
+        update.setProductUnit(product.getProductUnit());
+        return productService.updateProduct(update);
+    }
+
+    @Benchmark
+    public Object bufferedDelta() {
+        return productService.adjustStock(randomHotProduct(), delta(false));
+    }
+
+    @Benchmark
+    public Object synchronousDelta() {
+        return productService.adjustStock(randomHotProduct(), delta(true));
+    }
+
+    private String randomHotProduct() {
+        return SyntheticDataGenerator.productId(ThreadLocalRandom.current().nextInt(hotProducts));
+    }
+
+    private static StockAdjustmentDTO delta(boolean synchronous) {
+        StockAdjustmentDTO adjustment = new StockAdjustmentDTO();
+        adjustment.setDelta(1);
+        adjustment.setSynchronous(synchronous);
+        return adjustment;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.orm.benchmark;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+/**
+ * Deterministic catalog for benchmarks. Rows are generated server-side with generate_series,
+ * so even large catalogs load in seconds and every run sees exactly the same data.
+ * Warehouse {@code w} holds products {@code w * productsPerWarehouse .. + productsPerWarehouse - 1}
+ * (modulo the catalog size).
+ */
+final class SyntheticDataGenerator {
+
+    private static final String[] CATEGORIES = {"Electronics", "Clothing", "Books", "Home", "Food"};
+
+    private SyntheticDataGenerator() {
+    }
+
+    static String productId(int index) {
+        return String.format("P%09d", index);
+    }
+
+    static void generate(DataSource dataSource, int catalogSize, int warehouses, int productsPerWarehouse) {
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.update("TRUNCATE warehouse_products, datawarehouse, product RESTART IDENTITY");
+        jdbc.update("INSERT INTO product (product_id, product_name, product_category, product_quantity, product_unit) " +
+                "SELECT 'P' || lpad(i::text, 9, '0'), 'Product ' || i, " +
+                "(ARRAY['" + String.join("','", CATEGORIES) + "'])[1 + i % " + CATEGORIES.length + "], " +
+                "(i * 7919) % 1000, 'pieces' FROM generate_series(0, ?) AS i", catalogSize - 1);
+        jdbc.update("INSERT INTO datawarehouse (warehouse_name, warehouse_address, warehouse_postal_code, " +
+                "warehouse_city, warehouse_country) " +
+                "SELECT 'Warehouse ' || w, 'Street ' || w, lpad((w % 10000)::text, 5, '0'), " +
+                "'City ' || (w % 100), 'Country ' || (w % 10) FROM generate_series(1, ?) AS w", warehouses);
+        jdbc.update("INSERT INTO warehouse_products (warehouse_id, product_id) " +
+                "SELECT w, 'P' || lpad((((w - 1) * ? + k) % ?)::text, 9, '0') " +
+                "FROM generate_series(1, ?) AS w, generate_series(0, ? - 1) AS k " +
+                "ON CONFLICT DO NOTHING",
+                productsPerWarehouse, catalogSize, warehouses, productsPerWarehouse);
+        jdbc.execute("ANALYZE");
+    }
+
+    /**
+     * The rows one shard of {@code shards} holds: the whole catalog, and the warehouses whose IDs
+     * map to it, with the same IDs and links {@link #generate} would give them.
+     */
+    static void generateShard(DataSource dataSource, int catalogSize, int warehouses, int productsPerWarehouse,
+                              int shard, int shards) {
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        generate(dataSource, catalogSize, 0, productsPerWarehouse);
+        jdbc.update("INSERT INTO datawarehouse (warehouse_id, warehouse_name, warehouse_address, warehouse_postal_code, " +
+                "warehouse_city, warehouse_country) " +
+                "SELECT w, 'Warehouse ' || w, 'Street ' || w, lpad((w % 10000)::text, 5, '0'), " +
+                "'City ' || (w % 100), 'Country ' || (w % 10) FROM generate_series(1, ?) AS w " +
+                "WHERE (w - 1) % ? = ?", warehouses, shards, shard);
+        jdbc.update("INSERT INTO warehouse_products (warehouse_id, product_id) " +
+                "SELECT w, 'P' || lpad((((w - 1) * ? + k) % ?)::text, 9, '0') " +
+                "FROM generate_series(1, ?) AS w, generate_series(0, ? - 1) AS k " +
+                "WHERE (w - 1) % ? = ? ON CONFLICT DO NOTHING",
+                productsPerWarehouse, catalogSize, warehouses, productsPerWarehouse, shards, shard);
+        jdbc.execute("ANALYZE");
+    }
+}
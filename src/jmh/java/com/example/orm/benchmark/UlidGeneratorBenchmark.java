@@ -0,0 +1,30 @@
+package com.example.orm.benchmark;
+
+import com.example.orm.id.UlidGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one generated Product ID, single-threaded and under contention. Run with
+ * {@code -prof gc} to check that the returned string is the only allocation.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UlidGeneratorBenchmark {
+
+    @Benchmark
+    public String next() {
+        return UlidGenerator.next();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String nextContended() {
+        return UlidGenerator.next();
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.orm.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP load against the running application in platform-thread and virtual-thread mode.
+ * 256 concurrent clients call a DB-bound endpoint; sample mode reports throughput together with
+ * the latency percentiles (p99). Virtual threads need a JDK 21 runtime:
+ * {@code ./gradlew jmh -Pjmh.javaVersion=21 -Pjmh.args="VirtualThreadLoadBenchmark"}.
+ * On JDK 17 both modes run on platform threads.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(256)
+public class VirtualThreadLoadBenchmark {
+
+    private static final int WAREHOUSES = 200;
+
+    @Param({"false", "true"})
+    public boolean virtualThreads;
+
+    private BenchmarkEnvironment environment;
+    private HttpClient client;
+    private String baseUrl;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        environment = virtualThreads
+                ? BenchmarkEnvironment.startWeb(10_000, WAREHOUSES, 50, "--spring.profiles.active=virtual-threads")
+                : BenchmarkEnvironment.startWeb(10_000, WAREHOUSES, 50);
+        baseUrl = "http://localhost:" + environment.port();
+        client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        environment.close();
+    }
+
+    @Benchmark
+    public int getProductsFromWarehouse() throws Exception {
+        long warehouseId = 1 + ThreadLocalRandom.current().nextInt(WAREHOUSES);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/warehouses/" + warehouseId + "/products"))
+                .timeout(Duration.ofSeconds(60))
+                .build();
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Unexpected status " + response.statusCode());
+        }
+        return response.statusCode();
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.orm.loadtest;
+
+/**
+ * Shape of the generated catalog, shared by the generator and the load driver so the driver
+ * requests IDs and search terms that exist. Popularity rank {@code r} (1 = hottest) maps to a
+ * product index through a fixed permutation, so hot products are spread over the key space
+ * instead of sharing the first index pages.
+ */
+final class Catalog {
+
+    static final String[] CATEGORIES = {
+            "Electronics", "Clothing", "Books", "Home", "Garden", "Toys", "Sports", "Food",
+            "Beauty", "Automotive", "Office", "Tools", "Health", "Music", "Pets", "Outdoor"};
+    static final String[] UNITS = {"pieces", "pieces", "pieces", "kg", "l", "m", "boxes"};
+    static final String[] ADJECTIVES = {
+            "compact", "heavy", "wireless", "organic", "classic", "portable", "premium", "smart",
+            "vintage", "modular", "rugged", "slim", "eco", "deluxe", "mini", "pro"};
+    static final String[] NOUNS = {
+            "adapter", "blanket", "cable", "drill", "kettle", "lamp", "notebook", "pump",
+            "router", "sensor", "speaker", "stapler", "tent", "trolley", "valve", "wrench",
+            "backpack", "bottle", "charger", "helmet", "jacket", "keyboard", "ladder", "mixer"};
+
+    // Prime above any int, so multiplying by it permutes the indexes 0..n-1
+    private static final long SPREAD = 2_147_483_659L;
+
+    private Catalog() {
+    }
+
+    // Same format as the JMH SyntheticDataGenerator; no String.format, this runs once per link
+    static String productId(int index) {
+        String digits = Integer.toString(index);
+        return "P" + "000000000".substring(Math.min(9, digits.length())) + digits;
+    }
+
+    static int productIndexOfRank(int rank, int products) {
+        return (int) ((rank - 1) * SPREAD % products);
+    }
+
+    static String productName(int index) {
+        return ADJECTIVES[index % ADJECTIVES.length] + ' ' + NOUNS[(index / ADJECTIVES.length) % NOUNS.length] + ' ' + index;
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.orm.loadtest;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.BitSet;
+import java.util.SplittableRandom;
+
+/**
+ * Fills {@code product}, {@code datawarehouse} and {@code warehouse_products} with a deterministic,
+ * skewed catalog through the COPY protocol. Warehouse sizes follow a Zipf distribution over the
+ * warehouse ID (warehouse 1 is the largest), and each warehouse draws its products from a Zipf
+ * popularity ranking, so a few products are stocked almost everywhere and most only in a few
+ * places. The same options and seed always produce the same rows. Existing rows are replaced;
+ * the schema must exist (schema.sql or one start of the application).
+ *
+ * <pre>
+ * ./gradlew generateData -Pgenerate.args="--products=1000000 --warehouses=10000 --links=10000000"
+ * </pre>
+ */
+public final class DatasetGenerator {
+
+    private static final int FLUSH_BYTES = 64 * 1024;
+
+    private DatasetGenerator() {
+    }
+
+    public static void main(String[] args) throws SQLException {
+        Options options = new Options(args);
+        String url = options.string("url", "jdbc:postgresql://localhost:5432/warehouse");
+        String user = options.string("user", "postgres");
+        String password = options.string("password", "example_password");
+        int products = options.integer("products", 1_000_000);
+        int warehouses = options.integer("warehouses", 10_000);
+        long links = options.longValue("links", 10L * products);
+        double warehouseSkew = options.decimal("warehouse-skew", 0.8);
+        double productSkew = options.decimal("product-skew", 1.0);
+        long seed = options.longValue("seed", 42);
+
+        try (Connection connection = DriverManager.getConnection(url, user, password)) {
+            connection.setAutoCommit(false);
+            CopyManager copy = connection.unwrap(PGConnection.class).getCopyAPI();
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("TRUNCATE warehouse_products, datawarehouse, product RESTART IDENTITY");
+            }
+            long start = System.nanoTime();
+            long productRows = copyProducts(copy, products, new SplittableRandom(seed));
+            long warehouseRows = copyWarehouses(copy, warehouses);
+            long linkRows = copyLinks(copy, products, warehouses, links, warehouseSkew, productSkew,
+                    new SplittableRandom(seed + 1));
+            try (Statement statement = connection.createStatement()) {
+                // Rows were loaded with explicit IDs, so move the sequence past them
+                statement.execute("SELECT setval(pg_get_serial_sequence('datawarehouse', 'warehouse_id'), "
+                        + Math.max(1, warehouses) + ")");
+            }
+            connection.commit();
+            connection.setAutoCommit(true);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("ANALYZE product, datawarehouse, warehouse_products");
+            }
+            long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+            System.out.printf("Loaded %d products, %d warehouses and %d links in %d ms (%d rows/s)%n",
+                    productRows, warehouseRows, linkRows, millis, (productRows + warehouseRows + linkRows) * 1000 / millis);
+        }
+    }
+
+    private static long copyProducts(CopyManager copy, int products, SplittableRandom random) throws SQLException {
+        try (Rows rows = new Rows(copy, "COPY product (product_id, product_name, product_category, " +
+                "product_quantity, product_unit) FROM STDIN WITH (FORMAT csv)")) {
+            for (int i = 0; i < products; i++) {
+                rows.line().append(Catalog.productId(i)).append(',')
+                        .append(Catalog.productName(i)).append(',')
+                        .append(Catalog.CATEGORIES[random.nextInt(Catalog.CATEGORIES.length)]).append(',')
+                        .append(random.nextInt(1000)).append(',')
+                        .append(Catalog.UNITS[random.nextInt(Catalog.UNITS.length)]);
+                rows.end();
+            }
+            return rows.finish();
+        }
+    }
+
+    private static long copyWarehouses(CopyManager copy, int warehouses) throws SQLException {
+        try (Rows rows = new Rows(copy, "COPY datawarehouse (warehouse_id, warehouse_name, warehouse_address, " +
+                "warehouse_postal_code, warehouse_city, warehouse_country) FROM STDIN WITH (FORMAT csv)")) {
+            for (int w = 1; w <= warehouses; w++) {
+                rows.line().append(w).append(",Warehouse ").append(w)
+                        .append(",Street ").append(w)
+                        .append(',').append(String.format("%05d", w % 100_000))
+                        .append(",City ").append(w % 500)
+                        .append(",Country ").append(w % 20);
+                rows.end();
+            }
+            return rows.finish();
+        }
+    }
+
+    private static long copyLinks(CopyManager copy, int products, int warehouses, long links,
+                                  double warehouseSkew, double productSkew, SplittableRandom random) throws SQLException {
+        // Warehouse w gets links * w^-skew / H(warehouses), capped at half the catalog so that
+        // drawing distinct products stays cheap
+        double harmonic = 0;
+        for (int w = 1; w <= warehouses; w++) {
+            harmonic += Math.pow(w, -warehouseSkew);
+        }
+        ZipfSampler popularity = new ZipfSampler(products, productSkew);
+        BitSet stocked = new BitSet(products);
+        int[] chosen = new int[Math.max(1, products / 2)];
+        try (Rows rows = new Rows(copy, "COPY warehouse_products (warehouse_id, product_id) FROM STDIN WITH (FORMAT csv)")) {
+            for (int w = 1; w <= warehouses; w++) {
+                int size = (int) Math.min(chosen.length, Math.max(1, Math.round(links * Math.pow(w, -warehouseSkew) / harmonic)));
+                for (int i = 0; i < size; i++) {
+                    int index = draw(popularity, products, stocked, random);
+                    stocked.set(index);
+                    chosen[i] = index;
+                    rows.line().append(w).append(',').append(Catalog.productId(index));
+                    rows.end();
+                }
+                for (int i = 0; i < size; i++) {
+                    stocked.clear(chosen[i]);
+                }
+            }
+            return rows.finish();
+        }
+    }
+
+    // A few popularity draws, then uniform ones once the hot products are all taken
+    private static int draw(ZipfSampler popularity, int products, BitSet stocked, SplittableRandom random) {
+        for (int attempt = 0; attempt < 4; attempt++) {
+            int index = Catalog.productIndexOfRank(popularity.sample(random), products);
+            if (!stocked.get(index)) {
+                return index;
+            }
+        }
+        int index;
+        do {
+            index = random.nextInt(products);
+        } while (stocked.get(index));
+        return index;
+    }
+
+    /**
+     * CSV lines buffered into 64 KB writes on one COPY.
+     */
+    private static final class Rows implements AutoCloseable {
+
+        private final CopyIn copyIn;
+        private final StringBuilder buffer = new StringBuilder(FLUSH_BYTES + 256);
+
+        Rows(CopyManager copy, String sql) throws SQLException {
+            this.copyIn = copy.copyIn(sql);
+        }
+
+        StringBuilder line() {
+            return buffer;
+        }
+
+        void end() throws SQLException {
+            buffer.append('\n');
+            if (buffer.length() >= FLUSH_BYTES) {
+                flush();
+            }
+        }
+
+        long finish() throws SQLException {
+            flush();
+            return copyIn.endCopy();
+        }
+
+        private void flush() throws SQLException {
+            byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+            buffer.setLength(0);
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+}
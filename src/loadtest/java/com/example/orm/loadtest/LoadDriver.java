@@ -0,0 +1,337 @@
+package com.example.orm.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model HTTP load against a running application. Requests are issued at a fixed arrival rate
+ * (Poisson or evenly spaced) regardless of how fast responses come back, each on its own thread,
+ * and latency is measured from the request's scheduled start, so a stalled server shows up as
+ * latency instead of as fewer requests (no coordinated omission). The request sequence is
+ * deterministic for a seed and targets the catalog written by {@link DatasetGenerator}: products
+ * by the same popularity skew, warehouses uniformly.
+ * <p>
+ * Per endpoint the driver prints throughput, error rate and p50/p99/p99.9/max, writes the full
+ * percentile distribution as {@code <endpoint>.hgrm}, and logs one histogram per second and
+ * endpoint (tagged) to {@code latency.hlog}, both readable by the HdrHistogram tools.
+ *
+ * <pre>
+ * ./gradlew loadTest -PloadTest.javaVersion=21 -PloadTest.args="--rate=500 --duration=PT2M"
+ * </pre>
+ */
+public final class LoadDriver {
+
+    enum Operation {
+        PRODUCT_GET(30),
+        PRODUCT_PAGE(5),
+        PRODUCT_SEARCH(10),
+        PRODUCT_WAREHOUSES(5),
+        WAREHOUSE_GET(10),
+        WAREHOUSE_PRODUCTS(5),
+        WAREHOUSE_LIST(5),
+        WAREHOUSE_SUMMARY(5),
+        WAREHOUSE_CONTAINS(5),
+        STOCK_ADJUST(15),
+        LINK_PRODUCTS(5);
+
+        private final int defaultWeight;
+
+        Operation(int defaultWeight) {
+            this.defaultWeight = defaultWeight;
+        }
+
+        String endpoint() {
+            return name().toLowerCase(Locale.ROOT).replace('_', '-');
+        }
+    }
+
+    private record PlannedRequest(Operation operation, HttpRequest request) {
+    }
+
+    // 1 µs to 1 h at three significant digits
+    private static final long MAX_LATENCY_MICROS = TimeUnit.HOURS.toMicros(1);
+
+    private final String baseUrl;
+    private final int products;
+    private final int warehouses;
+    private final ZipfSampler popularity;
+    private final Operation[] schedule;
+    private final HttpClient client;
+    private final ExecutorService executor;
+    private final Duration timeout;
+    private final Semaphore inFlight;
+    private final Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+    private final Map<Operation, Histogram> totals = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+    private volatile long measureFromNanos;
+
+    private LoadDriver(Options options) {
+        this.baseUrl = options.string("base-url", "http://localhost:8080");
+        this.products = options.integer("products", 1_000_000);
+        this.warehouses = options.integer("warehouses", 10_000);
+        this.popularity = new ZipfSampler(products, options.decimal("product-skew", 1.0));
+        this.schedule = schedule(options.string("mix", null));
+        this.timeout = options.duration("timeout", Duration.ofSeconds(10));
+        this.inFlight = new Semaphore(options.integer("max-in-flight", 10_000));
+        this.executor = requestExecutor();
+        // The client keeps its own executor for connection handling, so shutting down ours at the end
+        // cannot strand responses still in flight
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+        for (Operation operation : Operation.values()) {
+            recorders.put(operation, new Recorder(MAX_LATENCY_MICROS, 3));
+            totals.put(operation, new Histogram(MAX_LATENCY_MICROS, 3));
+            errors.put(operation, new LongAdder());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new Options(args);
+        LoadDriver driver = new LoadDriver(options);
+        driver.run(options.decimal("rate", 100),
+                options.duration("warmup", Duration.ofSeconds(10)),
+                options.duration("duration", Duration.ofSeconds(60)),
+                options.string("arrivals", "poisson"),
+                options.longValue("seed", 42),
+                Path.of(options.string("output", "build/results/loadtest")));
+    }
+
+    private void run(double rate, Duration warmup, Duration duration, String arrivals, long seed, Path output)
+            throws Exception {
+        boolean poisson = switch (arrivals) {
+            case "poisson" -> true;
+            case "constant" -> false;
+            default -> throw new IllegalArgumentException("--arrivals must be poisson or constant");
+        };
+        Files.createDirectories(output);
+        System.out.printf("%.0f requests/s (%s) against %s for %s after %s warmup, requests on %s%n",
+                rate, arrivals, baseUrl, duration, warmup, executorKind());
+
+        SplittableRandom random = new SplittableRandom(seed);
+        double meanGapNanos = 1e9 / rate;
+        long start = System.nanoTime();
+        measureFromNanos = start + warmup.toNanos();
+        long end = measureFromNanos + duration.toNanos();
+        long issued = 0;
+
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "load-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (PrintStream hlog = new PrintStream(output.resolve("latency.hlog").toFile(), StandardCharsets.UTF_8)) {
+            HistogramLogWriter logWriter = new HistogramLogWriter(hlog);
+            logWriter.outputLogFormatVersion();
+            logWriter.outputStartTime(System.currentTimeMillis() + warmup.toMillis());
+            logWriter.outputLegend();
+            reporter.scheduleAtFixedRate(() -> collectIntervals(logWriter), 1, 1, TimeUnit.SECONDS);
+
+            double nextNanos = start;
+            while (true) {
+                nextNanos += poisson ? -Math.log(1 - random.nextDouble()) * meanGapNanos : meanGapNanos;
+                long intended = (long) nextNanos;
+                if (intended >= end) {
+                    break;
+                }
+                PlannedRequest planned = nextRequest(random);
+                long now;
+                while ((now = System.nanoTime()) < intended) {
+                    LockSupport.parkNanos(intended - now);
+                }
+                issue(planned.operation(), planned.request(), intended);
+                issued++;
+            }
+            executor.shutdown();
+            if (!executor.awaitTermination(timeout.toMillis() + 5_000, TimeUnit.MILLISECONDS)) {
+                System.out.println("Requests still running after the timeout are not counted");
+            }
+            reporter.shutdown();
+            reporter.awaitTermination(5, TimeUnit.SECONDS);
+            collectIntervals(logWriter);
+        }
+        report(issued, duration.plus(warmup), duration, output);
+    }
+
+    private void issue(Operation operation, HttpRequest request, long intendedNanos) {
+        boolean measured = intendedNanos >= measureFromNanos;
+        if (!inFlight.tryAcquire()) {
+            // The client itself is saturated; counting these as errors keeps the offered rate honest
+            if (measured) {
+                errors.get(operation).increment();
+            }
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                long micros = Math.max(1, (System.nanoTime() - intendedNanos) / 1_000);
+                if (!measured) {
+                    return;
+                }
+                if (response.statusCode() >= 400) {
+                    errors.get(operation).increment();
+                } else {
+                    recorders.get(operation).recordValue(Math.min(micros, MAX_LATENCY_MICROS));
+                }
+            } catch (Exception e) {
+                if (measured) {
+                    errors.get(operation).increment();
+                }
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    private PlannedRequest nextRequest(SplittableRandom random) {
+        Operation operation = schedule[random.nextInt(schedule.length)];
+        String product = Catalog.productId(Catalog.productIndexOfRank(popularity.sample(random), products));
+        long warehouse = 1 + random.nextInt(warehouses);
+        String path;
+        String body = null;
+        switch (operation) {
+            case PRODUCT_GET -> path = "/api/products/" + product;
+            case PRODUCT_PAGE -> path = "/api/products?size=50&category="
+                    + Catalog.CATEGORIES[random.nextInt(Catalog.CATEGORIES.length)];
+            case PRODUCT_SEARCH -> path = "/api/products/search?size=20&q="
+                    + URLEncoder.encode(Catalog.NOUNS[random.nextInt(Catalog.NOUNS.length)], StandardCharsets.UTF_8);
+            case PRODUCT_WAREHOUSES -> path = "/api/products/" + product + "/warehouses";
+            case WAREHOUSE_GET -> path = "/api/warehouses/" + warehouse;
+            case WAREHOUSE_PRODUCTS -> path = "/api/warehouses/" + warehouse + "/products";
+            case WAREHOUSE_LIST -> path = "/api/warehouses/list?size=50";
+            case WAREHOUSE_SUMMARY -> path = "/api/warehouses/" + warehouse + "/summary";
+            case WAREHOUSE_CONTAINS -> path = "/api/warehouses/" + warehouse + "/contains?productIds=" + product + ','
+                    + Catalog.productId(Catalog.productIndexOfRank(popularity.sample(random), products));
+            case STOCK_ADJUST -> {
+                path = "/api/products/" + product + "/stock";
+                body = "{\"delta\":" + (random.nextInt(21) - 10) + "}";
+            }
+            case LINK_PRODUCTS -> {
+                path = "/api/warehouses/" + warehouse + "/link-products";
+                body = "[\"" + product + "\",\""
+                        + Catalog.productId(Catalog.productIndexOfRank(popularity.sample(random), products)) + "\"]";
+            }
+            default -> throw new IllegalStateException("Unhandled operation " + operation);
+        }
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(timeout);
+        if (body == null) {
+            builder.GET();
+        } else {
+            builder.header("Content-Type", "application/json").POST(HttpRequest.BodyPublishers.ofString(body));
+        }
+        return new PlannedRequest(operation, builder.build());
+    }
+
+    private synchronized void collectIntervals(HistogramLogWriter logWriter) {
+        for (Operation operation : Operation.values()) {
+            Histogram interval = recorders.get(operation).getIntervalHistogram();
+            if (interval.getTotalCount() == 0) {
+                continue;
+            }
+            totals.get(operation).add(interval);
+            interval.setTag(operation.endpoint());
+            logWriter.outputIntervalHistogram(interval);
+        }
+    }
+
+    private void report(long issued, Duration total, Duration measured, Path output) throws FileNotFoundException {
+        double seconds = measured.toNanos() / 1e9;
+        System.out.printf("%nIssued %d requests in %s (%.0f/s offered)%n%n", issued, total, issued / (total.toNanos() / 1e9));
+        System.out.printf("%-20s %10s %10s %8s %10s %10s %10s %10s%n",
+                "endpoint", "ok", "ok/s", "errors", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = totals.get(operation);
+            long ok = histogram.getTotalCount();
+            long failed = errors.get(operation).sum();
+            if (ok + failed == 0) {
+                continue;
+            }
+            System.out.printf("%-20s %10d %10.1f %7.2f%% %10.2f %10.2f %10.2f %10.2f%n",
+                    operation.endpoint(), ok, ok / seconds, 100.0 * failed / (ok + failed),
+                    millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(99)),
+                    millis(histogram.getValueAtPercentile(99.9)), millis(histogram.getMaxValue()));
+            try (PrintStream hgrm = new PrintStream(output.resolve(operation.endpoint() + ".hgrm").toFile())) {
+                histogram.outputPercentileDistribution(hgrm, 1000.0);
+            }
+        }
+        System.out.printf("%nPercentile distributions (.hgrm) and the interval log are in %s%n", output.toAbsolutePath());
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    // Weighted lookup table: an operation with weight w appears w times
+    private static Operation[] schedule(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        if (mix == null) {
+            for (Operation operation : Operation.values()) {
+                weights.put(operation, operation.defaultWeight);
+            }
+        } else {
+            for (String entry : mix.split(",")) {
+                String[] parts = entry.split(":");
+                if (parts.length != 2) {
+                    throw new IllegalArgumentException("--mix entries look like product-get:30, got " + entry);
+                }
+                Operation operation = Operation.valueOf(parts[0].trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+                weights.put(operation, Integer.parseInt(parts[1].trim()));
+            }
+        }
+        List<Operation> table = new ArrayList<>();
+        weights.forEach((operation, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                table.add(operation);
+            }
+        });
+        if (table.isEmpty()) {
+            throw new IllegalArgumentException("--mix has no operation with a positive weight");
+        }
+        return table.toArray(Operation[]::new);
+    }
+
+    // Virtual threads when the runtime has them (JDK 21+), looked up reflectively because the build targets 17
+    private static ExecutorService requestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "load-request");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private String executorKind() {
+        return executor.getClass().getSimpleName().contains("ThreadPerTask") ? "virtual threads" : "platform threads";
+    }
+}
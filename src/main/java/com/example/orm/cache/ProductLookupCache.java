@@ -0,0 +1,193 @@
+package com.example.orm.cache;
+
+import com.example.orm.datasource.ReplicaRouter;
+import com.example.orm.datasource.TransactionHooks;
+import com.example.orm.dto.CacheStatsDTO;
+import com.example.orm.model.Product;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Bounded read-through cache for the single-product lookups. Misses are cached as
+ * {@link Optional#empty()} with a shorter TTL so repeated requests for unknown IDs do not
+ * reach the database either. Writers must call the matching {@code invalidate*} method; inside a
+ * transaction the entries are dropped once it commits, because a reader that loads before the commit
+ * would otherwise put the old row straight back.
+ * Loads always read the primary: an entry lives far longer than replication lag, so a replica
+ * that has not caught up with a write would otherwise pin the old row right after invalidation.
+ * Warehouse-product entries are indexed by product and by warehouse, so dropping everything cached
+ * for one of them touches only those entries instead of scanning the cache.
+ */
+@Component
+public class ProductLookupCache implements MeterBinder {
+
+    public record WarehouseProductKey(Long warehouseId, String productId) {
+    }
+
+    private final Cache<String, Optional<Product>> products;
+    private final Cache<WarehouseProductKey, Optional<Product>> warehouseProducts;
+    // Keys of warehouseProducts; only changed inside compute, which locks the ID's entry
+    private final Map<String, Set<WarehouseProductKey>> keysByProduct = new ConcurrentHashMap<>();
+    private final Map<Long, Set<WarehouseProductKey>> keysByWarehouse = new ConcurrentHashMap<>();
+
+    public ProductLookupCache(@Value("${app.cache.maximum-size:10000}") long maximumSize,
+                              @Value("${app.cache.ttl:PT5M}") Duration ttl,
+                              @Value("${app.cache.negative-ttl:PT30S}") Duration negativeTtl) {
+        this.products = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new PresenceExpiry<String>(ttl, negativeTtl))
+                .recordStats()
+                .build();
+        this.warehouseProducts = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new PresenceExpiry<WarehouseProductKey>(ttl, negativeTtl))
+                // Size and expiry evictions; explicit invalidations unindex the keys themselves
+                .evictionListener((WarehouseProductKey key, Optional<Product> value, RemovalCause cause) -> unindex(key))
+                .recordStats()
+                .build();
+    }
+
+    public Optional<Product> getProduct(String productId, Supplier<Optional<Product>> loader) {
+        return products.get(productId, id -> ReplicaRouter.onPrimary(loader));
+    }
+
+    public Optional<Product> getProductInWarehouse(Long warehouseId, String productId, Supplier<Optional<Product>> loader) {
+        return warehouseProducts.get(new WarehouseProductKey(warehouseId, productId), key -> {
+            // Indexed before loading, so an invalidation racing with the load finds the key and waits for it
+            index(keysByProduct, key.productId(), key);
+            index(keysByWarehouse, key.warehouseId(), key);
+            return ReplicaRouter.onPrimary(loader);
+        });
+    }
+
+    public void invalidateProduct(String productId) {
+        TransactionHooks.afterCommit(() -> {
+            products.invalidate(productId);
+            invalidateKeys(keysByProduct.remove(productId));
+        });
+    }
+
+    public void invalidateProducts(Collection<String> productIds) {
+        Set<String> ids = new HashSet<>(productIds);
+        TransactionHooks.afterCommit(() -> {
+            products.invalidateAll(ids);
+            ids.forEach(productId -> invalidateKeys(keysByProduct.remove(productId)));
+        });
+    }
+
+    public void invalidateWarehouseProducts(Long warehouseId, Collection<String> productIds) {
+        List<WarehouseProductKey> keys = productIds.stream()
+                .map(productId -> new WarehouseProductKey(warehouseId, productId))
+                .toList();
+        TransactionHooks.afterCommit(() -> {
+            keys.forEach(this::unindex);
+            warehouseProducts.invalidateAll(keys);
+        });
+    }
+
+    public void invalidateWarehouse(Long warehouseId) {
+        TransactionHooks.afterCommit(() -> invalidateKeys(keysByWarehouse.remove(warehouseId)));
+    }
+
+    public void invalidateAll() {
+        TransactionHooks.afterCommit(() -> {
+            products.invalidateAll();
+            keysByProduct.clear();
+            keysByWarehouse.clear();
+            warehouseProducts.invalidateAll();
+        });
+    }
+
+    public Map<String, CacheStatsDTO> stats() {
+        Map<String, CacheStatsDTO> stats = new LinkedHashMap<>();
+        stats.put("products", toDto(products));
+        stats.put("warehouseProducts", toDto(warehouseProducts));
+        return stats;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, products, "products");
+        CaffeineCacheMetrics.monitor(registry, warehouseProducts, "warehouseProducts");
+    }
+
+    private void invalidateKeys(Set<WarehouseProductKey> keys) {
+        if (keys == null) {
+            return;
+        }
+        // Detached from one index by the caller; the other one still lists them
+        keys.forEach(this::unindex);
+        warehouseProducts.invalidateAll(keys);
+    }
+
+    private void unindex(WarehouseProductKey key) {
+        unindex(keysByProduct, key.productId(), key);
+        unindex(keysByWarehouse, key.warehouseId(), key);
+    }
+
+    private static <K> void index(Map<K, Set<WarehouseProductKey>> index, K id, WarehouseProductKey key) {
+        index.compute(id, (k, keys) -> {
+            Set<WarehouseProductKey> updated = keys == null ? new HashSet<>() : keys;
+            updated.add(key);
+            return updated;
+        });
+    }
+
+    private static <K> void unindex(Map<K, Set<WarehouseProductKey>> index, K id, WarehouseProductKey key) {
+        index.computeIfPresent(id, (k, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    private static CacheStatsDTO toDto(Cache<?, ?> cache) {
+        CacheStats s = cache.stats();
+        return new CacheStatsDTO(cache.estimatedSize(), s.hitCount(), s.missCount(), s.hitRate(), s.evictionCount());
+    }
+
+    // Present values live for the full TTL, cached misses only for the negative TTL
+    private static final class PresenceExpiry<K> implements Expiry<K, Optional<Product>> {
+
+        private final long ttlNanos;
+        private final long negativeTtlNanos;
+
+        private PresenceExpiry(Duration ttl, Duration negativeTtl) {
+            this.ttlNanos = ttl.toNanos();
+            this.negativeTtlNanos = negativeTtl.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(K key, Optional<Product> value, long currentTime) {
+            return value.isPresent() ? ttlNanos : negativeTtlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(K key, Optional<Product> value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(K key, Optional<Product> value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.orm.config;
+
+import com.example.orm.datasource.DbConcurrencyLimiter;
+import com.example.orm.datasource.LimitingDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Puts a fair {@link DbConcurrencyLimiter} in front of the application's DataSource. Enabled by
+ * {@code app.db-limiter.enabled}, which the {@code virtual-threads} profile switches on.
+ * <p>
+ * Only the top-level {@value #DATA_SOURCE_BEAN} bean is wrapped. A DataSource behind it (a pool
+ * the routing DataSource delegates to, should one ever be a bean) would take a second permit for
+ * a connection that already holds one, and with every permit taken by such outer connections
+ * the inner ones would wait for each other until the limiter times out.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.db-limiter.enabled", havingValue = "true")
+public class DbConcurrencyLimiterConfig {
+
+    static final String DATA_SOURCE_BEAN = "dataSource";
+
+    // Static: the post-processor below needs it before regular beans are created
+    @Bean
+    public static DbConcurrencyLimiter dbConcurrencyLimiter(@Value("${app.db-limiter.max-concurrency:10}") int maxConcurrency,
+                                                            @Value("${app.db-limiter.timeout:PT30S}") Duration timeout) {
+        return new DbConcurrencyLimiter(maxConcurrency, timeout);
+    }
+
+    @Bean
+    public static BeanPostProcessor dbConcurrencyLimiterPostProcessor(ObjectProvider<DbConcurrencyLimiter> limiter) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (DATA_SOURCE_BEAN.equals(beanName) && bean instanceof DataSource dataSource
+                        && !(bean instanceof LimitingDataSource)) {
+                    return new LimitingDataSource(dataSource, limiter.getObject());
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.orm.config;
+
+import com.example.orm.events.InventoryChangeStream;
+import com.example.orm.membership.WarehouseMembershipIndex;
+import com.example.orm.search.ProductSearchIndex;
+import com.example.orm.service.StockAdjustmentBuffer;
+import com.example.orm.service.WarehouseShards;
+import com.example.orm.index.CatalogIndexes;
+import com.example.orm.snapshot.CatalogSnapshotStore;
+import com.example.orm.summary.InventorySummaryIndex;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class LazyInitializationConfig {
+
+    // Only matters with spring.main.lazy-initialization=true (prod profile). @Scheduled methods are
+    // registered when their bean is created, and the in-memory indexes should be loaded before the
+    // first request rather than by it, so these stay eager. WarehouseShards aligns the ID sequences
+    // before requests are taken, which only happens for beans created at startup.
+    @Bean
+    static LazyInitializationExcludeFilter backgroundWorkers() {
+        return LazyInitializationExcludeFilter.forBeanTypes(StockAdjustmentBuffer.class, InventoryChangeStream.class,
+                ProductSearchIndex.class, WarehouseMembershipIndex.class, InventorySummaryIndex.class,
+                CatalogSnapshotStore.class, CatalogIndexes.class, WarehouseShards.class);
+    }
+}
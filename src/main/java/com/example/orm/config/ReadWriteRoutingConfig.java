@@ -0,0 +1,66 @@
+package com.example.orm.config;
+
+import com.example.orm.datasource.ReadWriteRoutingDataSource;
+import com.example.orm.datasource.ReplicaRouter;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the single auto-configured pool with a primary ({@code spring.datasource.*}) plus the
+ * replica pools listed under {@code app.datasource.replicas[n].*} (HikariCP property names; user
+ * name and password default to the primary's). Enabled by {@code app.datasource.routing.enabled}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.routing.enabled", havingValue = "true")
+public class ReadWriteRoutingConfig {
+
+    @Bean(destroyMethod = "close")
+    public ReplicaRouter replicaRouter(DataSourceProperties properties, Environment environment,
+                                       @Value("${app.datasource.routing.health-check-interval:PT5S}") Duration healthCheckInterval,
+                                       @Value("${app.datasource.routing.validation-timeout:PT1S}") Duration validationTimeout) {
+        Binder binder = Binder.get(environment);
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        if (primary.getPoolName() == null) {
+            primary.setPoolName("primary");
+        }
+        List<HikariConfig> configs = binder.bind("app.datasource.replicas", Bindable.listOf(HikariConfig.class))
+                .orElse(List.of());
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < configs.size(); i++) {
+            HikariConfig config = configs.get(i);
+            if (config.getUsername() == null) {
+                config.setUsername(primary.getUsername());
+                config.setPassword(primary.getPassword());
+            }
+            if (config.getPoolName() == null) {
+                config.setPoolName("replica-" + (i + 1));
+            }
+            // An unreachable replica must not stop startup; the health check ejects it instead
+            config.setInitializationFailTimeout(-1);
+            config.setReadOnly(true);
+            replicas.add(new HikariDataSource(config));
+        }
+        return new ReplicaRouter(primary, replicas, healthCheckInterval, validationTimeout);
+    }
+
+    @Bean
+    public DataSource dataSource(ReplicaRouter router) {
+        // Connections are fetched at the first statement, once the transaction's read-only flag is set
+        return new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(router));
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.orm.config;
+
+import com.example.orm.datasource.ShardRouter;
+import com.example.orm.datasource.ShardRoutingDataSource;
+import com.example.orm.monitoring.QueryStats;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Spreads warehouses over several databases: {@code spring.datasource.*} is shard 0, the reference
+ * shard, and {@code app.datasource.shards[n].*} (HikariCP property names; user name and password
+ * default to shard 0's) are shards 1..n. Enabled by {@code app.datasource.sharding.enabled};
+ * cannot be combined with {@code app.datasource.routing.enabled}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.sharding.enabled", havingValue = "true")
+public class ShardingConfig {
+
+    @Bean(destroyMethod = "close")
+    public ShardRouter shardRouter(DataSourceProperties properties, Environment environment,
+                                   @Value("${app.datasource.sharding.scatter-threads:16}") int scatterThreads) {
+        Binder binder = Binder.get(environment);
+        HikariDataSource reference = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(reference));
+        if (reference.getPoolName() == null) {
+            reference.setPoolName("shard-0");
+        }
+        List<HikariDataSource> shards = new ArrayList<>(List.of(reference));
+        List<HikariConfig> configs = binder.bind("app.datasource.shards", Bindable.listOf(HikariConfig.class))
+                .orElse(List.of());
+        for (int i = 0; i < configs.size(); i++) {
+            HikariConfig config = configs.get(i);
+            if (config.getUsername() == null) {
+                config.setUsername(reference.getUsername());
+                config.setPassword(reference.getPassword());
+            }
+            if (config.getPoolName() == null) {
+                config.setPoolName("shard-" + (i + 1));
+            }
+            shards.add(new HikariDataSource(config));
+        }
+        // Statements a request fans out to the shards count toward its own budget
+        return new ShardRouter(shards, scatterThreads, QueryStats::propagate);
+    }
+
+    @Bean
+    public DataSource dataSource(ShardRouter router) {
+        // Connections are fetched at the first statement, once the shard scope has been entered
+        return new LazyConnectionDataSourceProxy(new ShardRoutingDataSource(router));
+    }
+}
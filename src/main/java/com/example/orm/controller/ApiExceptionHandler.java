@@ -0,0 +1,21 @@
+package com.example.orm.controller;
+
+import com.example.orm.service.WarehouseNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Status codes for exceptions a handler lets propagate instead of mapping them itself.
+ */
+@RestControllerAdvice
+@Slf4j
+public class ApiExceptionHandler {
+
+    @ExceptionHandler(WarehouseNotFoundException.class)
+    public ResponseEntity<Void> warehouseNotFound(WarehouseNotFoundException e) {
+        log.error(e.getMessage());
+        return ResponseEntity.notFound().build();
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.orm.controller;
+
+import com.example.orm.cache.ProductLookupCache;
+import com.example.orm.dto.CacheStatsDTO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/cache")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*")
+public class CacheController {
+
+    private final ProductLookupCache cache;
+
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, CacheStatsDTO>> getStats() {
+        log.info("GET /api/cache/stats - Getting lookup cache statistics");
+        return ResponseEntity.ok(cache.stats());
+    }
+}
@@ -1,17 +1,40 @@
 package com.example.orm.controller;
 
+import com.example.orm.dto.CursorPageDTO;
+import com.example.orm.dto.InventorySummaryStatsDTO;
+import com.example.orm.dto.MembershipChangeDTO;
+import com.example.orm.dto.MembershipIndexStatsDTO;
+import com.example.orm.dto.MembershipSetDTO;
+import com.example.orm.dto.TaggedDTO;
+import com.example.orm.dto.WarehouseListItemDTO;
+import com.example.orm.dto.WarehouseSummaryDTO;
 import com.example.orm.dto.WarehouseWithProductIdsDTO;
 import com.example.orm.dto.WarehouseWithProductsDTO;
+import com.example.orm.events.InventoryChangeStream;
 import com.example.orm.model.DataWarehouse;
 import com.example.orm.model.Product;
+import com.example.orm.monitoring.QueryBudget;
 import com.example.orm.service.DataWarehouseService;
+import com.example.orm.service.EntityTags;
+import com.example.orm.service.InventorySummaryService;
+import com.example.orm.service.MembershipService;
+import com.example.orm.service.WarehouseExportService;
+import com.example.orm.service.WarehouseNotFoundException;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/warehouses")
@@ -21,26 +44,175 @@ import java.util.List;
 public class DataWarehouseController {
 
     private final DataWarehouseService service;
+    private final WarehouseExportService exportService;
+    private final InventoryChangeStream changeStream;
+    private final MembershipService membershipService;
+    private final InventorySummaryService summaryService;
 
     @GetMapping
-    public ResponseEntity<List<DataWarehouse>> getAllWarehouses() {
-        log.info("GET /api/warehouses - Getting all warehouses");
+    @QueryBudget(maxStatements = 2)
+    public ResponseEntity<CursorPageDTO<DataWarehouse>> getAllWarehouses(@RequestParam(required = false) String cursor,
+                                                                         @RequestParam(required = false) Integer size,
+                                                                         @RequestParam(required = false) String city) {
+        log.info("GET /api/warehouses - Getting warehouse page (cursor={}, size={}, city={})", cursor, size, city);
         try {
-            List<DataWarehouse> warehouses = service.getAllWarehouses();
-            log.info("Found {} warehouses", warehouses.size());
-            return ResponseEntity.ok(warehouses);
+            CursorPageDTO<DataWarehouse> page = service.getWarehousePage(cursor, size, city);
+            log.info("Found {} warehouses", page.getSize());
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid cursor for warehouse listing: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             log.error("Error getting all warehouses: ", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
 
+    @GetMapping("/list")
+    @QueryBudget(maxStatements = 2)
+    public ResponseEntity<CursorPageDTO<WarehouseListItemDTO>> getWarehouseList(@RequestParam(required = false) String cursor,
+                                                                                @RequestParam(required = false) Integer size,
+                                                                                @RequestParam(required = false) String city) {
+        log.info("GET /api/warehouses/list - Getting flat warehouse page (cursor={}, size={}, city={})", cursor, size, city);
+        try {
+            return ResponseEntity.ok(service.getWarehouseListPage(cursor, size, city));
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid cursor for warehouse listing: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error getting warehouse list: ", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    public void exportWarehouses(@RequestParam(defaultValue = "false") boolean fullProducts,
+                                 HttpServletResponse response) throws IOException {
+        log.info("GET /api/warehouses/export - Streaming warehouse inventory (fullProducts={})", fullProducts);
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding("UTF-8");
+        try {
+            exportService.exportNdjson(response.getOutputStream(), fullProducts);
+        } catch (IOException | RuntimeException e) {
+            log.error("Error exporting warehouses: ", e);
+            if (response.isCommitted()) {
+                // The 200 is already on the wire. Rethrowing makes the container drop the connection
+                // without the final chunk, so the client sees a broken body rather than a short one.
+                throw e;
+            }
+            response.sendError(HttpStatus.INTERNAL_SERVER_ERROR.value());
+        }
+    }
+
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId,
+                                    @RequestParam(required = false) Long since) {
+        // Browsers resend the last seen id on reconnect; since= lets other clients resume explicitly
+        Long resumeFrom = lastEventId != null ? lastEventId : since;
+        log.info("GET /api/warehouses/changes - Opening change stream (resumeFrom={})", resumeFrom);
+        return changeStream.subscribe(resumeFrom);
+    }
+
+    @GetMapping("/membership")
+    @QueryBudget(maxStatements = 0)
+    public ResponseEntity<MembershipSetDTO> combineMembership(@RequestParam String operation,
+                                                              @RequestParam List<Long> warehouseIds,
+                                                              @RequestParam(required = false) String cursor,
+                                                              @RequestParam(required = false) Integer size) {
+        log.info("GET /api/warehouses/membership - {} of warehouses {}", operation, warehouseIds);
+        try {
+            return ResponseEntity.ok(membershipService.combine(operation, warehouseIds, cursor, size));
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid membership query: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (WarehouseNotFoundException e) {
+            log.error("Warehouse not found for membership query: {}", warehouseIds);
+            return ResponseEntity.notFound().build();
+        } catch (Exception e) {
+            log.error("Error combining warehouse memberships: ", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @GetMapping("/membership/stats")
+    @QueryBudget(maxStatements = 0)
+    public ResponseEntity<MembershipIndexStatsDTO> getMembershipStats() {
+        log.info("GET /api/warehouses/membership/stats - Getting membership index statistics");
+        try {
+            return ResponseEntity.ok(membershipService.getStats());
+        } catch (Exception e) {
+            log.error("Error getting membership index statistics: ", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @GetMapping("/summary")
+    @QueryBudget(maxStatements = 0)
+    public ResponseEntity<CursorPageDTO<WarehouseSummaryDTO>> getSummaries(@RequestParam(required = false) String cursor,
+                                                                           @RequestParam(required = false) Integer size) {
+        log.info("GET /api/warehouses/summary - Getting inventory summary page (cursor={}, size={})", cursor, size);
+        try {
+            return ResponseEntity.ok(summaryService.getSummaryPage(cursor, size));
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid cursor for summary listing: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error getting inventory summaries: ", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @GetMapping("/summary/stats")
+    @QueryBudget(maxStatements = 0)
+    public ResponseEntity<InventorySummaryStatsDTO> getSummaryStats() {
+        log.info("GET /api/warehouses/summary/stats - Getting inventory summary statistics");
+        try {
+            return ResponseEntity.ok(summaryService.getStats());
+        } catch (Exception e) {
+            log.error("Error getting inventory summary statistics: ", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    // Answers right away; the full scan runs on the index's rebuild thread, see /summary/stats for its duration
+    @PostMapping("/summary/rebuild")
+    public ResponseEntity<Void> rebuildSummaries() {
+        log.info("POST /api/warehouses/summary/rebuild - Scheduling inventory summary rebuild");
+        try {
+            summaryService.rebuildInBackground();
+            return ResponseEntity.accepted().build();
+        } catch (Exception e) {
+            log.error("Error scheduling inventory summary rebuild: ", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @GetMapping("/{id}/summary")
+    @QueryBudget(maxStatements = 0)
+    public ResponseEntity<WarehouseSummaryDTO> getSummary(@PathVariable Long id) {
+        log.info("GET /api/warehouses/{}/summary - Getting inventory summary", id);
+        try {
+            return ResponseEntity.ok(summaryService.getSummary(id));
+        } catch (RuntimeException e) {
+            log.error("Warehouse with ID {} not found for summary", id);
+            return ResponseEntity.notFound().build();
+        } catch (Exception e) {
+            log.error("Error getting inventory summary: ", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     @GetMapping("/{id}")
-    public ResponseEntity<DataWarehouse> getWarehouseById(@PathVariable Long id) {
+    @QueryBudget(maxStatements = 2)
+    public ResponseEntity<DataWarehouse> getWarehouseById(@PathVariable Long id, WebRequest request) {
         log.info("GET /api/warehouses/{} - Getting warehouse by ID", id);
         try {
-            DataWarehouse warehouse = service.getWarehouseById(id);
-            return ResponseEntity.ok(warehouse);
+            // The entity graph is only loaded when the client's copy is stale
+            TaggedDTO<DataWarehouse> warehouse = service.getWarehouseIfModified(id, request::checkNotModified);
+            if (warehouse.getBody() == null) {
+                return null;
+            }
+            return ResponseEntity.ok().eTag(warehouse.getEtag()).body(warehouse.getBody());
         } catch (RuntimeException e) {
             log.error("Warehouse with ID {} not found", id);
             return ResponseEntity.notFound().build();
@@ -63,11 +235,26 @@ public class DataWarehouseController {
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<DataWarehouse> updateWarehouse(@PathVariable Long id, @RequestBody DataWarehouse warehouse) {
+    public ResponseEntity<DataWarehouse> updateWarehouse(@PathVariable Long id,
+                                                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                         @RequestBody DataWarehouse warehouse) {
         log.info("PUT /api/warehouses/{} - Updating warehouse", id);
+        if (ifMatch != null && !"*".equals(ifMatch)) {
+            Long version = EntityTags.warehouseVersion(ifMatch, id);
+            if (version == null) {
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+            }
+            warehouse.setVersion(version);
+        } else if (ifMatch == null && warehouse.getVersion() == null) {
+            // Without a version an update could silently overwrite one the client never saw
+            return ResponseEntity.status(HttpStatus.PRECONDITION_REQUIRED).build();
+        }
         try {
             DataWarehouse updatedWarehouse = service.updateWarehouse(id, warehouse);
             return ResponseEntity.ok(updatedWarehouse);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            log.warn("Warehouse with ID {} was modified concurrently", id);
+            return ResponseEntity.status(ifMatch != null ? HttpStatus.PRECONDITION_FAILED : HttpStatus.CONFLICT).build();
         } catch (RuntimeException e) {
             log.error("Warehouse with ID {} not found for update", id);
             return ResponseEntity.notFound().build();
@@ -128,8 +315,37 @@ public class DataWarehouseController {
         }
     }
 
+    @PostMapping("/{warehouseId}/link-products")
+    public ResponseEntity<MembershipChangeDTO> linkProducts(@PathVariable Long warehouseId, @RequestBody List<String> productIds) {
+        log.info("POST /api/warehouses/{}/link-products - Linking {} products", warehouseId, productIds.size());
+        try {
+            return ResponseEntity.ok(service.linkProducts(warehouseId, productIds));
+        } catch (RuntimeException e) {
+            log.error("Warehouse with ID {} not found for linking", warehouseId);
+            return ResponseEntity.notFound().build();
+        } catch (Exception e) {
+            log.error("Error linking products to warehouse: ", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @PostMapping("/{warehouseId}/unlink-products")
+    public ResponseEntity<MembershipChangeDTO> unlinkProducts(@PathVariable Long warehouseId, @RequestBody List<String> productIds) {
+        log.info("POST /api/warehouses/{}/unlink-products - Unlinking {} products", warehouseId, productIds.size());
+        try {
+            return ResponseEntity.ok(service.unlinkProducts(warehouseId, productIds));
+        } catch (RuntimeException e) {
+            log.error("Warehouse with ID {} not found for unlinking", warehouseId);
+            return ResponseEntity.notFound().build();
+        } catch (Exception e) {
+            log.error("Error unlinking products from warehouse: ", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     // Neue Endpunkte
     @GetMapping("/{warehouseId}/products/{productId}")
+    @QueryBudget(maxStatements = 1)
     public ResponseEntity<Product> getProductFromWarehouse(@PathVariable Long warehouseId, @PathVariable String productId) {
         log.info("GET /api/warehouses/{}/products/{} - Getting specific product from warehouse", warehouseId, productId);
         try {
@@ -144,12 +360,36 @@ public class DataWarehouseController {
         }
     }
 
+    @GetMapping("/{warehouseId}/contains")
+    @QueryBudget(maxStatements = 0)
+    public ResponseEntity<Map<String, Boolean>> checkMembership(@PathVariable Long warehouseId,
+                                                                @RequestParam List<String> productIds) {
+        log.info("GET /api/warehouses/{}/contains - Checking {} products", warehouseId, productIds.size());
+        try {
+            return ResponseEntity.ok(membershipService.checkMembership(warehouseId, productIds));
+        } catch (RuntimeException e) {
+            log.error("Warehouse with ID {} not found for membership check", warehouseId);
+            return ResponseEntity.notFound().build();
+        } catch (Exception e) {
+            log.error("Error checking warehouse membership: ", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     @GetMapping("/{warehouseId}/products")
-    public ResponseEntity<List<Product>> getProductsFromWarehouse(@PathVariable Long warehouseId) {
+    @QueryBudget(maxStatements = 2)
+    public ResponseEntity<List<Product>> getProductsFromWarehouse(@PathVariable Long warehouseId, WebRequest request) {
         log.info("GET /api/warehouses/{}/products - Getting all products from warehouse", warehouseId);
         try {
-            List<Product> products = service.getProductsFromWarehouse(warehouseId);
-            return ResponseEntity.ok(products);
+            TaggedDTO<List<Product>> products =
+                    service.getProductsFromWarehouseIfModified(warehouseId, request::checkNotModified);
+            if (products.getBody() == null) {
+                return null;
+            }
+            return ResponseEntity.ok().eTag(products.getEtag()).body(products.getBody());
+        } catch (WarehouseNotFoundException e) {
+            log.error("Warehouse with ID {} not found", warehouseId);
+            return ResponseEntity.notFound().build();
         } catch (Exception e) {
             log.error("Error getting products from warehouse: ", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
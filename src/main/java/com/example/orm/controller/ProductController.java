@@ -1,12 +1,28 @@
 package com.example.orm.controller;
 
+import com.example.orm.dto.CursorPageDTO;
+import com.example.orm.dto.ImportReportDTO;
+import com.example.orm.dto.ProductSearchHitDTO;
+import com.example.orm.dto.StockAdjustmentDTO;
+import com.example.orm.dto.StockAdjustmentResultDTO;
 import com.example.orm.model.Product;
+import com.example.orm.monitoring.QueryBudget;
+import com.example.orm.service.EntityTags;
+import com.example.orm.service.MembershipService;
+import com.example.orm.service.ProductImportService;
+import com.example.orm.service.ProductSearchService;
 import com.example.orm.service.ProductService;
+import com.example.orm.service.WarehouseNotFoundException;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -18,6 +34,9 @@ import java.util.List;
 public class ProductController {
 
     private final ProductService service;
+    private final ProductImportService importService;
+    private final ProductSearchService searchService;
+    private final MembershipService membershipService;
 
     @PostMapping
     public ResponseEntity<Product> addProduct(@RequestBody Product product) {
@@ -31,13 +50,64 @@ public class ProductController {
         }
     }
 
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<ImportReportDTO> importProducts(@RequestParam(required = false) Long warehouseId,
+                                                         HttpServletRequest request) {
+        log.info("POST /api/products/import - Bulk importing products (warehouseId={})", warehouseId);
+        try {
+            ProductImportService.Format format = MediaType.parseMediaType(request.getContentType())
+                    .isCompatibleWith(MediaType.parseMediaType("text/csv"))
+                    ? ProductImportService.Format.CSV
+                    : ProductImportService.Format.NDJSON;
+            ImportReportDTO report = importService.importProducts(request.getInputStream(), format, warehouseId);
+            return ResponseEntity.ok(report);
+        } catch (IllegalArgumentException e) {
+            log.error("Rejected product import: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (WarehouseNotFoundException e) {
+            // Answered with 404 by ApiExceptionHandler
+            throw e;
+        } catch (Exception e) {
+            log.error("Error importing products: ", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @GetMapping("/search")
+    @QueryBudget(maxStatements = 0)
+    public ResponseEntity<CursorPageDTO<ProductSearchHitDTO>> searchProducts(@RequestParam(required = false) String q,
+                                                                             @RequestParam(required = false) String category,
+                                                                             @RequestParam(required = false) Long warehouseId,
+                                                                             @RequestParam(required = false) String cursor,
+                                                                             @RequestParam(required = false) Integer size) {
+        log.info("GET /api/products/search - Searching products (q={}, category={}, warehouseId={})", q, category, warehouseId);
+        try {
+            return ResponseEntity.ok(searchService.search(q, category, warehouseId, cursor, size));
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid product search: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (WarehouseNotFoundException e) {
+            log.error("Warehouse with ID {} not found for product search", warehouseId);
+            return ResponseEntity.notFound().build();
+        } catch (Exception e) {
+            log.error("Error searching products: ", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     @GetMapping("/{id}")
-    public ResponseEntity<Product> getProductById(@PathVariable String id) {
+    @QueryBudget(maxStatements = 1)
+    public ResponseEntity<Product> getProductById(@PathVariable String id, WebRequest request) {
         log.info("GET /api/products/{} - Getting product by ID", id);
         try {
             Product product = service.getProductById(id);
             if (product != null) {
-                return ResponseEntity.ok(product);
+                // Served from the lookup cache, so a 304 costs neither a query nor serialization
+                String etag = EntityTags.of(product);
+                if (request.checkNotModified(etag)) {
+                    return null;
+                }
+                return ResponseEntity.ok().eTag(etag).body(product);
             } else {
                 return ResponseEntity.notFound().build();
             }
@@ -47,13 +117,31 @@ public class ProductController {
         }
     }
 
+    @GetMapping("/{id}/warehouses")
+    @QueryBudget(maxStatements = 0)
+    public ResponseEntity<List<Long>> getWarehousesOfProduct(@PathVariable String id) {
+        log.info("GET /api/products/{}/warehouses - Getting warehouses stocking product", id);
+        try {
+            return ResponseEntity.ok(membershipService.getWarehousesOfProduct(id));
+        } catch (Exception e) {
+            log.error("Error getting warehouses of product: ", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     @GetMapping
-    public ResponseEntity<List<Product>> getAllProducts() {
-        log.info("GET /api/products - Getting all products");
+    @QueryBudget(maxStatements = 1)
+    public ResponseEntity<CursorPageDTO<Product>> getAllProducts(@RequestParam(required = false) String cursor,
+                                                                 @RequestParam(required = false) Integer size,
+                                                                 @RequestParam(required = false) String category) {
+        log.info("GET /api/products - Getting product page (cursor={}, size={}, category={})", cursor, size, category);
         try {
-            List<Product> products = service.getAllProducts();
-            log.info("Found {} products", products.size());
-            return ResponseEntity.ok(products);
+            CursorPageDTO<Product> page = service.getProductPage(cursor, size, category);
+            log.info("Found {} products", page.getSize());
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid cursor for product listing: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             log.error("Error getting all products: ", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -61,18 +149,57 @@ public class ProductController {
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<Product> updateProduct(@PathVariable String id, @RequestBody Product product) {
+    public ResponseEntity<Product> updateProduct(@PathVariable String id,
+                                                 @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                 @RequestBody Product product) {
         log.info("PUT /api/products/{} - Updating product", id);
+        if (ifMatch != null && !"*".equals(ifMatch)) {
+            Long version = EntityTags.productVersion(ifMatch, id);
+            if (version == null) {
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+            }
+            product.setVersion(version);
+        } else if (ifMatch == null && product.getVersion() == null) {
+            // Without a version an update could silently overwrite one the client never saw
+            return ResponseEntity.status(HttpStatus.PRECONDITION_REQUIRED).build();
+        }
         try {
             product.setProductID(id);
             Product updatedProduct = service.updateProduct(product);
-            return ResponseEntity.ok(updatedProduct);
+            return ResponseEntity.ok().eTag(EntityTags.of(updatedProduct)).body(updatedProduct);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            log.warn("Product with ID {} was modified concurrently", id);
+            return ResponseEntity.status(ifMatch != null ? HttpStatus.PRECONDITION_FAILED : HttpStatus.CONFLICT).build();
+        } catch (RuntimeException e) {
+            log.error("Product with ID {} not found for update", id);
+            return ResponseEntity.notFound().build();
         } catch (Exception e) {
             log.error("Error updating product: ", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
 
+    @PostMapping("/{id}/stock")
+    public ResponseEntity<StockAdjustmentResultDTO> adjustStock(@PathVariable String id, @RequestBody StockAdjustmentDTO adjustment) {
+        log.info("POST /api/products/{}/stock - Adjusting stock by {} (synchronous={})",
+                id, adjustment.getDelta(), adjustment.isSynchronous());
+        try {
+            StockAdjustmentResultDTO result = service.adjustStock(id, adjustment);
+            return result.isApplied()
+                    ? ResponseEntity.ok(result)
+                    : ResponseEntity.status(HttpStatus.ACCEPTED).body(result);
+        } catch (IllegalArgumentException e) {
+            log.error("Rejected stock adjustment: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (RuntimeException e) {
+            log.error("Product with ID {} not found for stock adjustment", id);
+            return ResponseEntity.notFound().build();
+        } catch (Exception e) {
+            log.error("Error adjusting stock: ", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteProduct(@PathVariable String id) {
         log.info("DELETE /api/products/{} - Deleting product", id);
@@ -0,0 +1,66 @@
+package com.example.orm.datasource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fair semaphore in front of the connection pool. With virtual threads there is no request
+ * thread cap any more, so thousands of requests can reach the pool at once; queueing them
+ * here in FIFO order keeps them from timing out inside Hikari and makes the wait measurable.
+ */
+public class DbConcurrencyLimiter implements MeterBinder {
+
+    private final Semaphore permits;
+    private final int maxPermits;
+    private final Duration timeout;
+    private volatile Timer waitTimer;
+
+    public DbConcurrencyLimiter(int maxPermits, Duration timeout) {
+        this.permits = new Semaphore(maxPermits, true);
+        this.maxPermits = maxPermits;
+        this.timeout = timeout;
+    }
+
+    void acquire() throws SQLTransientConnectionException {
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a database permit");
+        }
+        Timer timer = waitTimer;
+        if (timer != null) {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (!acquired) {
+            throw new SQLTransientConnectionException("No database permit available within " + timeout);
+        }
+    }
+
+    void release() {
+        permits.release();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        waitTimer = Timer.builder("db.limiter.wait")
+                .description("Time spent queueing for a database permit")
+                .publishPercentileHistogram()
+                .register(registry);
+        Gauge.builder("db.limiter.queued", permits, Semaphore::getQueueLength)
+                .description("Threads waiting for a database permit")
+                .register(registry);
+        Gauge.builder("db.limiter.active", permits, p -> maxPermits - p.availablePermits())
+                .description("Database permits in use")
+                .register(registry);
+    }
+}
@@ -0,0 +1,254 @@
+package com.example.orm.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpMethod;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Picks the pool for each physical connection. Read-only transactions go to a healthy replica,
+ * round-robin across requests but the same one for every statement of a request, so a request
+ * never sees a replica go backwards. Everything else stays on the primary, as do requests that
+ * modify data (anything but GET/HEAD) or send {@value #READ_YOUR_WRITES_HEADER}, and code wrapped
+ * in {@link #onPrimary}. A replica whose connection fails is ejected until the background health
+ * check can validate a connection again; without healthy replicas reads fall back to the primary.
+ */
+@Slf4j
+public class ReplicaRouter implements MeterBinder, AutoCloseable {
+
+    public static final String READ_YOUR_WRITES_HEADER = "X-Read-Your-Writes";
+
+    private static final String REPLICA_ATTRIBUTE = ReplicaRouter.class.getName() + ".replica";
+    private static final ThreadLocal<Boolean> PRIMARY_ONLY = new ThreadLocal<>();
+
+    enum Reason { READ_WRITE, READ_ONLY, PINNED, FALLBACK }
+
+    private final HikariDataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final int validationTimeoutSeconds;
+    private final ScheduledExecutorService healthChecks;
+    private final Map<String, Counter> routed = new ConcurrentHashMap<>();
+    private volatile MeterRegistry registry;
+
+    public ReplicaRouter(HikariDataSource primary, List<HikariDataSource> replicaPools,
+                         Duration healthCheckInterval, Duration validationTimeout) {
+        this.primary = primary;
+        replicaPools.forEach(pool -> replicas.add(new Replica(pool)));
+        this.validationTimeoutSeconds = (int) Math.max(1, validationTimeout.toSeconds());
+        this.healthChecks = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "replica-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (!replicas.isEmpty()) {
+            healthChecks.scheduleWithFixedDelay(this::checkReplicas, 0, healthCheckInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Runs {@code action} with every connection it opens taken from the primary, e.g. for reads
+     * whose result outlives replication lag (caches, in-memory indexes).
+     */
+    public static <T> T onPrimary(Supplier<T> action) {
+        if (PRIMARY_ONLY.get() != null) {
+            return action.get();
+        }
+        PRIMARY_ONLY.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            PRIMARY_ONLY.remove();
+        }
+    }
+
+    public static void onPrimary(Runnable action) {
+        onPrimary(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    Connection getConnection() throws SQLException {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return fromPrimary(Reason.READ_WRITE);
+        }
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (PRIMARY_ONLY.get() != null || pinnedToPrimary(request)) {
+            return fromPrimary(Reason.PINNED);
+        }
+        for (int attempt = 0; attempt < replicas.size(); attempt++) {
+            Replica replica = pick(request);
+            if (replica == null) {
+                break;
+            }
+            try {
+                Connection connection = replica.pool.getConnection();
+                count(replica.name(), Reason.READ_ONLY);
+                return connection;
+            } catch (SQLException e) {
+                eject(replica, e);
+                if (request != null) {
+                    request.removeAttribute(REPLICA_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+                }
+            }
+        }
+        return fromPrimary(Reason.FALLBACK);
+    }
+
+    Connection getConnection(String username, String password) throws SQLException {
+        count(primary.getPoolName(), Reason.READ_WRITE);
+        return primary.getConnection(username, password);
+    }
+
+    HikariDataSource primary() {
+        return primary;
+    }
+
+    public int healthyReplicas() {
+        return (int) replicas.stream().filter(replica -> replica.healthy).count();
+    }
+
+    void checkReplicas() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.pool.getConnection()) {
+                if (!connection.isValid(validationTimeoutSeconds)) {
+                    throw new SQLException("Connection failed validation");
+                }
+                if (!replica.healthy) {
+                    replica.healthy = true;
+                    log.info("Replica {} passed its health check and is back in rotation", replica.name());
+                }
+            } catch (SQLException e) {
+                eject(replica, e);
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        Gauge.builder("datasource.replicas.healthy", this, ReplicaRouter::healthyReplicas)
+                .description("Replicas currently receiving read-only transactions")
+                .register(registry);
+        replicas.forEach(replica -> FunctionCounter.builder("datasource.replica.ejections", replica.ejections, AtomicLong::get)
+                .description("Times the replica was taken out of rotation after a failed connection or health check")
+                .tag("replica", replica.name())
+                .register(registry));
+        // The replica pools are not beans, so Spring Boot does not attach the hikaricp.* meters to them
+        bindPoolMetrics(primary, registry);
+        replicas.forEach(replica -> bindPoolMetrics(replica.pool, registry));
+    }
+
+    @Override
+    public void close() {
+        healthChecks.shutdownNow();
+        replicas.forEach(replica -> replica.pool.close());
+        primary.close();
+    }
+
+    private Connection fromPrimary(Reason reason) throws SQLException {
+        count(primary.getPoolName(), reason);
+        return primary.getConnection();
+    }
+
+    private Replica pick(RequestAttributes request) {
+        if (request != null && request.getAttribute(REPLICA_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof Replica chosen
+                && chosen.healthy) {
+            return chosen;
+        }
+        int size = replicas.size();
+        int start = Math.floorMod(nextReplica.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.healthy) {
+                if (request != null) {
+                    request.setAttribute(REPLICA_ATTRIBUTE, replica, RequestAttributes.SCOPE_REQUEST);
+                }
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private void eject(Replica replica, SQLException cause) {
+        if (replica.healthy) {
+            replica.healthy = false;
+            replica.ejections.incrementAndGet();
+            log.warn("Ejecting replica {} from rotation: {}", replica.name(), cause.getMessage());
+        }
+    }
+
+    private void count(String target, Reason reason) {
+        MeterRegistry meters = registry;
+        if (meters == null) {
+            return;
+        }
+        routed.computeIfAbsent(target + '/' + reason, key -> Counter.builder("datasource.routing")
+                        .description("Physical connections handed out, by pool and routing reason")
+                        .tag("target", target)
+                        .tag("reason", reason.name().toLowerCase())
+                        .register(meters))
+                .increment();
+    }
+
+    private static boolean pinnedToPrimary(RequestAttributes attributes) {
+        if (!(attributes instanceof ServletRequestAttributes servletAttributes)) {
+            return false;
+        }
+        HttpServletRequest request = servletAttributes.getRequest();
+        return !(HttpMethod.GET.matches(request.getMethod()) || HttpMethod.HEAD.matches(request.getMethod()))
+                || request.getHeader(READ_YOUR_WRITES_HEADER) != null;
+    }
+
+    static void bindPoolMetrics(HikariDataSource pool, MeterRegistry registry) {
+        // Spring Boot reaches the primary through unwrap() and may have bound it already
+        if (pool.getMetricsTrackerFactory() != null || pool.getMetricRegistry() != null) {
+            return;
+        }
+        try {
+            pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+        } catch (RuntimeException e) {
+            log.warn("Could not bind pool metrics for {}: {}", pool.getPoolName(), e.getMessage());
+        }
+    }
+
+    private static final class Replica {
+
+        private final HikariDataSource pool;
+        private final AtomicLong ejections = new AtomicLong();
+        private volatile boolean healthy = true;
+
+        private Replica(HikariDataSource pool) {
+            this.pool = pool;
+        }
+
+        String name() {
+            return pool.getPoolName();
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.orm.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskDecorator;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Picks the shard pool for each physical connection. Warehouse IDs are allocated so that
+ * {@code (id - 1) mod shards} is the shard holding the warehouse and its links; code wrapped in
+ * {@link #onShard} gets that shard's connections, everything else the reference shard (0), which
+ * owns the product catalog. {@link #scatter} runs one task per shard in parallel on a fixed pool;
+ * the {@link TaskDecorator} carries the submitting thread's context over to the pool threads.
+ */
+@Slf4j
+public class ShardRouter implements MeterBinder, AutoCloseable {
+
+    public static final int REFERENCE_SHARD = 0;
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private final List<HikariDataSource> shards;
+    private final AtomicInteger nextShard = new AtomicInteger();
+    private final ExecutorService scatterPool;
+    private final TaskDecorator taskDecorator;
+    private volatile List<Counter> connections = List.of();
+    private volatile Timer scatterTimer;
+
+    public ShardRouter(List<HikariDataSource> shards, int scatterThreads, TaskDecorator taskDecorator) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.shards = List.copyOf(shards);
+        AtomicInteger threads = new AtomicInteger();
+        this.scatterPool = Executors.newFixedThreadPool(Math.max(shards.size(), scatterThreads), task -> {
+            Thread thread = new Thread(task, "shard-scatter-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.taskDecorator = taskDecorator;
+    }
+
+    /**
+     * Runs {@code action} with every connection it opens taken from {@code shard}. Transactions
+     * bind their connection at the first statement, so the scope has to be entered before that.
+     */
+    public static <T> T onShard(int shard, Supplier<T> action) {
+        Integer previous = CURRENT.get();
+        CURRENT.set(shard);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    public static void onShard(int shard, Runnable action) {
+        onShard(shard, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Shard whose connections the current thread gets.
+     */
+    public static int currentShard() {
+        Integer shard = CURRENT.get();
+        return shard == null ? REFERENCE_SHARD : shard;
+    }
+
+    /**
+     * Runs {@code action} once per shard, in order and scoped to it, when {@code dataSource} routes
+     * across shards; otherwise once for the reference shard. For full scans of sharded tables.
+     */
+    public static void forEachShard(DataSource dataSource, IntConsumer action) {
+        ShardRouter router = of(dataSource);
+        if (router == null) {
+            action.accept(REFERENCE_SHARD);
+            return;
+        }
+        for (int shard = 0; shard < router.shardCount(); shard++) {
+            int current = shard;
+            onShard(current, () -> action.accept(current));
+        }
+    }
+
+    /**
+     * The router behind {@code dataSource}, or null if it does not route across shards.
+     */
+    public static ShardRouter of(DataSource dataSource) {
+        try {
+            if (dataSource != null && dataSource.isWrapperFor(ShardRoutingDataSource.class)) {
+                return dataSource.unwrap(ShardRoutingDataSource.class).router();
+            }
+        } catch (SQLException e) {
+            log.warn("Could not inspect the DataSource for shard routing: {}", e.getMessage());
+        }
+        return null;
+    }
+
+    public int shardCount() {
+        return shards.size();
+    }
+
+    public int shardOf(long warehouseId) {
+        return (int) Math.floorMod(warehouseId - 1, (long) shards.size());
+    }
+
+    /**
+     * Shard for a warehouse that does not exist yet; round-robin, so shards fill evenly.
+     */
+    public int nextShard() {
+        return Math.floorMod(nextShard.getAndIncrement(), shards.size());
+    }
+
+    /**
+     * Runs {@code task} for every shard in parallel, each scoped to its shard, and returns the
+     * results in shard order.
+     */
+    public <T> List<T> scatter(IntFunction<T> task) {
+        List<Integer> all = new ArrayList<>(shards.size());
+        for (int shard = 0; shard < shards.size(); shard++) {
+            all.add(shard);
+        }
+        return scatter(all, task);
+    }
+
+    /**
+     * Like {@link #scatter(IntFunction)}, for the given shards only. Tasks must not scatter again:
+     * the pool is bounded, so nested fan-outs could wait on each other.
+     */
+    public <T> List<T> scatter(Collection<Integer> targets, IntFunction<T> task) {
+        long start = System.nanoTime();
+        List<Future<T>> futures = new ArrayList<>(targets.size());
+        for (int shard : targets) {
+            FutureTask<T> future = new FutureTask<>(() -> onShard(shard, () -> task.apply(shard)));
+            scatterPool.execute(taskDecorator.decorate(future));
+            futures.add(future);
+        }
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for shards", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Shard task failed", e.getCause());
+        }
+        Timer timer = scatterTimer;
+        if (timer != null) {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        return results;
+    }
+
+    Connection getConnection() throws SQLException {
+        int shard = currentShard();
+        if (shard >= shards.size()) {
+            throw new SQLException("No shard " + shard + ", only " + shards.size() + " configured");
+        }
+        List<Counter> counters = connections;
+        if (!counters.isEmpty()) {
+            counters.get(shard).increment();
+        }
+        return shards.get(shard).getConnection();
+    }
+
+    Connection getConnection(String username, String password) throws SQLException {
+        return shards.get(currentShard()).getConnection(username, password);
+    }
+
+    HikariDataSource reference() {
+        return shards.get(REFERENCE_SHARD);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("datasource.shards", shards, List::size)
+                .description("Shards warehouses are spread over")
+                .register(registry);
+        List<Counter> counters = new ArrayList<>();
+        for (HikariDataSource shard : shards) {
+            counters.add(Counter.builder("datasource.shard.connections")
+                    .description("Physical connections handed out, by shard")
+                    .tag("shard", shard.getPoolName())
+                    .register(registry));
+            ReplicaRouter.bindPoolMetrics(shard, registry);
+        }
+        connections = counters;
+        scatterTimer = Timer.builder("datasource.shard.scatter")
+                .description("Fan-outs across shards, until the slowest shard answered")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    @Override
+    public void close() {
+        scatterPool.shutdownNow();
+        shards.forEach(HikariDataSource::close);
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.orm.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CategorySummaryDTO {
+    private String productCategory;
+    private String productUnit;
+    private long productCount;
+    private long totalQuantity;
+}
@@ -0,0 +1,16 @@
+package com.example.orm.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportReportDTO {
+    private long rowsRead;
+    private long rowsUpserted;
+    private long rowsLinked;
+    private long durationMillis;
+    private double rowsPerSecond;
+}
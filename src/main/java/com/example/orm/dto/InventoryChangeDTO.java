@@ -0,0 +1,42 @@
+package com.example.orm.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * One entry of the {@code /api/warehouses/changes} stream. Only the fields relevant to the
+ * type are set; clients fetch full entities themselves when they need them.
+ */
+@Data
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class InventoryChangeDTO {
+
+    public enum Type {
+        PRODUCT_CREATED, PRODUCT_UPDATED, PRODUCT_DELETED, QUANTITY_CHANGED,
+        PRODUCT_LINKED, PRODUCT_UNLINKED, PRODUCTS_IMPORTED,
+        WAREHOUSE_CREATED, WAREHOUSE_UPDATED, WAREHOUSE_DELETED,
+        // Events up to this sequence were dropped for this subscriber; reload state and carry on
+        RESYNC
+    }
+
+    // Assigned when the event is published, i.e. in commit order
+    private long sequence;
+    private Type type;
+    private Instant timestamp;
+    private Long warehouseId;
+    private String productId;
+    private List<String> productIds;
+    private Integer quantity;
+    private Long delta;
+    private Long rows;
+
+    public InventoryChangeDTO(Type type) {
+        this.type = type;
+        this.timestamp = Instant.now();
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.orm.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventorySummaryStatsDTO {
+    private int warehouses;
+    private int products;
+    private long links;
+    private long rebuildMillis;
+}
@@ -0,0 +1,14 @@
+package com.example.orm.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MembershipChangeDTO {
+    private Long warehouseId;
+    private int requested;
+    private int changed;
+}
@@ -0,0 +1,21 @@
+package com.example.orm.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MembershipIndexStatsDTO {
+    private int warehouses;
+    private int products;
+    private long links;
+    // Both directions (warehouse -> products and product -> warehouses)
+    private long bitmapBytes;
+    // Estimate for the ID <-> ordinal maps
+    private long dictionaryBytes;
+    private long bitmapBytesPerMillionLinks;
+    // Slots of removed products and warehouses, reclaimed by the next rebuild
+    private int removedOrdinals;
+}
@@ -0,0 +1,19 @@
+package com.example.orm.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MembershipSetDTO {
+    private String operation;
+    private List<Long> warehouseIds;
+    // Size of the whole result, not just this page
+    private long count;
+    private List<String> productIds;
+    private String nextCursor;
+}
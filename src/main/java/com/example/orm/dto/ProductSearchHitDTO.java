@@ -0,0 +1,16 @@
+package com.example.orm.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductSearchHitDTO {
+    private String productID;
+    private String productName;
+    private String productCategory;
+    // Sum over query terms: 3 exact token, 2 token prefix, 1 inside a token
+    private int score;
+}
@@ -0,0 +1,11 @@
+package com.example.orm.dto;
+
+import lombok.Data;
+
+@Data
+public class StockAdjustmentDTO {
+    // Positive to add stock, negative to remove it
+    private int delta;
+    // Apply immediately and return the new quantity instead of buffering the delta
+    private boolean synchronous;
+}
@@ -0,0 +1,16 @@
+package com.example.orm.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockAdjustmentResultDTO {
+    private String productID;
+    private int delta;
+    // Null when the delta was only buffered
+    private Integer productQuantity;
+    private boolean applied;
+}
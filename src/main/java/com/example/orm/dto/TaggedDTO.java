@@ -0,0 +1,17 @@
+package com.example.orm.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A response body and the ETag read with it. {@code body} is null when the client's copy was
+ * still current and nothing was loaded.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaggedDTO<T> {
+    private String etag;
+    private T body;
+}
@@ -0,0 +1,38 @@
+package com.example.orm.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Flat warehouse row for list views: warehouse columns plus the IDs of its products,
+ * loaded with one projection query per page instead of one collection fetch per warehouse.
+ */
+@Data
+@NoArgsConstructor
+public class WarehouseListItemDTO {
+    private Long warehouseID;
+    private String warehouseName;
+    private String warehouseAddress;
+    private String warehousePostalCode;
+    private String warehouseCity;
+    private String warehouseCountry;
+    private LocalDateTime timestamp;
+    private List<String> productIds = new ArrayList<>();
+
+    // Used by the JPQL constructor expression in DataWarehouseRepository
+    public WarehouseListItemDTO(Long warehouseID, String warehouseName, String warehouseAddress,
+                                String warehousePostalCode, String warehouseCity, String warehouseCountry,
+                                LocalDateTime timestamp) {
+        this.warehouseID = warehouseID;
+        this.warehouseName = warehouseName;
+        this.warehouseAddress = warehouseAddress;
+        this.warehousePostalCode = warehousePostalCode;
+        this.warehouseCity = warehouseCity;
+        this.warehouseCountry = warehouseCountry;
+        this.timestamp = timestamp;
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.orm.dto;
+
+/**
+ * Projection of a single warehouse_products row.
+ */
+public interface WarehouseProductLink {
+    Long getWarehouseId();
+
+    String getProductId();
+}
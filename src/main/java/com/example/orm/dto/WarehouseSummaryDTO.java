@@ -0,0 +1,20 @@
+package com.example.orm.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Product count and stock totals of one warehouse, overall and per category and unit
+ * (quantities in different units are never added up).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WarehouseSummaryDTO {
+    private Long warehouseID;
+    private long productCount;
+    private List<CategorySummaryDTO> categories;
+}
@@ -0,0 +1,11 @@
+package com.example.orm.dto;
+
+/**
+ * Version of a warehouse row plus the sum of its products' versions. Every change to the row,
+ * its links or one of its products moves at least one of the two numbers.
+ */
+public interface WarehouseVersion {
+    Long getVersion();
+
+    Long getProductVersions();
+}
@@ -0,0 +1,92 @@
+package com.example.orm.events;
+
+import com.example.orm.datasource.TransactionHooks;
+import com.example.orm.dto.InventoryChangeDTO;
+import com.example.orm.dto.InventoryChangeDTO.Type;
+import com.example.orm.model.Product;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Entry point for the write paths. Inside a transaction the event is held back until commit, so
+ * subscribers never see a change that was rolled back; outside one it goes out immediately.
+ */
+@Component
+@RequiredArgsConstructor
+public class InventoryChangePublisher {
+
+    private final InventoryChangeStream stream;
+
+    public void productCreated(Product product) {
+        publish(productEvent(Type.PRODUCT_CREATED, product));
+    }
+
+    public void productUpdated(Product product) {
+        publish(productEvent(Type.PRODUCT_UPDATED, product));
+    }
+
+    public void productDeleted(String productId) {
+        InventoryChangeDTO event = new InventoryChangeDTO(Type.PRODUCT_DELETED);
+        event.setProductId(productId);
+        publish(event);
+    }
+
+    /**
+     * @param quantity the resulting quantity, or null when only the delta is known
+     */
+    public void quantityChanged(String productId, long delta, Integer quantity) {
+        InventoryChangeDTO event = new InventoryChangeDTO(Type.QUANTITY_CHANGED);
+        event.setProductId(productId);
+        event.setDelta(delta);
+        event.setQuantity(quantity);
+        publish(event);
+    }
+
+    public void productsLinked(Long warehouseId, Collection<String> productIds) {
+        publish(linkEvent(Type.PRODUCT_LINKED, warehouseId, productIds));
+    }
+
+    public void productsUnlinked(Long warehouseId, Collection<String> productIds) {
+        publish(linkEvent(Type.PRODUCT_UNLINKED, warehouseId, productIds));
+    }
+
+    public void productsImported(long rows, Long warehouseId) {
+        InventoryChangeDTO event = new InventoryChangeDTO(Type.PRODUCTS_IMPORTED);
+        event.setRows(rows);
+        event.setWarehouseId(warehouseId);
+        publish(event);
+    }
+
+    public void warehouseCreated(Long warehouseId, Collection<String> productIds) {
+        publish(linkEvent(Type.WAREHOUSE_CREATED, warehouseId, productIds.isEmpty() ? null : productIds));
+    }
+
+    public void warehouseUpdated(Long warehouseId) {
+        publish(linkEvent(Type.WAREHOUSE_UPDATED, warehouseId, null));
+    }
+
+    public void warehouseDeleted(Long warehouseId) {
+        publish(linkEvent(Type.WAREHOUSE_DELETED, warehouseId, null));
+    }
+
+    private void publish(InventoryChangeDTO event) {
+        TransactionHooks.afterCommit(() -> stream.publish(event));
+    }
+
+    private static InventoryChangeDTO productEvent(Type type, Product product) {
+        InventoryChangeDTO event = new InventoryChangeDTO(type);
+        event.setProductId(product.getProductID());
+        event.setQuantity(product.getProductQuantity());
+        return event;
+    }
+
+    private static InventoryChangeDTO linkEvent(Type type, Long warehouseId, Collection<String> productIds) {
+        InventoryChangeDTO event = new InventoryChangeDTO(type);
+        event.setWarehouseId(warehouseId);
+        event.setProductIds(productIds == null ? null : List.copyOf(productIds));
+        return event;
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.orm.events;
+
+import com.example.orm.dto.InventoryChangeDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans committed inventory changes out to SSE subscribers. Publishing only appends to a bounded
+ * history and offers the event to each subscriber's bounded queue; a per-subscriber drain task
+ * does the blocking socket writes, so a slow client delays nobody but itself. When its queue
+ * overflows the backlog is replaced by a single RESYNC event. Sequence numbers restart with the
+ * application, which resuming clients also see as a RESYNC.
+ */
+@Component
+@Slf4j
+public class InventoryChangeStream implements MeterBinder {
+
+    // Queued ahead of real events only when the subscriber is idle; written as an SSE comment
+    private static final InventoryChangeDTO HEARTBEAT = new InventoryChangeDTO();
+
+    private final Deque<InventoryChangeDTO> history = new ArrayDeque<>();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService senders;
+    private final int historySize;
+    private final int subscriberBuffer;
+    private final Duration timeout;
+    private long sequence;
+    private volatile Counter published;
+    private volatile Counter resyncs;
+
+    public InventoryChangeStream(@Value("${app.changes.history-size:1024}") int historySize,
+                                 @Value("${app.changes.subscriber-buffer:256}") int subscriberBuffer,
+                                 @Value("${app.changes.timeout:PT30M}") Duration timeout) {
+        this.historySize = historySize;
+        this.subscriberBuffer = subscriberBuffer;
+        this.timeout = timeout;
+        AtomicInteger threads = new AtomicInteger();
+        this.senders = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "inventory-changes-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Registers a subscriber. With {@code lastSequence}, retained events after it are replayed
+     * first; if some of them are no longer retained the subscriber starts with a RESYNC.
+     */
+    public SseEmitter subscribe(Long lastSequence) {
+        Subscriber subscriber = new Subscriber(new SseEmitter(timeout.toMillis()));
+        subscriber.emitter.onCompletion(() -> subscribers.remove(subscriber));
+        subscriber.emitter.onTimeout(() -> subscribers.remove(subscriber));
+        subscriber.emitter.onError(e -> subscribers.remove(subscriber));
+        synchronized (this) {
+            if (lastSequence != null && lastSequence != sequence) {
+                InventoryChangeDTO oldest = history.peekFirst();
+                if (lastSequence > sequence || oldest == null || lastSequence < oldest.getSequence() - 1) {
+                    subscriber.offer(resync(sequence));
+                } else {
+                    history.stream()
+                            .filter(event -> event.getSequence() > lastSequence)
+                            .forEach(subscriber::offer);
+                }
+            }
+            subscribers.add(subscriber);
+        }
+        return subscriber.emitter;
+    }
+
+    public synchronized void publish(InventoryChangeDTO event) {
+        event.setSequence(++sequence);
+        history.addLast(event);
+        if (history.size() > historySize) {
+            history.removeFirst();
+        }
+        subscribers.forEach(subscriber -> subscriber.offer(event));
+        if (published != null) {
+            published.increment();
+        }
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    @Scheduled(fixedDelayString = "${app.changes.heartbeat-interval:PT15S}")
+    public void heartbeat() {
+        // Keeps proxies from closing idle streams and surfaces dead connections
+        subscribers.forEach(subscriber -> subscriber.offerIfIdle(HEARTBEAT));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("changes.subscribers", subscribers, Set::size)
+                .description("Open inventory change streams")
+                .register(registry);
+        published = Counter.builder("changes.published")
+                .description("Inventory change events published")
+                .register(registry);
+        resyncs = Counter.builder("changes.resyncs")
+                .description("Subscriber backlogs dropped in favour of a RESYNC event")
+                .register(registry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        senders.shutdownNow();
+    }
+
+    private static InventoryChangeDTO resync(long upToSequence) {
+        InventoryChangeDTO event = new InventoryChangeDTO(InventoryChangeDTO.Type.RESYNC);
+        event.setSequence(upToSequence);
+        return event;
+    }
+
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final BlockingQueue<InventoryChangeDTO> queue = new ArrayBlockingQueue<>(subscriberBuffer);
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        // Called under the stream's lock, so overflow handling cannot interleave with another publish
+        void offer(InventoryChangeDTO event) {
+            if (!queue.offer(event)) {
+                queue.clear();
+                queue.offer(resync(event.getSequence()));
+                if (resyncs != null) {
+                    resyncs.increment();
+                }
+            }
+            schedule();
+        }
+
+        void offerIfIdle(InventoryChangeDTO event) {
+            if (queue.isEmpty() && queue.offer(event)) {
+                schedule();
+            }
+        }
+
+        private void schedule() {
+            if (draining.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                InventoryChangeDTO event;
+                while ((event = queue.poll()) != null) {
+                    if (event == HEARTBEAT) {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    } else {
+                        emitter.send(SseEmitter.event()
+                                .id(String.valueOf(event.getSequence()))
+                                .name(event.getType().name())
+                                .data(event, MediaType.APPLICATION_JSON));
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Dropping inventory change subscriber: {}", e.getMessage());
+                subscribers.remove(this);
+                emitter.completeWithError(e);
+                return;
+            } finally {
+                draining.set(false);
+            }
+            // An offer may have slipped in between the last poll and resetting the flag
+            if (!queue.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.orm.id;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.EnumSet;
+import java.util.SplittableRandom;
+
+/**
+ * Time-ordered identifiers in the ULID layout: 48 bits of epoch milliseconds followed by 80
+ * random bits, written as 26 Crockford base32 characters, so they sort by creation time and
+ * append to the right edge of the primary key index. Within one JVM IDs strictly increase:
+ * inside a millisecond (or while the clock steps back) the random part is incremented instead
+ * of redrawn. Needs no database round trip, so Hibernate can batch the INSERTs, and allocates
+ * nothing per call but the returned string.
+ */
+public class UlidGenerator implements BeforeExecutionGenerator {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int LENGTH = 26;
+
+    private static final byte[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".getBytes(StandardCharsets.US_ASCII);
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[LENGTH]);
+    private static final Object LOCK = new Object();
+    private static final SplittableRandom RANDOM = new SplittableRandom(new SecureRandom().nextLong());
+
+    // Guarded by LOCK; the 80 random bits are split into the upper 16 and lower 64
+    private static long lastMillis;
+    private static long randomHigh;
+    private static long randomLow;
+
+    public static String next() {
+        long millis;
+        long high;
+        long low;
+        synchronized (LOCK) {
+            long now = System.currentTimeMillis();
+            if (now > lastMillis) {
+                lastMillis = now;
+                randomHigh = RANDOM.nextInt(1 << 16);
+                randomLow = RANDOM.nextLong();
+            } else if (++randomLow == 0 && (randomHigh = (randomHigh + 1) & 0xFFFF) == 0) {
+                // All 2^80 values of this millisecond are used up; continue in the next one
+                lastMillis++;
+            }
+            millis = lastMillis;
+            high = randomHigh;
+            low = randomLow;
+        }
+        byte[] buffer = BUFFER.get();
+        for (int i = 9; i >= 0; i--) {
+            buffer[i] = ALPHABET[(int) (millis & 31)];
+            millis >>>= 5;
+        }
+        for (int i = LENGTH - 1; i >= 10; i--) {
+            buffer[i] = ALPHABET[(int) (low & 31)];
+            low = (low >>> 5) | (high << 59);
+            high >>>= 5;
+        }
+        return new String(buffer, StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue,
+                           EventType eventType) {
+        return currentValue instanceof String assigned && !assigned.isBlank() ? assigned : next();
+    }
+
+    @Override
+    public boolean allowAssignedIdentifiers() {
+        return true;
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.orm.index;
+
+/**
+ * Receives the catalog from a {@link CatalogSource}: every product, then every warehouse, then
+ * every link. Links may refer to warehouses or products that were not passed before, when they
+ * were written while the scan ran.
+ */
+public interface CatalogHandler {
+
+    default void product(String productId, String name, String category, String unit, int quantity, long version) {
+    }
+
+    default void warehouse(long warehouseId, long version) {
+    }
+
+    default void link(long warehouseId, String productId) {
+    }
+}
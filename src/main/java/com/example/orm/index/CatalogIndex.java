@@ -0,0 +1,259 @@
+package com.example.orm.index;
+
+import com.example.orm.datasource.TransactionHooks;
+import com.example.orm.snapshot.CatalogSnapshotStore;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * An in-memory structure derived from the catalog, held as one generation of type {@code T}
+ * behind a read/write lock. Writes reach it after their transaction commits. A rebuild scans a
+ * {@link CatalogSource} into a new generation without holding the lock; writes committed
+ * meanwhile go to the current generation and are replayed onto the new one before it is swapped
+ * in. The scan may already have seen such a write, so every write must be idempotent: absolute
+ * values or set membership, never relative deltas.
+ * <p>
+ * At startup {@link CatalogIndexes} builds every index from one scan of the startup source.
+ */
+@Slf4j
+public abstract class CatalogIndex<T> {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // One rebuild at a time; held from start to finish of a Rebuild, which may span a shared scan
+    private final Lock rebuildLock = new ReentrantLock();
+    private final ExecutorService rebuilds;
+    private final AtomicBoolean rebuildQueued = new AtomicBoolean();
+    private final String name;
+    private final CatalogSource database;
+    // The snapshot, if enabled, otherwise the database
+    private final CatalogSource startupSource;
+    private final boolean buildOnStartup;
+    private final boolean withLinks;
+    private T generation;
+    private List<Consumer<T>> pendingDuringRebuild;
+
+    protected CatalogIndex(String name, CatalogSource database, Optional<CatalogSnapshotStore> snapshots,
+                           boolean buildOnStartup, boolean withLinks) {
+        this.name = name;
+        this.database = database;
+        this.startupSource = snapshots.isPresent() ? snapshots.get() : database;
+        this.buildOnStartup = buildOnStartup;
+        this.withLinks = withLinks;
+        this.generation = newGeneration();
+        this.rebuilds = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, name + "-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    protected abstract T newGeneration();
+
+    /**
+     * Handler that loads a scan into {@code fresh}.
+     */
+    protected abstract CatalogHandler loader(T fresh);
+
+    /**
+     * Called with a scanned generation before it is swapped in. Readers cannot see it yet, so it
+     * may still be reorganized without the lock.
+     */
+    protected void loaded(T fresh, long nanos) {
+    }
+
+    /**
+     * Called under the write lock after each write; may return a replacement, e.g. a compacted copy.
+     */
+    protected T afterWrite(T current) {
+        return current;
+    }
+
+    /**
+     * Replaces the generation with a fresh scan of the database.
+     */
+    public void rebuild() {
+        rebuild(database);
+    }
+
+    public void rebuild(CatalogSource source) {
+        Rebuild rebuild = startRebuild();
+        try {
+            source.scan(rebuild.handler(), withLinks);
+        } catch (RuntimeException e) {
+            rebuild.abandon();
+            throw e;
+        }
+        rebuild.finish();
+    }
+
+    /**
+     * Starts a rebuild whose scan the caller runs, see {@link Rebuild}. Waits for one in progress.
+     */
+    Rebuild startRebuild() {
+        rebuildLock.lock();
+        try {
+            return new Rebuild();
+        } catch (RuntimeException e) {
+            rebuildLock.unlock();
+            throw e;
+        }
+    }
+
+    boolean buildsOnStartup() {
+        return buildOnStartup;
+    }
+
+    CatalogSource startupSource() {
+        return startupSource;
+    }
+
+    boolean withLinks() {
+        return withLinks;
+    }
+
+    /**
+     * Rebuilds on a background thread. A request while another is still queued is absorbed by it
+     * (and false returned); one that arrives after the queued rebuild started scanning queues the next.
+     */
+    public boolean rebuildInBackground() {
+        if (!rebuildQueued.compareAndSet(false, true)) {
+            return false;
+        }
+        rebuilds.execute(() -> {
+            rebuildQueued.set(false);
+            try {
+                rebuild();
+            } catch (RuntimeException e) {
+                log.error("Error rebuilding {}: ", name, e);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Rebuilds in the background after the current transaction commits, for bulk writes that are
+     * cheaper to rescan than to apply one by one.
+     */
+    public void rebuildAfterCommit() {
+        TransactionHooks.afterCommit(() -> rebuildInBackground());
+    }
+
+    /**
+     * Applies {@code op} once the current transaction commits. It must be idempotent, see above.
+     */
+    protected void write(Consumer<T> op) {
+        TransactionHooks.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                op.accept(generation);
+                if (pendingDuringRebuild != null) {
+                    pendingDuringRebuild.add(op);
+                }
+                generation = afterWrite(generation);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    protected <R> R read(Function<T, R> query) {
+        lock.readLock().lock();
+        try {
+            return query.apply(generation);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Whether a rebuild is scanning; only meaningful under the lock, i.e. from {@link #afterWrite}.
+     */
+    protected boolean rebuilding() {
+        return pendingDuringRebuild != null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuilds.shutdownNow();
+    }
+
+    /**
+     * A new generation being loaded by a scan the caller runs through {@link #handler}, so that one
+     * scan can feed several indexes. Writes committed from its start are replayed onto it when it
+     * is finished. It holds the index's rebuild lock until finished or abandoned, both of which
+     * must happen on the thread that started it.
+     */
+    final class Rebuild {
+
+        private final long start = System.nanoTime();
+        private final T fresh = newGeneration();
+        private final CatalogHandler handler = loader(fresh);
+        private boolean open = true;
+
+        private Rebuild() {
+            lock.writeLock().lock();
+            try {
+                pendingDuringRebuild = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        CatalogHandler handler() {
+            return handler;
+        }
+
+        /**
+         * Replays the writes made during the scan and swaps the new generation in.
+         */
+        void finish() {
+            if (!open) {
+                return;
+            }
+            open = false;
+            try {
+                loaded(fresh, System.nanoTime() - start);
+                lock.writeLock().lock();
+                try {
+                    pendingDuringRebuild.forEach(op -> op.accept(fresh));
+                    generation = fresh;
+                } finally {
+                    pendingDuringRebuild = null;
+                    lock.writeLock().unlock();
+                }
+            } finally {
+                rebuildLock.unlock();
+            }
+        }
+
+        /**
+         * Drops the new generation after a failed scan; the current one stays.
+         */
+        void abandon() {
+            if (!open) {
+                return;
+            }
+            open = false;
+            lock.writeLock().lock();
+            try {
+                pendingDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+                rebuildLock.unlock();
+            }
+        }
+    }
+}
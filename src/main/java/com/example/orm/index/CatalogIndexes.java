@@ -0,0 +1,79 @@
+package com.example.orm.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the {@link CatalogIndex} beans that load on startup from a single scan of their startup
+ * source, so the snapshot is caught up with the database once rather than once per index, or the
+ * tables are read once without a snapshot.
+ */
+@Component
+@Slf4j
+public class CatalogIndexes {
+
+    private final List<CatalogIndex<?>> indexes;
+
+    public CatalogIndexes(List<CatalogIndex<?>> indexes) {
+        this.indexes = indexes;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        List<CatalogIndex<?>> building = indexes.stream().filter(CatalogIndex::buildsOnStartup).toList();
+        if (!building.isEmpty()) {
+            // Every index picks the same source: the snapshot if enabled, otherwise the database
+            rebuild(building, building.get(0).startupSource());
+        }
+    }
+
+    /**
+     * Rebuilds every index from one scan of {@code source}.
+     */
+    public void rebuild(CatalogSource source) {
+        rebuild(indexes, source);
+    }
+
+    private static void rebuild(List<CatalogIndex<?>> targets, CatalogSource source) {
+        long start = System.nanoTime();
+        List<CatalogIndex<?>.Rebuild> rebuilds = new ArrayList<>(targets.size());
+        List<CatalogHandler> products = new ArrayList<>(targets.size());
+        List<CatalogHandler> links = new ArrayList<>(targets.size());
+        try {
+            for (CatalogIndex<?> index : targets) {
+                CatalogIndex<?>.Rebuild rebuild = index.startRebuild();
+                rebuilds.add(rebuild);
+                products.add(rebuild.handler());
+                if (index.withLinks()) {
+                    links.add(rebuild.handler());
+                }
+            }
+            source.scan(new CatalogHandler() {
+                @Override
+                public void product(String productId, String name, String category, String unit, int quantity, long version) {
+                    products.forEach(handler -> handler.product(productId, name, category, unit, quantity, version));
+                }
+
+                @Override
+                public void warehouse(long warehouseId, long version) {
+                    links.forEach(handler -> handler.warehouse(warehouseId, version));
+                }
+
+                @Override
+                public void link(long warehouseId, String productId) {
+                    links.forEach(handler -> handler.link(warehouseId, productId));
+                }
+            }, !links.isEmpty());
+            rebuilds.forEach(rebuild -> rebuild.finish());
+        } finally {
+            // Only those not finished, e.g. after a failed scan
+            rebuilds.forEach(rebuild -> rebuild.abandon());
+        }
+        log.info("Built {} catalog indexes from one scan in {} ms", targets.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.orm.index;
+
+/**
+ * Where the in-memory indexes load products and warehouse links from: the database, or the
+ * snapshot file plus what changed in the database since it was written.
+ */
+public interface CatalogSource {
+
+    /**
+     * Streams the catalog to {@code handler}; warehouses and links only if {@code withLinks}.
+     * Products come in product ID order as of the source's last full read.
+     */
+    void scan(CatalogHandler handler, boolean withLinks);
+}
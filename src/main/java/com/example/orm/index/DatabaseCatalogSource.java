@@ -0,0 +1,63 @@
+package com.example.orm.index;
+
+import com.example.orm.datasource.ReplicaRouter;
+import com.example.orm.datasource.ShardRouter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+
+/**
+ * Full streaming scan of the product, warehouse and link tables. With sharding the products come
+ * from the reference shard and warehouses and links from every shard, one after the other.
+ */
+public class DatabaseCatalogSource implements CatalogSource {
+
+    private static final String PRODUCTS_SQL =
+            "SELECT product_id, product_name, product_category, product_unit, product_quantity, version " +
+            "FROM product ORDER BY product_id";
+    private static final String WAREHOUSES_SQL = "SELECT warehouse_id, version FROM datawarehouse ORDER BY warehouse_id";
+    private static final String LINKS_SQL = "SELECT warehouse_id, product_id FROM warehouse_products";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int fetchSize;
+
+    public DatabaseCatalogSource(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    public void scan(CatalogHandler handler, boolean withLinks) {
+        // Writes are only replayed onto a new index from the scan's start, so it must not read a lagging replica
+        ReplicaRouter.onPrimary(() -> ShardRouter.forEachShard(jdbcTemplate.getDataSource(), shard -> {
+            if (shard != ShardRouter.REFERENCE_SHARD && !withLinks) {
+                return;
+            }
+            readOnlyTransaction.executeWithoutResult(status -> {
+                if (shard == ShardRouter.REFERENCE_SHARD) {
+                    stream(PRODUCTS_SQL, rs -> handler.product(rs.getString(1), rs.getString(2), rs.getString(3),
+                            rs.getString(4), rs.getInt(5), rs.getLong(6)));
+                }
+                if (withLinks) {
+                    stream(WAREHOUSES_SQL, rs -> handler.warehouse(rs.getLong(1), rs.getLong(2)));
+                    stream(LINKS_SQL, rs -> handler.link(rs.getLong(1), rs.getString(2)));
+                }
+            });
+        }));
+    }
+
+    private void stream(String sql, RowCallbackHandler handler) {
+        // PostgreSQL only streams with a fetch size inside a transaction
+        jdbcTemplate.query(con -> {
+            var ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            return ps;
+        }, handler);
+    }
+}
@@ -0,0 +1,392 @@
+package com.example.orm.membership;
+
+import com.example.orm.dto.MembershipIndexStatsDTO;
+import com.example.orm.index.CatalogHandler;
+import com.example.orm.index.CatalogIndex;
+import com.example.orm.snapshot.CatalogSnapshotStore;
+import com.example.orm.index.DatabaseCatalogSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * In-memory copy of {@code warehouse_products} as compressed bitmaps in both directions:
+ * product IDs and warehouse IDs are mapped to dense ordinals, each warehouse holds a bitmap of
+ * product ordinals and each product a bitmap of warehouse ordinals. Set operations across
+ * warehouses are then bitmap ANDs/ORs instead of self-joins.
+ * <p>
+ * Product ordinals follow product ID order as of the last rebuild (or of the last full scan behind
+ * the snapshot it was loaded from), so set results page in that order; products first linked
+ * since then sort after it. Writes that arrive while a rebuild
+ * scans are replayed onto the new copy before it is swapped in.
+ * <p>
+ * Ordinals of removed products and warehouses are not reused in place. Once they outnumber the
+ * live ones, a background rebuild renumbers everything densely.
+ */
+@Component
+@Slf4j
+public class WarehouseMembershipIndex extends CatalogIndex<WarehouseMembershipIndex.Memberships> implements MeterBinder {
+
+    public enum SetOperation { INTERSECTION, UNION, DIFFERENCE }
+
+    /**
+     * One page of a set operation result; the last product ID is the resume point for the next page.
+     */
+    public record ProductIdPage(List<String> productIds, long count, boolean hasMore) {
+    }
+
+    /**
+     * A set operation named a warehouse the index does not know.
+     */
+    public static class UnknownWarehouseException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Long warehouseId;
+
+        public UnknownWarehouseException(Long warehouseId) {
+            super("Unknown warehouse " + warehouseId);
+            this.warehouseId = warehouseId;
+        }
+
+        public Long getWarehouseId() {
+            return warehouseId;
+        }
+    }
+
+    // Rough per-entry overhead of the HashMap/ArrayList dictionaries on a 64-bit JVM with compressed oops
+    private static final long PRODUCT_ENTRY_BYTES = 100;
+    private static final long WAREHOUSE_ENTRY_BYTES = 80;
+    // Below this many removed entries a compaction would cost more than the slots it frees
+    private static final int MIN_REMOVED_FOR_COMPACTION = 1_000;
+
+    public WarehouseMembershipIndex(JdbcTemplate jdbcTemplate,
+                                    PlatformTransactionManager transactionManager,
+                                    Optional<CatalogSnapshotStore> snapshots,
+                                    @Value("${app.membership.fetch-size:10000}") int fetchSize,
+                                    @Value("${app.membership.build-on-startup:true}") boolean buildOnStartup) {
+        super("membership-index", new DatabaseCatalogSource(jdbcTemplate, transactionManager, fetchSize), snapshots,
+                buildOnStartup, true);
+    }
+
+    @Override
+    protected Memberships newGeneration() {
+        return new Memberships();
+    }
+
+    @Override
+    protected CatalogHandler loader(Memberships fresh) {
+        return new CatalogHandler() {
+            @Override
+            public void product(String productId, String name, String category, String unit, int quantity, long version) {
+                fresh.productOrdinal(productId);
+            }
+
+            @Override
+            public void warehouse(long warehouseId, long version) {
+                fresh.warehouseOrdinal(warehouseId);
+            }
+
+            @Override
+            public void link(long warehouseId, String productId) {
+                fresh.link(warehouseId, productId);
+            }
+        };
+    }
+
+    @Override
+    protected void loaded(Memberships fresh, long nanos) {
+        fresh.runOptimize();
+        MembershipIndexStatsDTO stats = fresh.stats();
+        log.info("Membership index built: {} warehouses, {} products, {} links, {} bitmap bytes per million links in {} ms",
+                stats.getWarehouses(), stats.getProducts(), stats.getLinks(), stats.getBitmapBytesPerMillionLinks(),
+                nanos / 1_000_000);
+    }
+
+    @Override
+    protected Memberships afterWrite(Memberships memberships) {
+        if (!rebuilding() && memberships.needsCompaction() && rebuildInBackground()) {
+            log.info("Membership index holds more removed than live ordinals; rebuilding to compact it");
+        }
+        return memberships;
+    }
+
+    /**
+     * Records links; callers pass only IDs of products that exist.
+     */
+    public void link(Long warehouseId, Collection<String> productIds) {
+        List<String> ids = List.copyOf(productIds);
+        write(m -> {
+            m.warehouseOrdinal(warehouseId);
+            ids.forEach(productId -> m.link(warehouseId, productId));
+        });
+    }
+
+    public void unlink(Long warehouseId, Collection<String> productIds) {
+        List<String> ids = List.copyOf(productIds);
+        write(m -> ids.forEach(productId -> m.unlink(warehouseId, productId)));
+    }
+
+    public void removeWarehouse(Long warehouseId) {
+        write(m -> m.removeWarehouse(warehouseId));
+    }
+
+    public void removeProduct(String productId) {
+        write(m -> m.removeProduct(productId));
+    }
+
+    public boolean hasWarehouse(Long warehouseId) {
+        return read(m -> m.warehouseOrdinals.containsKey(warehouseId));
+    }
+
+    public boolean contains(Long warehouseId, String productId) {
+        return read(m -> {
+            RoaringBitmap products = m.productsOf(warehouseId);
+            Integer ordinal = m.productOrdinals.get(productId);
+            return products != null && ordinal != null && products.contains(ordinal);
+        });
+    }
+
+    /**
+     * Whether the warehouse stocks each of the products, in request order.
+     *
+     * @throws UnknownWarehouseException if the warehouse is unknown
+     */
+    public Map<String, Boolean> containsAll(Long warehouseId, List<String> productIds) {
+        return read(m -> {
+            RoaringBitmap products = m.productsOf(warehouseId);
+            if (products == null) {
+                throw new UnknownWarehouseException(warehouseId);
+            }
+            Map<String, Boolean> result = new LinkedHashMap<>();
+            for (String productId : productIds) {
+                Integer ordinal = m.productOrdinals.get(productId);
+                result.put(productId, ordinal != null && products.contains(ordinal));
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Warehouses stocking the product in ascending ID order; empty for unknown products.
+     */
+    public List<Long> warehousesOf(String productId) {
+        return read(m -> {
+            Integer ordinal = m.productOrdinals.get(productId);
+            RoaringBitmap warehouses = ordinal == null ? null : m.warehousesByProduct.get(ordinal);
+            if (warehouses == null) {
+                return List.of();
+            }
+            List<Long> ids = new ArrayList<>(warehouses.getCardinality());
+            warehouses.forEach((int warehouseOrdinal) -> ids.add(m.warehouseIds.get(warehouseOrdinal)));
+            ids.sort(null);
+            return ids;
+        });
+    }
+
+    /**
+     * Applies the operation to the warehouses' product sets (DIFFERENCE: the first minus all
+     * others) and returns up to {@code limit} product IDs following {@code afterProductId}, or from
+     * the start if it is null. The position is looked up by ID, as ordinals change on every rebuild.
+     *
+     * @throws UnknownWarehouseException if a warehouse is unknown
+     * @throws IllegalArgumentException if {@code afterProductId} is no longer indexed
+     */
+    public ProductIdPage combine(SetOperation operation, List<Long> warehouseIds, String afterProductId, int limit) {
+        return read(m -> {
+            RoaringBitmap[] sets = new RoaringBitmap[warehouseIds.size()];
+            for (int i = 0; i < sets.length; i++) {
+                sets[i] = m.productsOf(warehouseIds.get(i));
+                if (sets[i] == null) {
+                    throw new UnknownWarehouseException(warehouseIds.get(i));
+                }
+            }
+            int afterOrdinal = -1;
+            if (afterProductId != null) {
+                Integer ordinal = m.ordinalForResume(afterProductId);
+                if (ordinal == null) {
+                    throw new IllegalArgumentException("Cursor product " + afterProductId + " is no longer indexed");
+                }
+                afterOrdinal = ordinal;
+            }
+            RoaringBitmap result = switch (operation) {
+                case INTERSECTION -> FastAggregation.and(sets);
+                case UNION -> FastAggregation.or(sets);
+                case DIFFERENCE -> RoaringBitmap.andNot(sets[0],
+                        sets.length == 1 ? new RoaringBitmap() : FastAggregation.or(Arrays.copyOfRange(sets, 1, sets.length)));
+            };
+            PeekableIntIterator ordinals = result.getIntIterator();
+            ordinals.advanceIfNeeded(afterOrdinal + 1);
+            List<String> productIds = new ArrayList<>(Math.min(limit, result.getCardinality()));
+            while (ordinals.hasNext() && productIds.size() < limit) {
+                productIds.add(m.productIds.get(ordinals.next()));
+            }
+            return new ProductIdPage(productIds, result.getLongCardinality(), ordinals.hasNext());
+        });
+    }
+
+    public MembershipIndexStatsDTO stats() {
+        return read(Memberships::stats);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("membership.index.links", this, index -> index.stats().getLinks())
+                .description("Warehouse/product links in the membership index")
+                .register(registry);
+        Gauge.builder("membership.index.bytes", this, index -> index.stats().getBitmapBytes())
+                .description("Serialized size of the membership bitmaps")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /**
+     * One generation of the index. Ordinals are never reused; removed entries leave a null slot,
+     * and removed products keep their ordinal as a resume point for cursors.
+     */
+    static final class Memberships {
+
+        private final Map<String, Integer> productOrdinals = new HashMap<>();
+        private final Map<String, Integer> removedProductOrdinals = new HashMap<>();
+        private int removedWarehouses;
+        private final List<String> productIds = new ArrayList<>();
+        private final List<RoaringBitmap> warehousesByProduct = new ArrayList<>();
+        private final Map<Long, Integer> warehouseOrdinals = new HashMap<>();
+        private final List<Long> warehouseIds = new ArrayList<>();
+        private final List<RoaringBitmap> productsByWarehouse = new ArrayList<>();
+
+        int productOrdinal(String productId) {
+            return productOrdinals.computeIfAbsent(productId, id -> {
+                removedProductOrdinals.remove(id);
+                productIds.add(id);
+                warehousesByProduct.add(null);
+                return productIds.size() - 1;
+            });
+        }
+
+        int warehouseOrdinal(Long warehouseId) {
+            return warehouseOrdinals.computeIfAbsent(warehouseId, id -> {
+                warehouseIds.add(id);
+                productsByWarehouse.add(new RoaringBitmap());
+                return warehouseIds.size() - 1;
+            });
+        }
+
+        Integer ordinalForResume(String productId) {
+            Integer ordinal = productOrdinals.get(productId);
+            return ordinal != null ? ordinal : removedProductOrdinals.get(productId);
+        }
+
+        boolean needsCompaction() {
+            int removed = removedProductOrdinals.size() + removedWarehouses;
+            return removed >= MIN_REMOVED_FOR_COMPACTION && removed > productOrdinals.size() + warehouseOrdinals.size();
+        }
+
+        RoaringBitmap productsOf(Long warehouseId) {
+            Integer ordinal = warehouseOrdinals.get(warehouseId);
+            return ordinal == null ? null : productsByWarehouse.get(ordinal);
+        }
+
+        void link(Long warehouseId, String productId) {
+            int warehouse = warehouseOrdinal(warehouseId);
+            int product = productOrdinal(productId);
+            productsByWarehouse.get(warehouse).add(product);
+            RoaringBitmap warehouses = warehousesByProduct.get(product);
+            if (warehouses == null) {
+                warehouses = new RoaringBitmap();
+                warehousesByProduct.set(product, warehouses);
+            }
+            warehouses.add(warehouse);
+        }
+
+        void unlink(Long warehouseId, String productId) {
+            Integer warehouse = warehouseOrdinals.get(warehouseId);
+            Integer product = productOrdinals.get(productId);
+            if (warehouse == null || product == null) {
+                return;
+            }
+            productsByWarehouse.get(warehouse).remove(product);
+            RoaringBitmap warehouses = warehousesByProduct.get(product);
+            if (warehouses != null) {
+                warehouses.remove(warehouse);
+            }
+        }
+
+        void removeWarehouse(Long warehouseId) {
+            Integer warehouse = warehouseOrdinals.remove(warehouseId);
+            if (warehouse == null) {
+                return;
+            }
+            removedWarehouses++;
+            RoaringBitmap products = productsByWarehouse.set(warehouse, null);
+            products.forEach((int product) -> warehousesByProduct.get(product).remove(warehouse));
+        }
+
+        void removeProduct(String productId) {
+            Integer product = productOrdinals.remove(productId);
+            if (product == null) {
+                return;
+            }
+            productIds.set(product, null);
+            removedProductOrdinals.put(productId, product);
+            RoaringBitmap warehouses = warehousesByProduct.set(product, null);
+            if (warehouses != null) {
+                warehouses.forEach((int warehouse) -> productsByWarehouse.get(warehouse).remove(product));
+            }
+        }
+
+        void runOptimize() {
+            productsByWarehouse.forEach(bitmap -> {
+                if (bitmap != null) {
+                    bitmap.runOptimize();
+                }
+            });
+            warehousesByProduct.forEach(bitmap -> {
+                if (bitmap != null) {
+                    bitmap.runOptimize();
+                }
+            });
+        }
+
+        MembershipIndexStatsDTO stats() {
+            long links = 0;
+            long bitmapBytes = 0;
+            for (RoaringBitmap products : productsByWarehouse) {
+                if (products != null) {
+                    links += products.getLongCardinality();
+                    bitmapBytes += products.getLongSizeInBytes();
+                }
+            }
+            for (RoaringBitmap warehouses : warehousesByProduct) {
+                if (warehouses != null) {
+                    bitmapBytes += warehouses.getLongSizeInBytes();
+                }
+            }
+            long dictionaryBytes = 0;
+            for (String productId : productOrdinals.keySet()) {
+                dictionaryBytes += PRODUCT_ENTRY_BYTES + productId.length();
+            }
+            dictionaryBytes += WAREHOUSE_ENTRY_BYTES * warehouseOrdinals.size();
+            long perMillion = links == 0 ? 0 : bitmapBytes * 1_000_000 / links;
+            return new MembershipIndexStatsDTO(warehouseOrdinals.size(), productOrdinals.size(), links,
+                    bitmapBytes, dictionaryBytes, perMillion, removedProductOrdinals.size() + removedWarehouses);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.example.orm.model;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.CreationTimestamp;
 
 import java.time.LocalDateTime;
@@ -10,7 +11,10 @@ import java.util.List;
 
 @Entity
 @Data
-@Table(name = "datawarehouse")
+@Table(name = "datawarehouse", indexes = {
+        // Supports the city-filtered keyset listing
+        @Index(name = "idx_datawarehouse_city_id", columnList = "warehouse_city, warehouse_id")
+})
 @NoArgsConstructor
 public class DataWarehouse {
 
@@ -34,11 +38,17 @@ public class DataWarehouse {
     @Column(name = "warehouse_country")
     private String warehouseCountry;
 
+    // Bumped by Hibernate on field changes and explicitly whenever warehouse_products rows change
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "bigint not null default 0")
+    private Long version;
+
     @CreationTimestamp
     @Column(updatable = false)
     private LocalDateTime timestamp;
 
     @ManyToMany
+    @BatchSize(size = 50) // Initialises lazy collections for up to 50 warehouses per query
     @JoinTable(
             name = "warehouse_products",
             joinColumns = @JoinColumn(name = "warehouse_id"),
@@ -1,20 +1,30 @@
 package com.example.orm.model;
 
+import com.example.orm.id.GeneratedUlid;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
 
 @Entity
 @Data
-@Table(name = "product")
+@Table(name = "product", indexes = {
+        // Supports the category-filtered keyset listing
+        @Index(name = "idx_product_category_id", columnList = "product_category, product_id"),
+        // Supports the catalog snapshot catch-up (rows changed since its high-water mark)
+        @Index(name = "idx_product_updated_at", columnList = "updated_at")
+})
 @NoArgsConstructor
 public class Product {
 
+    // Client-supplied IDs are kept; otherwise a time-ordered ID is generated without a DB round trip
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedUlid
     @Column(name="product_id")  // Explicitly map to the correct column name
     private String productID;
 
@@ -31,4 +41,14 @@ public class Product {
     @Column(name = "product_unit")
     @Size(min = 1, max = 55)
     private String productUnit;
+
+    // Also bumped by the raw-SQL writers (stock buffer, bulk import); feeds the ETag
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "bigint not null default 0")
+    private Long version;
+
+    // Set on every insert and update, by the raw-SQL writers as well
+    @UpdateTimestamp
+    @Column(name = "updated_at", columnDefinition = "timestamp default current_timestamp")
+    private LocalDateTime updatedAt;
 }
\ No newline at end of file
@@ -0,0 +1,29 @@
+package com.example.orm.monitoring;
+
+import org.hibernate.SessionEventListener;
+
+/**
+ * Adds up time spent executing JDBC statements. Registered for every session through
+ * {@code hibernate.session.events.auto}, which creates one listener per session; a session stays on
+ * one thread, so the start time can live here while several threads record into the same stats.
+ */
+public class JdbcTimingListener implements SessionEventListener {
+
+    private static final long serialVersionUID = 1L;
+
+    private long executeStartedAt;
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        executeStartedAt = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        QueryStats stats = QueryStats.current();
+        if (stats != null && executeStartedAt != 0) {
+            stats.jdbcExecuted(System.nanoTime() - executeStartedAt);
+        }
+        executeStartedAt = 0;
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.orm.monitoring;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Maximum number of SQL statements Hibernate may issue while handling a request,
+ * including lazy loads during JSON serialisation. With sharding it applies per shard:
+ * a listing that asks every shard once is one statement, not one per shard.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface QueryBudget {
+    int maxStatements();
+}
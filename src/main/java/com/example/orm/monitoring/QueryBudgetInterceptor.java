@@ -0,0 +1,71 @@
+package com.example.orm.monitoring;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Starts per-request statement accounting and checks the handler's {@link QueryBudget} once the
+ * request has completed. Violations are logged and kept in {@link #getViolations()}; with
+ * {@code app.query-budget.strict=true} (the test profile) {@link QueryStatsHeaderAdvice} also
+ * fails the request itself.
+ */
+@Component
+@Slf4j
+public class QueryBudgetInterceptor implements AsyncHandlerInterceptor {
+
+    static final String BUDGET_ATTRIBUTE = QueryBudgetInterceptor.class.getName() + ".budget";
+
+    @Getter
+    private final List<String> violations = new CopyOnWriteArrayList<>();
+
+    @Getter
+    private final boolean strict;
+
+    public QueryBudgetInterceptor(@Value("${app.query-budget.strict:false}") boolean strict) {
+        this.strict = strict;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        QueryStats.begin();
+        if (handler instanceof HandlerMethod method) {
+            QueryBudget budget = method.getMethodAnnotation(QueryBudget.class);
+            if (budget != null) {
+                request.setAttribute(BUDGET_ATTRIBUTE, budget.maxStatements());
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // Streaming handlers (SSE) finish on other threads; don't leave the stats on this pooled one
+        QueryStats.end();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        QueryStats stats = QueryStats.end();
+        if (stats == null) {
+            return;
+        }
+        log.info("{} {} - {} SQL statements, {} ms JDBC", request.getMethod(), request.getRequestURI(),
+                stats.getStatements(), stats.getJdbcMillis());
+        Integer budget = (Integer) request.getAttribute(BUDGET_ATTRIBUTE);
+        if (budget != null && stats.getStatementsOnBusiestShard() > budget) {
+            String violation = String.format("%s %s issued %d SQL statements, budget is %d",
+                    request.getMethod(), request.getRequestURI(), stats.getStatementsOnBusiestShard(), budget);
+            violations.add(violation);
+            log.warn("Query budget exceeded: {}", violation);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.orm.monitoring;
+
+import com.example.orm.datasource.ShardRouter;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Counts every SQL statement Hibernate prepares. Registered through
+ * {@code hibernate.session_factory.statement_inspector}, against the shard it is bound for; the SQL
+ * is passed through unchanged.
+ */
+public class QueryCountingInspector implements StatementInspector {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public String inspect(String sql) {
+        QueryStats stats = QueryStats.current();
+        if (stats != null) {
+            stats.statementPrepared(ShardRouter.currentShard());
+        }
+        return sql;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.orm.monitoring;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statements prepared and JDBC execution time for the request running on the current thread.
+ * Filled by {@link QueryCountingInspector} and {@link JdbcTimingListener}; outside of a request
+ * (schedulers, startup) nothing is recorded. Work the request hands to other threads is counted
+ * when it is wrapped with {@link #propagate}, as the shard scatter pool does.
+ */
+public final class QueryStats {
+
+    private static final ThreadLocal<QueryStats> CURRENT = new ThreadLocal<>();
+
+    private final AtomicInteger statements = new AtomicInteger();
+    private final Map<Integer, AtomicInteger> statementsByShard = new ConcurrentHashMap<>();
+    private final AtomicLong jdbcNanos = new AtomicLong();
+
+    private QueryStats() {
+    }
+
+    public static QueryStats begin() {
+        QueryStats stats = new QueryStats();
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    public static QueryStats current() {
+        return CURRENT.get();
+    }
+
+    public static QueryStats end() {
+        QueryStats stats = CURRENT.get();
+        CURRENT.remove();
+        return stats;
+    }
+
+    /**
+     * Wraps {@code task} so that it records into the stats of the calling thread, wherever it runs.
+     */
+    public static Runnable propagate(Runnable task) {
+        QueryStats stats = CURRENT.get();
+        if (stats == null) {
+            return task;
+        }
+        return () -> {
+            QueryStats previous = CURRENT.get();
+            CURRENT.set(stats);
+            try {
+                task.run();
+            } finally {
+                if (previous == null) {
+                    CURRENT.remove();
+                } else {
+                    CURRENT.set(previous);
+                }
+            }
+        };
+    }
+
+    void statementPrepared(int shard) {
+        statements.incrementAndGet();
+        statementsByShard.computeIfAbsent(shard, key -> new AtomicInteger()).incrementAndGet();
+    }
+
+    void jdbcExecuted(long nanos) {
+        jdbcNanos.addAndGet(nanos);
+    }
+
+    public int getStatements() {
+        return statements.get();
+    }
+
+    /**
+     * Statements on the shard that got the most; what {@link QueryBudget} limits. Without sharding
+     * everything runs on one shard and this equals {@link #getStatements()}.
+     */
+    public int getStatementsOnBusiestShard() {
+        return statementsByShard.values().stream().mapToInt(AtomicInteger::get).max().orElse(0);
+    }
+
+    public long getJdbcMillis() {
+        return jdbcNanos.get() / 1_000_000;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.orm.monitoring;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Reports the statement count and JDBC time as response headers. Headers have to be set before
+ * the body is written, so lazy loads triggered during serialisation show up only in the log line
+ * and the budget check of {@link QueryBudgetInterceptor}.
+ */
+@ControllerAdvice
+@RequiredArgsConstructor
+public class QueryStatsHeaderAdvice implements ResponseBodyAdvice<Object> {
+
+    public static final String QUERY_COUNT_HEADER = "X-Query-Count";
+    public static final String QUERY_TIME_HEADER = "X-Query-Time-Ms";
+
+    private final QueryBudgetInterceptor interceptor;
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        QueryStats stats = QueryStats.current();
+        if (stats == null) {
+            return body;
+        }
+        response.getHeaders().set(QUERY_COUNT_HEADER, String.valueOf(stats.getStatements()));
+        response.getHeaders().set(QUERY_TIME_HEADER, String.valueOf(stats.getJdbcMillis()));
+        if (interceptor.isStrict() && request instanceof ServletServerHttpRequest servletRequest) {
+            Integer budget = (Integer) servletRequest.getServletRequest().getAttribute(QueryBudgetInterceptor.BUDGET_ATTRIBUTE);
+            if (budget != null && stats.getStatementsOnBusiestShard() > budget) {
+                throw new QueryBudgetExceededException(String.format("%s issued %d SQL statements, budget is %d",
+                        request.getURI().getPath(), stats.getStatementsOnBusiestShard(), budget));
+            }
+        }
+        return body;
+    }
+}
@@ -1,11 +1,18 @@
 package com.example.orm.repository;
 
+import com.example.orm.dto.WarehouseListItemDTO;
+import com.example.orm.dto.WarehouseProductLink;
+import com.example.orm.dto.WarehouseVersion;
 import com.example.orm.model.DataWarehouse;
 import com.example.orm.model.Product;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface DataWarehouseRepository extends JpaRepository<DataWarehouse, Long> {
@@ -13,4 +20,45 @@ public interface DataWarehouseRepository extends JpaRepository<DataWarehouse, Lo
     // Custom query to find a specific product in a specific warehouse
     @Query("SELECT p FROM DataWarehouse w JOIN w.products p WHERE w.warehouseID = :warehouseId AND p.productID = :productId")
     Optional<Product> findProductInWarehouse(@Param("warehouseId") Long warehouseId, @Param("productId") String productId);
-}
\ No newline at end of file
+
+    // Keyset page: seeks past the last seen warehouse_id instead of using OFFSET.
+    // Only IDs are selected so the products can be join-fetched afterwards without paging in memory.
+    @Query("SELECT w.warehouseID FROM DataWarehouse w WHERE w.warehouseID > :afterId ORDER BY w.warehouseID")
+    List<Long> findPageIdsAfter(@Param("afterId") Long afterId, Limit limit);
+
+    // Separate from the unfiltered query, so the plan can seek idx_datawarehouse_city_id instead of
+    // having to cover a "city IS NULL OR ..." predicate
+    @Query("SELECT w.warehouseID FROM DataWarehouse w WHERE w.warehouseCity = :city AND w.warehouseID > :afterId " +
+            "ORDER BY w.warehouseID")
+    List<Long> findPageIdsInCityAfter(@Param("city") String city, @Param("afterId") Long afterId, Limit limit);
+
+    @EntityGraph(attributePaths = "products")
+    @Query("SELECT w FROM DataWarehouse w WHERE w.warehouseID IN :ids ORDER BY w.warehouseID")
+    List<DataWarehouse> findAllWithProductsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @EntityGraph(attributePaths = "products")
+    Optional<DataWarehouse> findWithProductsByWarehouseID(Long warehouseID);
+
+    @Query("SELECT p FROM DataWarehouse w JOIN w.products p WHERE w.warehouseID = :warehouseId")
+    List<Product> findProductsByWarehouseId(@Param("warehouseId") Long warehouseId);
+
+    @Query("SELECT new com.example.orm.dto.WarehouseListItemDTO(w.warehouseID, w.warehouseName, w.warehouseAddress, " +
+            "w.warehousePostalCode, w.warehouseCity, w.warehouseCountry, w.timestamp) " +
+            "FROM DataWarehouse w WHERE w.warehouseID > :afterId ORDER BY w.warehouseID")
+    List<WarehouseListItemDTO> findListItemsAfter(@Param("afterId") Long afterId, Limit limit);
+
+    @Query("SELECT new com.example.orm.dto.WarehouseListItemDTO(w.warehouseID, w.warehouseName, w.warehouseAddress, " +
+            "w.warehousePostalCode, w.warehouseCity, w.warehouseCountry, w.timestamp) " +
+            "FROM DataWarehouse w WHERE w.warehouseCity = :city AND w.warehouseID > :afterId ORDER BY w.warehouseID")
+    List<WarehouseListItemDTO> findListItemsInCityAfter(@Param("city") String city, @Param("afterId") Long afterId,
+                                                        Limit limit);
+
+    @Query("SELECT w.warehouseID AS warehouseId, p.productID AS productId " +
+            "FROM DataWarehouse w JOIN w.products p WHERE w.warehouseID IN :ids")
+    List<WarehouseProductLink> findLinksByWarehouseIdIn(@Param("ids") Collection<Long> ids);
+
+    // Reads the version column of every linked product row, but builds no entities
+    @Query("SELECT w.version AS version, COALESCE(SUM(p.version), 0) AS productVersions " +
+            "FROM DataWarehouse w LEFT JOIN w.products p WHERE w.warehouseID = :id GROUP BY w.version")
+    Optional<WarehouseVersion> findVersionById(@Param("id") Long id);
+}
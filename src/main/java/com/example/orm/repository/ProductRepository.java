@@ -1,8 +1,22 @@
 package com.example.orm.repository;
 
 import com.example.orm.model.Product;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
 
 public interface ProductRepository extends JpaRepository<Product, String> {
     Product findByProductID(String productID);
-}
\ No newline at end of file
+
+    // Keyset page: seeks past the last seen product_id instead of using OFFSET
+    @Query("SELECT p FROM Product p WHERE p.productID > :afterId ORDER BY p.productID")
+    List<Product> findPageAfter(@Param("afterId") String afterId, Limit limit);
+
+    // Its own query so the plan can seek idx_product_category_id
+    @Query("SELECT p FROM Product p WHERE p.productCategory = :category AND p.productID > :afterId ORDER BY p.productID")
+    List<Product> findPageInCategoryAfter(@Param("category") String category, @Param("afterId") String afterId,
+                                          Limit limit);
+}
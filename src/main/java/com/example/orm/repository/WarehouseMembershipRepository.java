@@ -0,0 +1,95 @@
+package com.example.orm.repository;
+
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Writes warehouse_products rows directly, without loading the warehouse or its product bag.
+ * Cost depends only on the number of IDs passed in, not on how many links the warehouse already has.
+ * Link and unlink run one statement per product ID in a batch and report the IDs whose statement
+ * changed a row, read from the batch's per-statement counts. That works on H2 as well, which has no
+ * {@code RETURNING}.
+ */
+@Repository
+@RequiredArgsConstructor
+public class WarehouseMembershipRepository {
+
+    private static final int BATCH_SIZE = 500;
+
+    // Unknown product IDs are skipped, matching the old findAllById behaviour
+    private static final String LINK_SQL =
+            "INSERT INTO warehouse_products (warehouse_id, product_id) " +
+            "SELECT ?, product_id FROM product WHERE product_id = ? " +
+            "ON CONFLICT DO NOTHING";
+
+    private static final String UNLINK_SQL =
+            "DELETE FROM warehouse_products WHERE warehouse_id = ? AND product_id = ?";
+
+    private static final String TOUCH_SQL =
+            "UPDATE datawarehouse SET version = version + 1 WHERE warehouse_id = ?";
+
+    private static final String TOUCH_CONTAINING_SQL =
+            "UPDATE datawarehouse SET version = version + 1 WHERE warehouse_id IN " +
+            "(SELECT warehouse_id FROM warehouse_products WHERE product_id = ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Returns the product IDs that were newly linked; unknown products and existing links are skipped.
+     */
+    @Timed(value = "warehouse.membership.link", histogram = true)
+    public List<String> link(Long warehouseId, Collection<String> productIds) {
+        return execute(LINK_SQL, warehouseId, productIds);
+    }
+
+    /**
+     * Returns the product IDs whose link was deleted.
+     */
+    @Timed(value = "warehouse.membership.unlink", histogram = true)
+    public List<String> unlink(Long warehouseId, Collection<String> productIds) {
+        return execute(UNLINK_SQL, warehouseId, productIds);
+    }
+
+    /**
+     * Bumps the warehouse version after its links changed behind Hibernate's back.
+     */
+    public void touchWarehouse(Long warehouseId) {
+        jdbcTemplate.update(TOUCH_SQL, warehouseId);
+    }
+
+    /**
+     * Bumps every warehouse holding the product; used before the product row (and, via
+     * ON DELETE CASCADE, its links) goes away.
+     */
+    public void touchWarehousesContaining(String productId) {
+        jdbcTemplate.update(TOUCH_CONTAINING_SQL, productId);
+    }
+
+    private List<String> execute(String sql, Long warehouseId, Collection<String> productIds) {
+        List<String> ids = List.copyOf(productIds);
+        int[][] counts = jdbcTemplate.batchUpdate(sql, ids, BATCH_SIZE, (ps, productId) -> {
+            ps.setLong(1, warehouseId);
+            ps.setString(2, productId);
+        });
+        List<String> changed = new ArrayList<>();
+        int statement = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                // pgjdbc only folds INSERT ... VALUES into SUCCESS_NO_INFO; should a driver do it here,
+                // the ID counts as changed, which the indexes tolerate and subscribers see once more
+                if (count > 0 || count == Statement.SUCCESS_NO_INFO) {
+                    changed.add(ids.get(statement));
+                }
+                statement++;
+            }
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,481 @@
+package com.example.orm.search;
+
+import com.example.orm.dto.ProductSearchHitDTO;
+import com.example.orm.model.Product;
+import com.example.orm.index.CatalogHandler;
+import com.example.orm.index.CatalogIndex;
+import com.example.orm.snapshot.CatalogSnapshotStore;
+import com.example.orm.index.DatabaseCatalogSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * In-process inverted index over product names and categories. Products get dense document
+ * numbers in insertion order, so posting lists stay sorted by construction and an update is an
+ * append plus a tombstone. Query terms match tokens exactly, by prefix (sorted vocabulary) or
+ * anywhere inside a token (trigram index over the vocabulary). Ties are broken by document
+ * number: product ID order as of the last rebuild, with products written since then after it.
+ * <p>
+ * The index is built from a streaming scan (or the catalog snapshot) once the application is ready and
+ * rebuilt as described in {@link CatalogIndex}.
+ */
+@Component
+@Slf4j
+public class ProductSearchIndex extends CatalogIndex<ProductSearchIndex.Segment> implements MeterBinder {
+
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int GRAM = 3;
+    private static final int EXACT_SCORE = 3;
+    private static final int PREFIX_SCORE = 2;
+    private static final int INFIX_SCORE = 1;
+    // Below this many dead documents compaction is not worth a pass over the index
+    private static final int MIN_TOMBSTONES_FOR_COMPACTION = 1024;
+
+    private volatile Timer queryTimer;
+
+    public ProductSearchIndex(JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              Optional<CatalogSnapshotStore> snapshots,
+                              @Value("${app.search.fetch-size:5000}") int fetchSize,
+                              @Value("${app.search.build-on-startup:true}") boolean buildOnStartup) {
+        super("product-search", new DatabaseCatalogSource(jdbcTemplate, transactionManager, fetchSize), snapshots,
+                buildOnStartup, false);
+    }
+
+    @Override
+    protected Segment newGeneration() {
+        return new Segment();
+    }
+
+    @Override
+    protected CatalogHandler loader(Segment fresh) {
+        return new CatalogHandler() {
+            @Override
+            public void product(String productId, String name, String category, String unit, int quantity, long version) {
+                fresh.add(productId, name, category);
+            }
+        };
+    }
+
+    @Override
+    protected void loaded(Segment fresh, long nanos) {
+        log.info("Product search index built: {} products, {} tokens in {} ms",
+                fresh.liveDocuments(), fresh.postings.size(), nanos / 1_000_000);
+    }
+
+    @Override
+    protected Segment afterWrite(Segment segment) {
+        if (segment.deleted > MIN_TOMBSTONES_FOR_COMPACTION && segment.deleted > segment.liveDocuments()) {
+            return segment.compact();
+        }
+        return segment;
+    }
+
+    public void index(Product product) {
+        String id = product.getProductID();
+        String name = product.getProductName();
+        String category = product.getProductCategory();
+        write(s -> s.add(id, name, category));
+    }
+
+    public void remove(String productId) {
+        write(s -> s.remove(productId));
+    }
+
+    /**
+     * Returns the best {@code limit} matches. Every term must match; {@code category} is compared
+     * case-insensitively and {@code productFilter} restricts results to the accepted product IDs.
+     */
+    public List<ProductSearchHitDTO> search(String query, String category, Predicate<String> productFilter, int limit) {
+        return search(query, category, productFilter, 0, null, limit);
+    }
+
+    /**
+     * Like {@link #search(String, String, Predicate, int)}, but returns only hits ranked after the
+     * hit for {@code afterProductId} with {@code afterScore}, the last one of the previous page.
+     *
+     * @throws IllegalArgumentException if {@code afterProductId} is no longer indexed
+     */
+    public List<ProductSearchHitDTO> search(String query, String category, Predicate<String> productFilter,
+                                            int afterScore, String afterProductId, int limit) {
+        long start = System.nanoTime();
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        String wantedCategory = normalizeCategory(category);
+        if (terms.isEmpty() && wantedCategory == null) {
+            throw new IllegalArgumentException("Either q or category is required");
+        }
+        try {
+            return read(segment -> {
+                Hit after = null;
+                if (afterProductId != null) {
+                    // Looked up per request: document numbers change on every rebuild and compaction
+                    Integer doc = segment.docByProduct.get(afterProductId);
+                    if (doc == null) {
+                        throw new IllegalArgumentException("Cursor product " + afterProductId + " is no longer indexed");
+                    }
+                    after = new Hit(doc, afterScore);
+                }
+                return segment.search(terms, wantedCategory, productFilter, after, limit);
+            });
+        } finally {
+            Timer timer = queryTimer;
+            if (timer != null) {
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    public int size() {
+        return read(Segment::liveDocuments);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("search.index.documents", this, ProductSearchIndex::size)
+                .description("Products in the search index")
+                .register(registry);
+        queryTimer = Timer.builder("search.index.query")
+                .description("Time to answer a product search from the index")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        List<String> tokens = new ArrayList<>();
+        for (String token : TOKEN_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private static String normalizeCategory(String category) {
+        return category == null || category.isBlank() ? null : category.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * One generation of the index. Only touched under the outer lock, except while a rebuild
+     * fills a segment that is not yet visible.
+     */
+    static final class Segment {
+
+        private final List<String> productIds = new ArrayList<>();
+        private final List<String> names = new ArrayList<>();
+        private final List<String> categories = new ArrayList<>();
+        private final List<String> categoryKeys = new ArrayList<>();
+        // Each document's distinct tokens, as the vocabulary's own String instances
+        private final List<String[]> tokens = new ArrayList<>();
+        private final Map<String, Integer> docByProduct = new HashMap<>();
+        private final TreeMap<String, Posting> postings = new TreeMap<>();
+        private final Map<String, Set<String>> tokensByGram = new HashMap<>();
+        private final Map<String, Posting> docsByCategory = new HashMap<>();
+        private int deleted;
+
+        void add(String productId, String name, String category) {
+            remove(productId);
+            int doc = productIds.size();
+            List<String> distinct = tokenize(name).stream().distinct().toList();
+            String[] docTokens = new String[distinct.size()];
+            for (int i = 0; i < docTokens.length; i++) {
+                Posting posting = postings.computeIfAbsent(distinct.get(i), this::newToken);
+                posting.add(doc);
+                docTokens[i] = posting.token;
+            }
+            productIds.add(productId);
+            names.add(name);
+            categories.add(category);
+            String normalized = normalizeCategory(category);
+            categoryKeys.add(normalized);
+            tokens.add(docTokens);
+            docByProduct.put(productId, doc);
+            if (normalized != null) {
+                docsByCategory.computeIfAbsent(normalized, Posting::new).add(doc);
+            }
+        }
+
+        private Posting newToken(String token) {
+            for (int i = 0; i + GRAM <= token.length(); i++) {
+                tokensByGram.computeIfAbsent(token.substring(i, i + GRAM), g -> new HashSet<>()).add(token);
+            }
+            return new Posting(token);
+        }
+
+        void remove(String productId) {
+            Integer doc = docByProduct.remove(productId);
+            if (doc != null) {
+                // Tombstone: posting lists keep the number until the next compaction
+                productIds.set(doc, null);
+                deleted++;
+            }
+        }
+
+        int liveDocuments() {
+            return docByProduct.size();
+        }
+
+        Segment compact() {
+            Segment compacted = new Segment();
+            for (int doc = 0; doc < productIds.size(); doc++) {
+                if (productIds.get(doc) != null) {
+                    compacted.add(productIds.get(doc), names.get(doc), categories.get(doc));
+                }
+            }
+            return compacted;
+        }
+
+        /*
+         * Hits are ranked by score, then by document number. The most selective term drives the
+         * scan one match level at a time (exact, prefix, infix), each level in document order, so
+         * the scan can stop as soon as no remaining document could still enter the top `limit`.
+         */
+        List<ProductSearchHitDTO> search(List<String> terms, String category, Predicate<String> productFilter, Hit after,
+                                         int limit) {
+            Posting categoryDocs = category == null ? null : docsByCategory.get(category);
+            if (category != null && categoryDocs == null) {
+                return List.of();
+            }
+            PriorityQueue<Hit> top = new PriorityQueue<>(limit + 1, Hit.WORST_FIRST);
+            if (terms.isEmpty()) {
+                for (int i = 0; i < categoryDocs.size && top.size() < limit; i++) {
+                    offer(categoryDocs.docs[i], 0, null, after, productFilter, limit, top);
+                }
+                return toHits(top);
+            }
+
+            List<TermMatch> matches = new ArrayList<>(terms.size());
+            for (String term : terms) {
+                Map<String, Integer> levels = matchingTokens(term);
+                if (levels.isEmpty()) {
+                    return List.of();
+                }
+                long count = 0;
+                int best = 0;
+                for (Map.Entry<String, Integer> entry : levels.entrySet()) {
+                    count += postings.get(entry.getKey()).size;
+                    best = Math.max(best, entry.getValue());
+                }
+                matches.add(new TermMatch(levels, count, best));
+            }
+            // Rarest term drives the scan; the others are checked rarest first so mismatches fail fast
+            matches.sort(Comparator.comparingLong(TermMatch::postings));
+            Map<String, Integer> driverLevels = matches.get(0).levels();
+            List<Map<String, Integer>> termLevels = new ArrayList<>(matches.size() - 1);
+            // Upper bound for what the other terms can add; a tight bound lets the scan stop earlier
+            int otherMaximum = 0;
+            for (TermMatch match : matches.subList(1, matches.size())) {
+                termLevels.add(match.levels());
+                otherMaximum += match.bestLevel();
+            }
+
+            List<List<Posting>> byLevel = new ArrayList<>();
+            for (int level = 0; level <= EXACT_SCORE; level++) {
+                byLevel.add(new ArrayList<>());
+            }
+            driverLevels.forEach((token, level) -> byLevel.get(level).add(postings.get(token)));
+
+            for (int level = EXACT_SCORE; level >= INFIX_SCORE; level--) {
+                if (byLevel.get(level).isEmpty()) {
+                    continue;
+                }
+                int bound = level + otherMaximum;
+                Hit worst = top.size() == limit ? top.peek() : null;
+                if (worst != null && bound < worst.score) {
+                    break;
+                }
+                // Lazy merge of the level's posting lists: early termination leaves most of them untouched
+                MergedPostings levelDocs = new MergedPostings(byLevel.get(level));
+                for (int doc = levelDocs.next(); doc >= 0; doc = levelDocs.next()) {
+                    worst = top.size() == limit ? top.peek() : null;
+                    // Later documents at this level lose every tie, so nothing after this one can enter
+                    if (worst != null && (bound < worst.score || (bound == worst.score && doc > worst.doc))) {
+                        break;
+                    }
+                    if (category != null && !category.equals(categoryKeys.get(doc))) {
+                        continue;
+                    }
+                    String[] docTokens = tokens.get(doc);
+                    // Documents that also hold a better-matching token were scored at that level
+                    if (level != EXACT_SCORE && bestLevel(docTokens, driverLevels) != level) {
+                        continue;
+                    }
+                    int total = level;
+                    for (Map<String, Integer> levels : termLevels) {
+                        int termScore = bestLevel(docTokens, levels);
+                        if (termScore == 0) {
+                            total = -1;
+                            break;
+                        }
+                        total += termScore;
+                    }
+                    if (total > 0) {
+                        offer(doc, total, worst, after, productFilter, limit, top);
+                    }
+                }
+            }
+            return toHits(top);
+        }
+
+        private void offer(int doc, int score, Hit worst, Hit after, Predicate<String> productFilter, int limit,
+                           PriorityQueue<Hit> top) {
+            String productId = productIds.get(doc);
+            if (productId == null) {
+                return;
+            }
+            if (worst != null && (score < worst.score || (score == worst.score && doc > worst.doc))) {
+                return;
+            }
+            // Already served on an earlier page
+            if (after != null && (score > after.score || (score == after.score && doc <= after.doc))) {
+                return;
+            }
+            if (productFilter != null && !productFilter.test(productId)) {
+                return;
+            }
+            top.add(new Hit(doc, score));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+
+        private List<ProductSearchHitDTO> toHits(PriorityQueue<Hit> top) {
+            List<Hit> ranked = new ArrayList<>(top);
+            ranked.sort(Hit.WORST_FIRST.reversed());
+            List<ProductSearchHitDTO> hits = new ArrayList<>(ranked.size());
+            for (Hit hit : ranked) {
+                hits.add(new ProductSearchHitDTO(productIds.get(hit.doc), names.get(hit.doc), categories.get(hit.doc), hit.score));
+            }
+            return hits;
+        }
+
+        private static int bestLevel(String[] docTokens, Map<String, Integer> levels) {
+            int best = 0;
+            for (String token : docTokens) {
+                Integer level = levels.get(token);
+                if (level != null && level > best) {
+                    best = level;
+                }
+            }
+            return best;
+        }
+
+        // Vocabulary tokens the term matches, with their match level
+        private Map<String, Integer> matchingTokens(String term) {
+            Map<String, Integer> matched = new HashMap<>();
+            // Exact and prefix matches are one contiguous range of the sorted vocabulary
+            for (String token : postings.subMap(term, true, term + Character.MAX_VALUE, true).keySet()) {
+                matched.put(token, token.length() == term.length() ? EXACT_SCORE : PREFIX_SCORE);
+            }
+            if (term.length() >= GRAM) {
+                Set<String> rarest = null;
+                for (int i = 0; i + GRAM <= term.length(); i++) {
+                    Set<String> withGram = tokensByGram.get(term.substring(i, i + GRAM));
+                    if (withGram == null) {
+                        return matched;
+                    }
+                    if (rarest == null || withGram.size() < rarest.size()) {
+                        rarest = withGram;
+                    }
+                }
+                // The rarest trigram narrows the vocabulary; contains() removes false positives
+                for (String token : rarest) {
+                    if (token.contains(term)) {
+                        matched.putIfAbsent(token, INFIX_SCORE);
+                    }
+                }
+            }
+            return matched;
+        }
+    }
+
+    // Yields the distinct document numbers of several posting lists in ascending order
+    private static final class MergedPostings {
+
+        private final PriorityQueue<int[]> cursors;
+        private final List<Posting> lists;
+        private int last = -1;
+
+        MergedPostings(List<Posting> lists) {
+            this.lists = lists;
+            // Cursor = {current doc, list index, position}
+            this.cursors = new PriorityQueue<>(Math.max(1, lists.size()), Comparator.comparingInt(cursor -> cursor[0]));
+            for (int i = 0; i < lists.size(); i++) {
+                if (lists.get(i).size > 0) {
+                    cursors.add(new int[]{lists.get(i).docs[0], i, 0});
+                }
+            }
+        }
+
+        int next() {
+            while (!cursors.isEmpty()) {
+                int[] cursor = cursors.poll();
+                int doc = cursor[0];
+                Posting posting = lists.get(cursor[1]);
+                if (++cursor[2] < posting.size) {
+                    cursor[0] = posting.docs[cursor[2]];
+                    cursors.add(cursor);
+                }
+                if (doc != last) {
+                    last = doc;
+                    return doc;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private record TermMatch(Map<String, Integer> levels, long postings, int bestLevel) {
+    }
+
+    private record Hit(int doc, int score) {
+
+        static final Comparator<Hit> WORST_FIRST = Comparator.comparingInt(Hit::score)
+                .thenComparing(Comparator.comparingInt(Hit::doc).reversed());
+    }
+
+    // Append-only, so document numbers stay sorted
+    private static final class Posting {
+
+        private final String token;
+        private int[] docs = new int[4];
+        private int size;
+
+        Posting(String token) {
+            this.token = token;
+        }
+
+        void add(int doc) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            docs[size++] = doc;
+        }
+    }
+}
@@ -1,106 +1,315 @@
 package com.example.orm.service;
 
 
+import com.example.orm.cache.ProductLookupCache;
+import com.example.orm.dto.CursorPageDTO;
+import com.example.orm.dto.MembershipChangeDTO;
+import com.example.orm.dto.TaggedDTO;
+import com.example.orm.dto.WarehouseListItemDTO;
+import com.example.orm.dto.WarehouseProductLink;
+import com.example.orm.dto.WarehouseVersion;
 import com.example.orm.dto.WarehouseWithProductIdsDTO;
 import com.example.orm.dto.WarehouseWithProductsDTO;
+import com.example.orm.events.InventoryChangePublisher;
+import com.example.orm.membership.WarehouseMembershipIndex;
 import com.example.orm.model.DataWarehouse;
 import com.example.orm.model.Product;
 import com.example.orm.repository.DataWarehouseRepository;
 import com.example.orm.repository.ProductRepository;
+import com.example.orm.repository.WarehouseMembershipRepository;
+import com.example.orm.search.ProductSearchIndex;
+import com.example.orm.summary.InventorySummaryIndex;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class DataWarehouseService {
 
+    private static final Comparator<DataWarehouse> BY_ID = Comparator.comparing(DataWarehouse::getWarehouseID);
+
     private final DataWarehouseRepository repository;
     private final ProductRepository productRepository;
+    private final WarehouseMembershipRepository membershipRepository;
+    private final ProductLookupCache cache;
+    private final InventoryChangePublisher changes;
+    private final ProductSearchIndex searchIndex;
+    private final WarehouseMembershipIndex membershipIndex;
+    private final InventorySummaryIndex summaryIndex;
+    private final WarehouseShards shards;
+    private final ProductCatalogReplicator catalog;
+    private final TransactionTemplate transactionTemplate;
 
-    public List<DataWarehouse> getAllWarehouses() {
-        return repository.findAll();
+    // No transaction here: the shard queries run in their own, and one around them would hold a
+    // connection while they wait for theirs
+    public CursorPageDTO<DataWarehouse> getWarehousePage(String cursor, Integer size, String city) {
+        int pageSize = PageCursor.clampSize(size);
+        long afterId = cursor == null ? 0L : PageCursor.decodeWarehouseId(cursor);
+        // One extra row tells us whether another page exists without a COUNT query
+        Limit limit = Limit.of(pageSize + 1);
+        List<Long> ids = shards.gather(() -> city == null
+                        ? repository.findPageIdsAfter(afterId, limit)
+                        : repository.findPageIdsInCityAfter(city, afterId, limit),
+                Comparator.naturalOrder(), pageSize + 1);
+        String nextCursor = null;
+        if (ids.size() > pageSize) {
+            ids = ids.subList(0, pageSize);
+            nextCursor = PageCursor.encodeWarehouseId(ids.get(pageSize - 1));
+        }
+        // Second round trip loads the page with its products in one join fetch
+        List<DataWarehouse> rows = ids.isEmpty() ? List.of()
+                : shards.gatherByWarehouse(ids, repository::findAllWithProductsByIdIn, BY_ID);
+        return new CursorPageDTO<>(rows, nextCursor, rows.size());
     }
 
+    public CursorPageDTO<WarehouseListItemDTO> getWarehouseListPage(String cursor, Integer size, String city) {
+        int pageSize = PageCursor.clampSize(size);
+        long afterId = cursor == null ? 0L : PageCursor.decodeWarehouseId(cursor);
+        Limit limit = Limit.of(pageSize + 1);
+        List<WarehouseListItemDTO> rows = shards.gather(() -> city == null
+                        ? repository.findListItemsAfter(afterId, limit)
+                        : repository.findListItemsInCityAfter(city, afterId, limit),
+                Comparator.comparing(WarehouseListItemDTO::getWarehouseID), pageSize + 1);
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            nextCursor = PageCursor.encodeWarehouseId(rows.get(pageSize - 1).getWarehouseID());
+        }
+        if (!rows.isEmpty()) {
+            Map<Long, WarehouseListItemDTO> byId = rows.stream()
+                    .collect(Collectors.toMap(WarehouseListItemDTO::getWarehouseID, Function.identity()));
+            for (WarehouseProductLink link : shards.gatherByWarehouse(byId.keySet(), repository::findLinksByWarehouseIdIn,
+                    Comparator.comparing(WarehouseProductLink::getWarehouseId))) {
+                byId.get(link.getWarehouseId()).getProductIds().add(link.getProductId());
+            }
+        }
+        return new CursorPageDTO<>(rows, nextCursor, rows.size());
+    }
+
+    @Transactional(readOnly = true)
     public DataWarehouse getWarehouseById(Long id) {
-        return repository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Warehouse not found"));
+        return shards.onWarehouse(id, () -> repository.findWithProductsByWarehouseID(id))
+                .orElseThrow(() -> new WarehouseNotFoundException(id));
+    }
+
+    /**
+     * The warehouse with its products and their ETag, or only the ETag if {@code notModified} accepts
+     * it. Both reads share one repeatable-read snapshot, so the tag always describes the body.
+     */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public TaggedDTO<DataWarehouse> getWarehouseIfModified(Long id, Predicate<String> notModified) {
+        return shards.onWarehouse(id, () -> {
+            String etag = currentEtag(id);
+            if (notModified.test(etag)) {
+                return new TaggedDTO<>(etag, null);
+            }
+            return new TaggedDTO<>(etag, repository.findWithProductsByWarehouseID(id)
+                    .orElseThrow(() -> new WarehouseNotFoundException(id)));
+        });
+    }
+
+    /**
+     * Like {@link #getWarehouseIfModified} for the warehouse's product list, which shares its ETag.
+     */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public TaggedDTO<List<Product>> getProductsFromWarehouseIfModified(Long warehouseId, Predicate<String> notModified) {
+        return shards.onWarehouse(warehouseId, () -> {
+            String etag = currentEtag(warehouseId);
+            if (notModified.test(etag)) {
+                return new TaggedDTO<>(etag, null);
+            }
+            return new TaggedDTO<>(etag, repository.findProductsByWarehouseId(warehouseId));
+        });
+    }
+
+    private String currentEtag(Long id) {
+        return repository.findVersionById(id)
+                .map(version -> EntityTags.of(id, version))
+                .orElseThrow(() -> new WarehouseNotFoundException(id));
     }
 
     public DataWarehouse updateWarehouse(Long id, DataWarehouse updatedWarehouse) {
-        Optional<DataWarehouse> warehouseOpt = repository.findById(id);
-        if (warehouseOpt.isPresent()) {
-            DataWarehouse warehouse = warehouseOpt.get();
-            warehouse.setWarehouseName(updatedWarehouse.getWarehouseName());
-            warehouse.setWarehouseAddress(updatedWarehouse.getWarehouseAddress());
-            warehouse.setWarehousePostalCode(updatedWarehouse.getWarehousePostalCode());
-            warehouse.setWarehouseCity(updatedWarehouse.getWarehouseCity());
-            warehouse.setWarehouseCountry(updatedWarehouse.getWarehouseCountry());
-            return repository.save(warehouse);
-        } else {
-            throw new RuntimeException("Warehouse not found");
-        }
+        return shards.onWarehouse(id, () -> {
+            Optional<DataWarehouse> warehouseOpt = repository.findById(id);
+            if (warehouseOpt.isPresent()) {
+                DataWarehouse warehouse = warehouseOpt.get();
+                // A client that sends the version it read gets a conflict instead of a lost update;
+                // concurrent writers between here and the save are caught by Hibernate's version check
+                if (updatedWarehouse.getVersion() != null && !updatedWarehouse.getVersion().equals(warehouse.getVersion())) {
+                    throw new ObjectOptimisticLockingFailureException(DataWarehouse.class, id);
+                }
+                warehouse.setWarehouseName(updatedWarehouse.getWarehouseName());
+                warehouse.setWarehouseAddress(updatedWarehouse.getWarehouseAddress());
+                warehouse.setWarehousePostalCode(updatedWarehouse.getWarehousePostalCode());
+                warehouse.setWarehouseCity(updatedWarehouse.getWarehouseCity());
+                warehouse.setWarehouseCountry(updatedWarehouse.getWarehouseCountry());
+                DataWarehouse saved = repository.save(warehouse);
+                changes.warehouseUpdated(id);
+                return saved;
+            } else {
+                throw new WarehouseNotFoundException(id);
+            }
+        });
     }
 
     public DataWarehouse createWarehouseWithExistingProducts(WarehouseWithProductIdsDTO request) {
-        List<Product> products = productRepository.findAllById(request.getProductIds());
-        DataWarehouse warehouse = new DataWarehouse();
-        warehouse.setWarehouseName(request.getWarehouseName());
-        warehouse.setWarehouseAddress(request.getWarehouseAddress());
-        warehouse.setWarehousePostalCode(request.getWarehousePostalCode());
-        warehouse.setWarehouseCity(request.getWarehouseCity());
-        warehouse.setWarehouseCountry(request.getWarehouseCountry());
-        warehouse.setProducts(products);
-        return repository.save(warehouse);
+        catalog.awaitReplication(request.getProductIds());
+        return shards.onNewWarehouse(() -> {
+            List<Product> products = productRepository.findAllById(request.getProductIds());
+            DataWarehouse warehouse = new DataWarehouse();
+            warehouse.setWarehouseName(request.getWarehouseName());
+            warehouse.setWarehouseAddress(request.getWarehouseAddress());
+            warehouse.setWarehousePostalCode(request.getWarehousePostalCode());
+            warehouse.setWarehouseCity(request.getWarehouseCity());
+            warehouse.setWarehouseCountry(request.getWarehouseCountry());
+            warehouse.setProducts(products);
+            DataWarehouse saved = repository.save(warehouse);
+            cache.invalidateWarehouse(saved.getWarehouseID());
+            membershipIndex.link(saved.getWarehouseID(), productIdsOf(products));
+            summaryIndex.link(saved.getWarehouseID(), productIdsOf(products));
+            changes.warehouseCreated(saved.getWarehouseID(), productIdsOf(products));
+            return saved;
+        });
     }
 
+    @Transactional
     public DataWarehouse createWarehouseWithNewProducts(WarehouseWithProductsDTO request) {
-        List<Product> savedProducts = request.getProducts().stream()
-                .map(productRepository::save)
-                .collect(Collectors.toList());
+        return shards.onNewWarehouse(() -> {
+            // An echoed version would make save() merge instead of insert
+            request.getProducts().forEach(product -> product.setVersion(null));
+            // One transaction, so the product INSERTs are queued and sent as JDBC batches at flush
+            List<Product> savedProducts = productRepository.saveAll(request.getProducts());
 
-        DataWarehouse warehouse = new DataWarehouse();
-        warehouse.setWarehouseName(request.getWarehouseName());
-        warehouse.setWarehouseAddress(request.getWarehouseAddress());
-        warehouse.setWarehousePostalCode(request.getWarehousePostalCode());
-        warehouse.setWarehouseCity(request.getWarehouseCity());
-        warehouse.setWarehouseCountry(request.getWarehouseCountry());
-        warehouse.setProducts(savedProducts);
-        return repository.save(warehouse);
+            DataWarehouse warehouse = new DataWarehouse();
+            warehouse.setWarehouseName(request.getWarehouseName());
+            warehouse.setWarehouseAddress(request.getWarehouseAddress());
+            warehouse.setWarehousePostalCode(request.getWarehousePostalCode());
+            warehouse.setWarehouseCity(request.getWarehouseCity());
+            warehouse.setWarehouseCountry(request.getWarehouseCountry());
+            warehouse.setProducts(savedProducts);
+            DataWarehouse saved = repository.save(warehouse);
+            // Written on the new warehouse's shard; the other shards get a copy once this commits
+            catalog.replicate(productIdsOf(savedProducts));
+            savedProducts.forEach(product -> cache.invalidateProduct(product.getProductID()));
+            cache.invalidateWarehouse(saved.getWarehouseID());
+            membershipIndex.link(saved.getWarehouseID(), productIdsOf(savedProducts));
+            savedProducts.forEach(summaryIndex::putProduct);
+            summaryIndex.link(saved.getWarehouseID(), productIdsOf(savedProducts));
+            savedProducts.forEach(searchIndex::index);
+            savedProducts.forEach(changes::productCreated);
+            changes.warehouseCreated(saved.getWarehouseID(), productIdsOf(savedProducts));
+            return saved;
+        });
     }
 
     public DataWarehouse addProductsToWarehouse(Long warehouseId, List<String> productIds) {
-        DataWarehouse warehouse = repository.findById(warehouseId)
-                .orElseThrow(() -> new RuntimeException("Warehouse not found"));
+        linkProducts(warehouseId, productIds);
+        return getWarehouseById(warehouseId);
+    }
 
-        List<Product> products = productRepository.findAllById(productIds);
-        warehouse.getProducts().addAll(products);
+    public MembershipChangeDTO linkProducts(Long warehouseId, List<String> productIds) {
+        // Products written moments ago may still be on their way to this warehouse's shard. Waited
+        // for before the transaction starts, so no connection is held meanwhile
+        catalog.awaitReplication(productIds);
+        return transactionTemplate.execute(status -> shards.onWarehouse(warehouseId, () -> {
+            if (!repository.existsById(warehouseId)) {
+                throw new WarehouseNotFoundException(warehouseId);
+            }
+            Set<String> distinctIds = new LinkedHashSet<>(productIds);
+            // Unknown products and links that already existed are not in it
+            List<String> linked = membershipRepository.link(warehouseId, distinctIds);
+            if (!linked.isEmpty()) {
+                membershipRepository.touchWarehouse(warehouseId);
+                membershipIndex.link(warehouseId, linked);
+                summaryIndex.link(warehouseId, linked);
+                changes.productsLinked(warehouseId, linked);
+            }
+            // Cached misses for these pairs are wrong once this commits
+            cache.invalidateWarehouseProducts(warehouseId, distinctIds);
+            return new MembershipChangeDTO(warehouseId, distinctIds.size(), linked.size());
+        }));
+    }
 
-        return repository.save(warehouse);
+    public MembershipChangeDTO unlinkProducts(Long warehouseId, List<String> productIds) {
+        return transactionTemplate.execute(status -> shards.onWarehouse(warehouseId, () -> {
+            if (!repository.existsById(warehouseId)) {
+                throw new WarehouseNotFoundException(warehouseId);
+            }
+            Set<String> distinctIds = new LinkedHashSet<>(productIds);
+            List<String> unlinked = membershipRepository.unlink(warehouseId, distinctIds);
+            if (!unlinked.isEmpty()) {
+                membershipRepository.touchWarehouse(warehouseId);
+                membershipIndex.unlink(warehouseId, unlinked);
+                summaryIndex.unlink(warehouseId, unlinked);
+                changes.productsUnlinked(warehouseId, unlinked);
+            }
+            cache.invalidateWarehouseProducts(warehouseId, distinctIds);
+            return new MembershipChangeDTO(warehouseId, distinctIds.size(), unlinked.size());
+        }));
     }
 
     public Product getProductFromWarehouse(Long warehouseId, String productId) {
-        return repository.findProductInWarehouse(warehouseId, productId)
+        return cache.getProductInWarehouse(warehouseId, productId,
+                        () -> shards.onWarehouse(warehouseId, () -> repository.findProductInWarehouse(warehouseId, productId)))
                 .orElseThrow(() -> new RuntimeException("Product not found in the specified warehouse"));
     }
 
     public DataWarehouse createWarehouse(DataWarehouse warehouse) {
-        return repository.save(warehouse);
+        return shards.onNewWarehouse(() -> {
+            // An echoed version would make save() merge instead of insert
+            warehouse.setVersion(null);
+            DataWarehouse saved = repository.save(warehouse);
+            cache.invalidateWarehouse(saved.getWarehouseID());
+            List<String> productIds = saved.getProducts() == null ? List.of() : productIdsOf(saved.getProducts());
+            membershipIndex.link(saved.getWarehouseID(), productIds);
+            summaryIndex.link(saved.getWarehouseID(), productIds);
+            changes.warehouseCreated(saved.getWarehouseID(), productIds);
+            return saved;
+        });
     }
 
     public void deleteWarehouse(Long id) {
-        if (!repository.existsById(id)) {
-            throw new RuntimeException("Warehouse not found");
-        }
-        repository.deleteById(id);
+        shards.onWarehouse(id, () -> {
+            if (!repository.existsById(id)) {
+                throw new WarehouseNotFoundException(id);
+            }
+            repository.deleteById(id);
+            return null;
+        });
+        cache.invalidateWarehouse(id);
+        membershipIndex.removeWarehouse(id);
+        summaryIndex.removeWarehouse(id);
+        changes.warehouseDeleted(id);
     }
 
+    @Transactional(readOnly = true)
     public List<Product> getProductsFromWarehouse(Long warehouseId) {
-        DataWarehouse warehouse = getWarehouseById(warehouseId);
-        return warehouse.getProducts();
+        return shards.onWarehouse(warehouseId, () -> {
+            List<Product> products = repository.findProductsByWarehouseId(warehouseId);
+            // Only pay for the existence check when the join came back empty
+            if (products.isEmpty() && !repository.existsById(warehouseId)) {
+                throw new WarehouseNotFoundException(warehouseId);
+            }
+            return products;
+        });
     }
 
-}
\ No newline at end of file
+    private static List<String> productIdsOf(List<Product> products) {
+        return products.stream().map(Product::getProductID).toList();
+    }
+}
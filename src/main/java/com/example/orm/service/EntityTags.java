@@ -0,0 +1,53 @@
+package com.example.orm.service;
+
+import com.example.orm.dto.WarehouseVersion;
+import com.example.orm.model.Product;
+
+/**
+ * Strong ETag values derived from entity versions, so a conditional GET can be answered by
+ * comparing numbers instead of hashing a serialized body.
+ */
+public final class EntityTags {
+
+    private EntityTags() {
+    }
+
+    public static String of(Product product) {
+        return "\"p-" + product.getProductID() + "-" + product.getVersion() + "\"";
+    }
+
+    public static String of(Long warehouseId, WarehouseVersion version) {
+        return "\"w-" + warehouseId + "-" + version.getVersion() + "-" + version.getProductVersions() + "\"";
+    }
+
+    /**
+     * Product version carried by an {@code If-Match} value, or null if it is not a tag of this product.
+     */
+    public static Long productVersion(String etag, String productId) {
+        return parseVersion(inner(etag, "\"p-" + productId + "-"));
+    }
+
+    /**
+     * Warehouse row version carried by an {@code If-Match} value, or null if it is not a tag of this
+     * warehouse. A PUT replaces only the row, so the product part of the tag is not compared.
+     */
+    public static Long warehouseVersion(String etag, Long warehouseId) {
+        String versions = inner(etag, "\"w-" + warehouseId + "-");
+        int dash = versions == null ? -1 : versions.indexOf('-');
+        return dash < 0 ? null : parseVersion(versions.substring(0, dash));
+    }
+
+    private static String inner(String etag, String prefix) {
+        return etag.startsWith(prefix) && etag.endsWith("\"")
+                ? etag.substring(prefix.length(), etag.length() - 1)
+                : null;
+    }
+
+    private static Long parseVersion(String version) {
+        try {
+            return version == null ? null : Long.valueOf(version);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.orm.service;
+
+import com.example.orm.dto.CursorPageDTO;
+import com.example.orm.dto.InventorySummaryStatsDTO;
+import com.example.orm.dto.WarehouseSummaryDTO;
+import com.example.orm.summary.InventorySummaryIndex;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Inventory summaries served from {@link InventorySummaryIndex}; only a rebuild reads the database.
+ */
+@Service
+@RequiredArgsConstructor
+public class InventorySummaryService {
+
+    private final InventorySummaryIndex index;
+
+    public WarehouseSummaryDTO getSummary(Long warehouseId) {
+        return index.summary(warehouseId)
+                .orElseThrow(() -> new WarehouseNotFoundException(warehouseId));
+    }
+
+    public CursorPageDTO<WarehouseSummaryDTO> getSummaryPage(String cursor, Integer size) {
+        int pageSize = PageCursor.clampSize(size);
+        long afterId = cursor == null ? 0L : PageCursor.decodeWarehouseId(cursor);
+        List<WarehouseSummaryDTO> rows = index.summaries(afterId, pageSize + 1);
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            nextCursor = PageCursor.encodeWarehouseId(rows.get(pageSize - 1).getWarehouseID());
+        }
+        return new CursorPageDTO<>(rows, nextCursor, rows.size());
+    }
+
+    public InventorySummaryStatsDTO getStats() {
+        return index.stats();
+    }
+
+    /**
+     * Queues a full rescan; a request while one is still queued is absorbed by it.
+     */
+    public void rebuildInBackground() {
+        index.rebuildInBackground();
+    }
+}
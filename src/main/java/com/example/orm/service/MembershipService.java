@@ -0,0 +1,66 @@
+package com.example.orm.service;
+
+import com.example.orm.dto.MembershipIndexStatsDTO;
+import com.example.orm.dto.MembershipSetDTO;
+import com.example.orm.membership.WarehouseMembershipIndex;
+import com.example.orm.membership.WarehouseMembershipIndex.ProductIdPage;
+import com.example.orm.membership.WarehouseMembershipIndex.SetOperation;
+import com.example.orm.membership.WarehouseMembershipIndex.UnknownWarehouseException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Membership queries answered from {@link WarehouseMembershipIndex} without touching the database.
+ */
+@Service
+@RequiredArgsConstructor
+public class MembershipService {
+
+    private final WarehouseMembershipIndex index;
+
+    public List<Long> getWarehousesOfProduct(String productId) {
+        return index.warehousesOf(productId);
+    }
+
+    public Map<String, Boolean> checkMembership(Long warehouseId, List<String> productIds) {
+        try {
+            return index.containsAll(warehouseId, productIds);
+        } catch (UnknownWarehouseException e) {
+            throw new WarehouseNotFoundException(e.getWarehouseId());
+        }
+    }
+
+    public MembershipSetDTO combine(String operation, List<Long> warehouseIds, String cursor, Integer size) {
+        SetOperation op;
+        try {
+            op = SetOperation.valueOf(operation.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown set operation: " + operation);
+        }
+        if (warehouseIds == null || warehouseIds.isEmpty()) {
+            throw new IllegalArgumentException("At least one warehouse ID is required");
+        }
+        int pageSize = PageCursor.clampSize(size);
+        String afterProductId = cursor == null ? null : PageCursor.decode("m", cursor);
+        ProductIdPage page;
+        try {
+            // Warehouse lookup and set operation see the same index state
+            page = index.combine(op, warehouseIds, afterProductId, pageSize);
+        } catch (UnknownWarehouseException e) {
+            throw new WarehouseNotFoundException(e.getWarehouseId());
+        }
+        String nextCursor = page.hasMore()
+                ? PageCursor.encode("m", page.productIds().get(page.productIds().size() - 1))
+                : null;
+        return new MembershipSetDTO(op.name().toLowerCase(Locale.ROOT), warehouseIds, page.count(),
+                page.productIds(), nextCursor);
+    }
+
+    public MembershipIndexStatsDTO getStats() {
+        return index.stats();
+    }
+}
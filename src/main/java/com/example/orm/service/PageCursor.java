@@ -0,0 +1,58 @@
+package com.example.orm.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque continuation token for keyset pagination. The token carries the last key of the
+ * previous page together with a prefix, so a product cursor cannot be replayed against
+ * the warehouse listing.
+ */
+final class PageCursor {
+
+    static final int DEFAULT_PAGE_SIZE = 50;
+    static final int MAX_PAGE_SIZE = 500;
+
+    // Shared by every listing ordered by warehouse ID, so their cursors are interchangeable
+    private static final String WAREHOUSE_PREFIX = "w";
+
+    private PageCursor() {
+    }
+
+    static String encode(String prefix, String lastKey) {
+        byte[] raw = (prefix + ":" + lastKey).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+    }
+
+    static String decode(String prefix, String cursor) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        if (!raw.startsWith(prefix + ":")) {
+            throw new IllegalArgumentException("Cursor does not belong to this listing");
+        }
+        return raw.substring(prefix.length() + 1);
+    }
+
+    static String encodeWarehouseId(long warehouseId) {
+        return encode(WAREHOUSE_PREFIX, String.valueOf(warehouseId));
+    }
+
+    static long decodeWarehouseId(String cursor) {
+        try {
+            return Long.parseLong(decode(WAREHOUSE_PREFIX, cursor));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+    }
+
+    static int clampSize(Integer size) {
+        if (size == null || size <= 0) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(size, MAX_PAGE_SIZE);
+    }
+}
@@ -0,0 +1,444 @@
+package com.example.orm.service;
+
+import com.example.orm.datasource.ShardRouter;
+import com.example.orm.datasource.TransactionHooks;
+import com.example.orm.repository.WarehouseMembershipRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps the product table identical on every shard when sharding is enabled, so warehouse links
+ * keep their foreign key and the warehouse queries can join products on the warehouse's shard.
+ * Once a product write has committed, the rows are read back from the shard that was written and
+ * copied to the others on a background thread; a product missing there is deleted everywhere
+ * else. Copies carry the version and never replace a newer one, so they may arrive late, twice or
+ * out of order, and warehouse ETags agree across shards once they have.
+ * <p>
+ * A failed copy is retried with backoff. What is still wrong after that is left to
+ * {@link #reconcile}, which runs periodically, compares the shards and copies the highest version
+ * of each product, or any copy of it, to the shards lacking it. A delete that never reached the
+ * other shards therefore comes back. Without sharding every call is a no-op.
+ */
+@Component
+@Slf4j
+public class ProductCatalogReplicator implements MeterBinder {
+
+    private static final int CHUNK_SIZE = 500;
+
+    private static final String SELECT_SQL =
+            "SELECT product_id, product_name, product_category, product_quantity, product_unit, version " +
+            "FROM product WHERE product_id IN (:ids)";
+
+    private static final String SCAN_SQL =
+            "SELECT product_id, product_name, product_category, product_quantity, product_unit, version FROM product";
+
+    private static final String UPDATE_SQL =
+            "UPDATE product SET product_name = ?, product_category = ?, product_quantity = ?, product_unit = ?, " +
+            "version = ?, updated_at = CURRENT_TIMESTAMP WHERE product_id = ? AND version < ?";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO product (product_name, product_category, product_quantity, product_unit, version, product_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?) ON CONFLICT DO NOTHING";
+
+    private static final String DELETE_SQL = "DELETE FROM product WHERE product_id = ?";
+
+    // Reconcile windows: the next IDs on the reference shard, then the same range on the others
+    private static final String VERSIONS_AFTER_SQL =
+            "SELECT product_id, version FROM product WHERE product_id > ? ORDER BY product_id LIMIT ?";
+
+    private static final String VERSIONS_BETWEEN_SQL =
+            "SELECT product_id, version FROM product WHERE product_id > ? AND product_id <= ?";
+
+    private static final String VERSIONS_FROM_SQL = "SELECT product_id, version FROM product WHERE product_id > ?";
+
+    private final ShardRouter router;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final WarehouseMembershipRepository membershipRepository;
+    private final TransactionTemplate transaction;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int fetchSize;
+    private final int retries;
+    private final Duration retryDelay;
+    private final Duration replicationWait;
+    private final ScheduledExecutorService replication = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "catalog-replication");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Product ID -> copies queued or running for it; also the monitor awaitReplication waits on
+    private final Map<String, Integer> inFlight = new HashMap<>();
+    private final AtomicBoolean reconcileQueued = new AtomicBoolean();
+    private volatile Counter copiedRows;
+    private volatile Counter failures;
+    private volatile Counter repaired;
+
+    public ProductCatalogReplicator(ObjectProvider<ShardRouter> router, JdbcTemplate jdbcTemplate,
+                                    WarehouseMembershipRepository membershipRepository,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${app.datasource.sharding.replication-fetch-size:1000}") int fetchSize,
+                                    @Value("${app.datasource.sharding.replication-retries:3}") int retries,
+                                    @Value("${app.datasource.sharding.replication-retry-delay:PT1S}") Duration retryDelay,
+                                    @Value("${app.datasource.sharding.replication-wait:PT10S}") Duration replicationWait) {
+        this.router = router.getIfAvailable();
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.membershipRepository = membershipRepository;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.fetchSize = fetchSize;
+        this.retries = retries;
+        this.retryDelay = retryDelay;
+        this.replicationWait = replicationWait;
+    }
+
+    /**
+     * Copies the products from the shard the current code writes to, once the write has committed.
+     * The copy runs in the background; {@link #awaitReplication} waits for it.
+     */
+    public void replicate(Collection<String> productIds) {
+        if (!sharded() || productIds.isEmpty()) {
+            return;
+        }
+        int source = ShardRouter.currentShard();
+        List<String> ids = List.copyOf(new HashSet<>(productIds));
+        track(ids);
+        // Only queues the copy, so the committing thread does not hold its connection for it
+        TransactionHooks.afterCompletion(committed -> {
+            if (committed) {
+                submit(() -> copy(source, ids), () -> release(ids), ids.size() + " products from shard " + source, 0);
+            } else {
+                release(ids);
+            }
+        });
+    }
+
+    /**
+     * Copies the whole catalog from the reference shard in the background once the current
+     * transaction has committed; for bulk writes that do not track individual products.
+     */
+    public void replicateAllAfterCommit() {
+        if (!sharded()) {
+            return;
+        }
+        TransactionHooks.afterCommit(() -> submit(this::copyAll, () -> {
+        }, "the product catalog", 0));
+    }
+
+    /**
+     * Waits, at most {@code app.datasource.sharding.replication-wait}, until no copy of these
+     * products is queued or running, e.g. before linking products written moments ago on another
+     * shard. Call it outside a transaction, so no connection is held meanwhile. Returns false on
+     * timeout or interrupt; a copy that failed for good also counts as done.
+     */
+    public boolean awaitReplication(Collection<String> productIds) {
+        if (!sharded()) {
+            return true;
+        }
+        long deadline = System.nanoTime() + replicationWait.toNanos();
+        synchronized (inFlight) {
+            while (productIds.stream().anyMatch(inFlight::containsKey)) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(inFlight, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.sharding.reconcile-interval:PT15M}",
+            initialDelayString = "${app.datasource.sharding.reconcile-interval:PT15M}")
+    public void scheduleReconcile() {
+        // On the replication thread, after the copies already queued; one queued pass is enough
+        if (!sharded() || !reconcileQueued.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            replication.execute(() -> {
+                reconcileQueued.set(false);
+                try {
+                    reconcile();
+                } catch (RuntimeException e) {
+                    log.error("Error reconciling the product catalog across shards: ", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            reconcileQueued.set(false);
+        }
+    }
+
+    /**
+     * Compares the catalog on every shard, window by window in product ID order, and copies each
+     * product that is missing or outdated somewhere from the shard with its highest version.
+     * Products with a copy in flight are left to it. Returns the number of products repaired.
+     */
+    public int reconcile() {
+        if (!sharded()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        List<Integer> others = otherShards(ShardRouter.REFERENCE_SHARD);
+        int total = 0;
+        String after = "";
+        boolean last = false;
+        while (!last) {
+            String from = after;
+            NavigableMap<String, Long> reference = ShardRouter.onShard(ShardRouter.REFERENCE_SHARD,
+                    () -> versions(VERSIONS_AFTER_SQL, from, CHUNK_SIZE));
+            last = reference.size() < CHUNK_SIZE;
+            // The database compares the IDs, so the window agrees with its collation on every shard
+            String to = last ? null : reference.lastKey();
+            List<Map<String, Long>> versions = new ArrayList<>();
+            versions.add(reference);
+            versions.addAll(router.scatter(others, shard -> to == null
+                    ? versions(VERSIONS_FROM_SQL, from)
+                    : versions(VERSIONS_BETWEEN_SQL, from, to)));
+            total += repair(versions);
+            after = to;
+        }
+        count(repaired, total);
+        if (total > 0) {
+            log.warn("Reconcile repaired {} products across {} shards in {} ms", total, router.shardCount(),
+                    (System.nanoTime() - start) / 1_000_000);
+        }
+        return total;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        copiedRows = Counter.builder("catalog.replication.rows")
+                .description("Product rows copied or deleted on shards other than the one written")
+                .register(registry);
+        failures = Counter.builder("catalog.replication.failures")
+                .description("Copies that still failed after their retries, left to the next reconcile")
+                .register(registry);
+        repaired = Counter.builder("catalog.replication.repaired")
+                .description("Products found missing or outdated on some shard and copied by a reconcile")
+                .register(registry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        replication.shutdownNow();
+    }
+
+    private boolean sharded() {
+        return router != null && router.shardCount() > 1;
+    }
+
+    // Runs the copy on the replication thread, retrying with exponential backoff, then calls done
+    private void submit(Runnable copy, Runnable done, String what, int attempt) {
+        long delay = attempt == 0 ? 0 : retryDelay.toMillis() << (attempt - 1);
+        try {
+            replication.schedule(() -> {
+                try {
+                    copy.run();
+                } catch (RuntimeException e) {
+                    if (attempt < retries) {
+                        log.warn("Error copying {} to the other shards, retry {} of {}: {}", what, attempt + 1, retries,
+                                e.toString());
+                        submit(copy, done, what, attempt + 1);
+                        return;
+                    }
+                    count(failures);
+                    log.error("Error copying {} to the other shards, left to the next reconcile: ", what, e);
+                }
+                done.run();
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down; the next start's reconcile picks it up
+            done.run();
+        }
+    }
+
+    private void track(List<String> ids) {
+        synchronized (inFlight) {
+            ids.forEach(id -> inFlight.merge(id, 1, Integer::sum));
+        }
+    }
+
+    private void release(List<String> ids) {
+        synchronized (inFlight) {
+            ids.forEach(id -> inFlight.computeIfPresent(id, (key, copies) -> copies == 1 ? null : copies - 1));
+            inFlight.notifyAll();
+        }
+    }
+
+    private NavigableMap<String, Long> versions(String sql, Object... args) {
+        NavigableMap<String, Long> versions = new TreeMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            versions.put(rs.getString(1), rs.getLong(2));
+        }, args);
+        return versions;
+    }
+
+    // Copies every product of the window that some shard lacks or has outdated from its best shard
+    private int repair(List<Map<String, Long>> versions) {
+        Map<String, Integer> best = new HashMap<>();
+        for (int shard = 0; shard < versions.size(); shard++) {
+            for (String productId : versions.get(shard).keySet()) {
+                best.merge(productId, shard, (held, candidate) ->
+                        versions.get(candidate).get(productId) > versions.get(held).get(productId) ? candidate : held);
+            }
+        }
+        Set<String> busy;
+        synchronized (inFlight) {
+            busy = new HashSet<>(inFlight.keySet());
+        }
+        Map<Integer, List<String>> bySource = new TreeMap<>();
+        best.forEach((productId, source) -> {
+            Long version = versions.get(source).get(productId);
+            boolean behind = versions.stream().anyMatch(shard -> !version.equals(shard.get(productId)));
+            if (behind && !busy.contains(productId)) {
+                bySource.computeIfAbsent(source, shard -> new ArrayList<>()).add(productId);
+            }
+        });
+        bySource.forEach(this::copy);
+        return bySource.values().stream().mapToInt(List::size).sum();
+    }
+
+    private void copy(int source, List<String> ids) {
+        List<Object[]> rows = new ArrayList<>(ids.size());
+        router.scatter(List.of(source), shard -> {
+            for (int from = 0; from < ids.size(); from += CHUNK_SIZE) {
+                rows.addAll(namedJdbcTemplate.query(SELECT_SQL,
+                        Map.of("ids", ids.subList(from, Math.min(ids.size(), from + CHUNK_SIZE))),
+                        (rs, rowNum) -> row(rs)));
+            }
+            return null;
+        });
+        Set<String> deleted = new HashSet<>(ids);
+        rows.forEach(row -> deleted.remove((String) row[5]));
+        router.scatter(otherShards(source), shard -> {
+            transaction.executeWithoutResult(status -> {
+                upsert(rows);
+                deleted.forEach(productId -> {
+                    // The cascade removes the links here too, so these warehouses' ETags have to move
+                    membershipRepository.touchWarehousesContaining(productId);
+                    jdbcTemplate.update(DELETE_SQL, productId);
+                });
+            });
+            return null;
+        });
+        count(copiedRows, (long) (rows.size() + deleted.size()) * (router.shardCount() - 1));
+    }
+
+    private void copyAll() {
+        long start = System.nanoTime();
+        List<Integer> targets = otherShards(ShardRouter.REFERENCE_SHARD);
+        List<Object[]> chunk = new ArrayList<>(CHUNK_SIZE);
+        long[] total = {0};
+        ShardRouter.onShard(ShardRouter.REFERENCE_SHARD, () -> readOnlyTransaction.executeWithoutResult(status ->
+                jdbcTemplate.query(con -> {
+                    var ps = con.prepareStatement(SCAN_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                    ps.setFetchSize(fetchSize);
+                    return ps;
+                }, rs -> {
+                    chunk.add(row(rs));
+                    if (chunk.size() == CHUNK_SIZE) {
+                        total[0] += upsertOn(targets, chunk);
+                    }
+                })));
+        total[0] += upsertOn(targets, chunk);
+        count(copiedRows, total[0] * targets.size());
+        log.info("Copied {} products to {} shards in {} ms", total[0], targets.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Writes the chunk to every target in parallel and clears it
+    private int upsertOn(List<Integer> targets, List<Object[]> chunk) {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+        List<Object[]> rows = List.copyOf(chunk);
+        chunk.clear();
+        router.scatter(targets, shard -> {
+            transaction.executeWithoutResult(status -> upsert(rows));
+            return null;
+        });
+        return rows.size();
+    }
+
+    // UPDATE first and INSERT what it missed; ON CONFLICT ... DO UPDATE is not portable to H2
+    private void upsert(List<Object[]> rows) {
+        List<Object[]> updates = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            Object[] update = Arrays.copyOf(row, row.length + 1);
+            update[row.length] = row[4];
+            updates.add(update);
+        }
+        // Rows skipped as newer here are skipped by the INSERT's conflict too
+        int[] updated = jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+        List<Object[]> missing = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                missing.add(rows.get(i));
+            }
+        }
+        if (!missing.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, missing);
+        }
+    }
+
+    // Parameters in INSERT_SQL order, product_id last; UPDATE_SQL takes the version once more
+    private static Object[] row(ResultSet rs) throws SQLException {
+        return new Object[]{rs.getString(2), rs.getString(3), rs.getInt(4), rs.getString(5), rs.getLong(6), rs.getString(1)};
+    }
+
+    private List<Integer> otherShards(int source) {
+        List<Integer> targets = new ArrayList<>();
+        for (int shard = 0; shard < router.shardCount(); shard++) {
+            if (shard != source) {
+                targets.add(shard);
+            }
+        }
+        return targets;
+    }
+
+    private static void count(Counter counter) {
+        count(counter, 1);
+    }
+
+    private static void count(Counter counter, long amount) {
+        if (counter != null) {
+            counter.increment(amount);
+        }
+    }
+}
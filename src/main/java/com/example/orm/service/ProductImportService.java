@@ -0,0 +1,201 @@
+package com.example.orm.service;
+
+import com.example.orm.cache.ProductLookupCache;
+import com.example.orm.dto.ImportReportDTO;
+import com.example.orm.events.InventoryChangePublisher;
+import com.example.orm.membership.WarehouseMembershipIndex;
+import com.example.orm.model.Product;
+import com.example.orm.repository.DataWarehouseRepository;
+import com.example.orm.repository.WarehouseMembershipRepository;
+import com.example.orm.search.ProductSearchIndex;
+import com.example.orm.summary.InventorySummaryIndex;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Bulk product import through the PostgreSQL COPY protocol. The request body is streamed into a
+ * transaction-scoped staging table and merged into {@code product} with a single upsert, so the
+ * import costs a handful of statements regardless of the number of rows and never holds the file
+ * in memory. A row the database cannot take rejects the whole file with the offending line in the
+ * message; nothing of it is kept.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductImportService {
+
+    public enum Format { CSV, NDJSON }
+
+    private static final String STAGING_DDL =
+            "CREATE TEMP TABLE product_import_staging (" +
+            "seq BIGSERIAL, product_id VARCHAR(255) NOT NULL, product_name VARCHAR(255), " +
+            "product_category VARCHAR(255), product_quantity INTEGER, product_unit VARCHAR(50)" +
+            ") ON COMMIT DROP";
+
+    private static final String COPY_SQL =
+            "COPY product_import_staging (product_id, product_name, product_category, product_quantity, product_unit) " +
+            "FROM STDIN WITH (FORMAT csv, HEADER %s)";
+
+    // Last row wins when a file repeats a product_id; ON CONFLICT cannot touch the same row twice
+    private static final String MERGE_SQL =
+            "INSERT INTO product (product_id, product_name, product_category, product_quantity, product_unit) " +
+            "SELECT DISTINCT ON (product_id) product_id, product_name, product_category, " +
+            "COALESCE(product_quantity, 0), product_unit " +
+            "FROM product_import_staging ORDER BY product_id, seq DESC " +
+            "ON CONFLICT (product_id) DO UPDATE SET " +
+            "product_name = EXCLUDED.product_name, " +
+            "product_category = EXCLUDED.product_category, " +
+            "product_quantity = EXCLUDED.product_quantity, " +
+            "product_unit = EXCLUDED.product_unit, " +
+            "version = product.version + 1, " +
+            "updated_at = CURRENT_TIMESTAMP";
+
+    private static final String LINK_SQL =
+            "INSERT INTO warehouse_products (warehouse_id, product_id) " +
+            "SELECT DISTINCT ?, product_id FROM product_import_staging " +
+            "ON CONFLICT DO NOTHING";
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    // Data exceptions (bad numbers, malformed CSV, values too long) and NOT NULL violations
+    private static final String DATA_EXCEPTION_CLASS = "22";
+    private static final String NOT_NULL_VIOLATION = "23502";
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final DataWarehouseRepository warehouseRepository;
+    private final WarehouseMembershipRepository membershipRepository;
+    private final ProductLookupCache cache;
+    private final InventoryChangePublisher changes;
+    private final ProductSearchIndex searchIndex;
+    private final WarehouseMembershipIndex membershipIndex;
+    private final InventorySummaryIndex summaryIndex;
+    private final WarehouseShards shards;
+    private final ProductCatalogReplicator catalog;
+
+    @Timed(value = "product.import", histogram = true)
+    @Transactional
+    public ImportReportDTO importProducts(InputStream body, Format format, Long warehouseId) throws IOException, SQLException {
+        if (warehouseId != null && shards.sharded()) {
+            // The staged rows are on the reference shard, the warehouse's links may not be
+            throw new IllegalArgumentException("Importing into a warehouse is not supported with sharding");
+        }
+        if (warehouseId != null && !warehouseRepository.existsById(warehouseId)) {
+            throw new WarehouseNotFoundException(warehouseId);
+        }
+        long start = System.nanoTime();
+
+        jdbcTemplate.execute(STAGING_DDL);
+        // The transaction-bound connection, so the staging table and the merge see the same session
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+        long rowsRead;
+        try {
+            rowsRead = format == Format.CSV
+                    ? copyManager.copyIn(String.format(COPY_SQL, "true"), body, COPY_BUFFER_SIZE)
+                    : copyNdjson(copyManager, body);
+        } catch (SQLException e) {
+            throw rejected(e);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Malformed NDJSON: " + e.getOriginalMessage(), e);
+        }
+
+        long rowsUpserted;
+        try {
+            rowsUpserted = jdbcTemplate.update(MERGE_SQL);
+        } catch (DataIntegrityViolationException e) {
+            // A row without a name only fails here, product_name is nullable in the staging table
+            throw e.getCause() instanceof SQLException cause ? rejected(cause) : e;
+        }
+        long rowsLinked = warehouseId == null ? 0 : jdbcTemplate.update(LINK_SQL, warehouseId);
+        if (rowsLinked > 0) {
+            membershipRepository.touchWarehouse(warehouseId);
+            // The staged IDs are gone after commit, so the index is rescanned instead
+            membershipIndex.rebuildAfterCommit();
+        }
+        // An import can touch any number of products; tracking them individually is not worth it.
+        // The cache waits for the commit itself, so readers cannot re-cache the pre-import rows.
+        cache.invalidateAll();
+        searchIndex.rebuildAfterCommit();
+        // Upserts overwrite quantities and categories of linked products
+        summaryIndex.rebuildAfterCommit();
+        catalog.replicateAllAfterCommit();
+        // One summary event; subscribers reload instead of receiving a line per imported row
+        changes.productsImported(rowsUpserted, warehouseId);
+
+        long durationMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        double rowsPerSecond = rowsRead * 1000.0 / durationMillis;
+        log.info("Imported {} product rows ({} upserted, {} linked) in {} ms ({} rows/s)",
+                rowsRead, rowsUpserted, rowsLinked, durationMillis, Math.round(rowsPerSecond));
+        return new ImportReportDTO(rowsRead, rowsUpserted, rowsLinked, durationMillis, rowsPerSecond);
+    }
+
+    // The 400 for a row the database refused; any other failure is rethrown as it is
+    private static RuntimeException rejected(SQLException e) throws SQLException {
+        String state = e.getSQLState();
+        if (state == null || !(state.startsWith(DATA_EXCEPTION_CLASS) || state.equals(NOT_NULL_VIOLATION))) {
+            throw e;
+        }
+        // For COPY the server message names the line and column of the first bad row
+        return new IllegalArgumentException("Import rejected: " + e.getMessage(), e);
+    }
+
+    // Re-encodes NDJSON as CSV on the fly, one line at a time
+    private long copyNdjson(CopyManager copyManager, InputStream body) throws IOException, SQLException {
+        CopyIn copyIn = copyManager.copyIn(String.format(COPY_SQL, "false"));
+        try (MappingIterator<Product> lines = objectMapper.readerFor(Product.class).readValues(body)) {
+            StringBuilder row = new StringBuilder(256);
+            while (lines.hasNextValue()) {
+                Product product = lines.nextValue();
+                row.setLength(0);
+                appendCsv(row, product.getProductID()).append(',');
+                appendCsv(row, product.getProductName()).append(',');
+                appendCsv(row, product.getProductCategory()).append(',');
+                row.append(product.getProductQuantity()).append(',');
+                appendCsv(row, product.getProductUnit()).append('\n');
+                byte[] bytes = row.toString().getBytes(StandardCharsets.UTF_8);
+                copyIn.writeToCopy(bytes, 0, bytes.length);
+            }
+            return copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    private static StringBuilder appendCsv(StringBuilder row, String value) {
+        if (value == null) {
+            return row;
+        }
+        row.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                row.append('"');
+            }
+            row.append(c);
+        }
+        return row.append('"');
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.orm.service;
+
+import com.example.orm.dto.CursorPageDTO;
+import com.example.orm.dto.ProductSearchHitDTO;
+import com.example.orm.membership.WarehouseMembershipIndex;
+import com.example.orm.search.ProductSearchIndex;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Ranked product search over {@link ProductSearchIndex}, restricted to a warehouse through
+ * {@link WarehouseMembershipIndex}, so neither touches the database. The cursor carries the score
+ * and product ID of the last hit; the next page starts right after that hit in the ranking.
+ */
+@Service
+@RequiredArgsConstructor
+public class ProductSearchService {
+
+    private final ProductSearchIndex index;
+    private final WarehouseMembershipIndex membershipIndex;
+
+    public CursorPageDTO<ProductSearchHitDTO> search(String query, String category, Long warehouseId,
+                                                     String cursor, Integer size) {
+        int pageSize = PageCursor.clampSize(size);
+        Predicate<String> inWarehouse = null;
+        if (warehouseId != null) {
+            if (!membershipIndex.hasWarehouse(warehouseId)) {
+                throw new WarehouseNotFoundException(warehouseId);
+            }
+            inWarehouse = productId -> membershipIndex.contains(warehouseId, productId);
+        }
+        int afterScore = 0;
+        String afterProductId = null;
+        if (cursor != null) {
+            String lastKey = PageCursor.decode("s", cursor);
+            int colon = lastKey.indexOf(':');
+            try {
+                afterScore = Integer.parseInt(lastKey.substring(0, Math.max(colon, 0)));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            afterProductId = lastKey.substring(colon + 1);
+        }
+        // One extra hit tells us whether another page exists
+        List<ProductSearchHitDTO> hits = index.search(query, category, inWarehouse, afterScore, afterProductId, pageSize + 1);
+        List<ProductSearchHitDTO> page = hits.subList(0, Math.min(pageSize, hits.size()));
+        String nextCursor = null;
+        if (hits.size() > pageSize) {
+            ProductSearchHitDTO last = page.get(page.size() - 1);
+            nextCursor = PageCursor.encode("s", last.getScore() + ":" + last.getProductID());
+        }
+        return new CursorPageDTO<>(page, nextCursor, page.size());
+    }
+}
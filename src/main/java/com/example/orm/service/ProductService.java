@@ -1,9 +1,21 @@
 package com.example.orm.service;
 
+import com.example.orm.cache.ProductLookupCache;
+import com.example.orm.dto.CursorPageDTO;
+import com.example.orm.dto.StockAdjustmentDTO;
+import com.example.orm.dto.StockAdjustmentResultDTO;
+import com.example.orm.events.InventoryChangePublisher;
+import com.example.orm.membership.WarehouseMembershipIndex;
 import com.example.orm.model.Product;
 import com.example.orm.repository.ProductRepository;
+import com.example.orm.repository.WarehouseMembershipRepository;
+import com.example.orm.search.ProductSearchIndex;
+import com.example.orm.summary.InventorySummaryIndex;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -12,29 +24,106 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ProductService {
     private final ProductRepository repository;
+    private final ProductLookupCache cache;
+    private final StockAdjustmentBuffer stockBuffer;
+    private final WarehouseMembershipRepository membershipRepository;
+    private final InventoryChangePublisher changes;
+    private final ProductSearchIndex searchIndex;
+    private final WarehouseMembershipIndex membershipIndex;
+    private final InventorySummaryIndex summaryIndex;
+    private final ProductCatalogReplicator catalog;
 
     public Product addProduct(Product product) {
-        return repository.save(product);
+        // An echoed version would make save() merge instead of insert
+        product.setVersion(null);
+        Product saved = repository.save(product);
+        catalog.replicate(List.of(saved.getProductID()));
+        // Drops a cached "not found" for this ID
+        cache.invalidateProduct(saved.getProductID());
+        searchIndex.index(saved);
+        summaryIndex.putProduct(saved);
+        changes.productCreated(saved);
+        return saved;
     }
 
     public Product getProductById(String id) {
-        return repository.findById(id)
+        return cache.getProduct(id, () -> repository.findById(id))
                 .orElseThrow(() -> new RuntimeException("Product not found with ID: " + id));
     }
 
-    public List<Product> getAllProducts() {
-        return repository.findAll();
+    @Transactional(readOnly = true)
+    public CursorPageDTO<Product> getProductPage(String cursor, Integer size, String category) {
+        int pageSize = PageCursor.clampSize(size);
+        String afterId = cursor == null ? "" : PageCursor.decode("p", cursor);
+        // One extra row tells us whether another page exists without a COUNT query
+        Limit limit = Limit.of(pageSize + 1);
+        List<Product> rows = category == null
+                ? repository.findPageAfter(afterId, limit)
+                : repository.findPageInCategoryAfter(category, afterId, limit);
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            nextCursor = PageCursor.encode("p", rows.get(pageSize - 1).getProductID());
+        }
+        return new CursorPageDTO<>(rows, nextCursor, rows.size());
     }
 
     public Product updateProduct(Product product) {
-        return repository.save(product);
+        Product existing = repository.findById(product.getProductID())
+                .orElseThrow(() -> new RuntimeException("Product not found with ID: " + product.getProductID()));
+        if (product.getVersion() != null && !product.getVersion().equals(existing.getVersion())) {
+            throw new ObjectOptimisticLockingFailureException(Product.class, product.getProductID());
+        }
+        existing.setProductName(product.getProductName());
+        existing.setProductCategory(product.getProductCategory());
+        existing.setProductQuantity(product.getProductQuantity());
+        existing.setProductUnit(product.getProductUnit());
+        // Merging the detached copy re-checks the version, so a write that slipped in since the read fails too
+        Product saved = repository.save(existing);
+        catalog.replicate(List.of(saved.getProductID()));
+        cache.invalidateProduct(saved.getProductID());
+        searchIndex.index(saved);
+        summaryIndex.putProduct(saved);
+        changes.productUpdated(saved);
+        return saved;
+    }
+
+    public StockAdjustmentResultDTO adjustStock(String id, StockAdjustmentDTO adjustment) {
+        if (adjustment.isSynchronous()) {
+            Integer quantity = stockBuffer.applyNow(id, adjustment.getDelta());
+            if (quantity == null) {
+                throw new RuntimeException("Product not found with ID: " + id);
+            }
+            changes.quantityChanged(id, adjustment.getDelta(), quantity);
+            return new StockAdjustmentResultDTO(id, adjustment.getDelta(), quantity, true);
+        }
+        // Existence check goes through the lookup cache, so buffered deltas stay off the database.
+        // The change event is published by the buffer once the delta is actually written.
+        Product product = getProductById(id);
+        long quantity = (long) product.getProductQuantity() + stockBuffer.buffered(id) + adjustment.getDelta();
+        if (quantity < Integer.MIN_VALUE || quantity > Integer.MAX_VALUE) {
+            // The flush could never write it; as of the cached quantity, the flush retries cover the rest
+            throw new IllegalArgumentException("Stock of product " + id + " would leave the INTEGER range");
+        }
+        stockBuffer.add(id, adjustment.getDelta());
+        return new StockAdjustmentResultDTO(id, adjustment.getDelta(), null, false);
     }
 
+    @Transactional
     public void deleteProduct(String id) {
         if (!repository.existsById(id)) {
             throw new RuntimeException("Product not found");
         }
+        // The cascade removes the links, so the warehouses' ETags have to move
+        membershipRepository.touchWarehousesContaining(id);
         repository.deleteById(id);
+        // Other shards touch their warehouses and drop the row once this commits
+        catalog.replicate(List.of(id));
+        cache.invalidateProduct(id);
+        searchIndex.remove(id);
+        membershipIndex.removeProduct(id);
+        summaryIndex.removeProduct(id);
+        changes.productDeleted(id);
     }
 }
 
@@ -0,0 +1,266 @@
+package com.example.orm.service;
+
+import com.example.orm.cache.ProductLookupCache;
+import com.example.orm.events.InventoryChangePublisher;
+import com.example.orm.summary.InventorySummaryIndex;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Write-behind buffer for stock deltas. Concurrent deltas for the same product are summed in
+ * memory (ConcurrentHashMap locks per bin, so unrelated products never contend) and written
+ * on a schedule as one batched relative UPDATE, so a burst of scanner events costs one row
+ * update per product instead of one read-modify-write per event. The resulting quantities and
+ * versions are read back in the same transaction, so downstream consumers get absolute values.
+ * <p>
+ * Buffered sums stay within the INTEGER range of the column. A batch that fails is retried product
+ * by product, so one bad row cannot hold the others back; a product that keeps failing is put back
+ * for the next flush up to {@code app.stock.max-flush-attempts} times and then dropped and counted.
+ */
+@Component
+@Slf4j
+public class StockAdjustmentBuffer implements MeterBinder {
+
+    private static final String ADJUST_SQL =
+            "UPDATE product SET product_quantity = product_quantity + ?, version = version + 1, " +
+            "updated_at = CURRENT_TIMESTAMP " +
+            "WHERE product_id = ?";
+
+    private static final String ADJUST_RETURNING_SQL = ADJUST_SQL + " RETURNING product_quantity, version";
+
+    private static final String QUANTITIES_SQL =
+            "SELECT product_id, product_quantity, version FROM product WHERE product_id IN (:ids)";
+
+    private final Map<String, Long> pending = new ConcurrentHashMap<>();
+    // Product ID -> flushes in a row that failed for it
+    private final Map<String, Integer> failedFlushes = new ConcurrentHashMap<>();
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ProductLookupCache cache;
+    private final InventoryChangePublisher changes;
+    private final InventorySummaryIndex summaryIndex;
+    private final ProductCatalogReplicator catalog;
+    private final int flushSize;
+    private final boolean flushOnShutdown;
+    private final int maxFlushAttempts;
+    private volatile Counter dropped;
+
+    public StockAdjustmentBuffer(JdbcTemplate jdbcTemplate,
+                                 TransactionTemplate transactionTemplate,
+                                 ProductLookupCache cache,
+                                 InventoryChangePublisher changes,
+                                 InventorySummaryIndex summaryIndex,
+                                 ProductCatalogReplicator catalog,
+                                 @Value("${app.stock.flush-size:1000}") int flushSize,
+                                 @Value("${app.stock.flush-on-shutdown:true}") boolean flushOnShutdown,
+                                 @Value("${app.stock.max-flush-attempts:5}") int maxFlushAttempts) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = transactionTemplate;
+        this.cache = cache;
+        this.changes = changes;
+        this.summaryIndex = summaryIndex;
+        this.catalog = catalog;
+        this.flushSize = flushSize;
+        this.flushOnShutdown = flushOnShutdown;
+        this.maxFlushAttempts = maxFlushAttempts;
+    }
+
+    /**
+     * Buffers the delta.
+     *
+     * @throws IllegalArgumentException if the buffered sum for the product would leave the INTEGER range
+     */
+    public void add(String productId, int delta) {
+        pending.merge(productId, (long) delta, (buffered, added) -> checkedSum(productId, buffered, added));
+    }
+
+    /**
+     * The sum of the deltas buffered for the product, zero if there are none.
+     */
+    public long buffered(String productId) {
+        return pending.getOrDefault(productId, 0L);
+    }
+
+    /**
+     * Applies the delta together with anything still buffered for the product and returns the
+     * resulting quantity, or null if the product does not exist.
+     */
+    public Integer applyNow(String productId, int delta) {
+        Long buffered = pending.remove(productId);
+        long total = delta + (buffered == null ? 0 : buffered);
+        List<StockLevel> result;
+        try {
+            checkedSum(productId, total, 0);
+            result = jdbcTemplate.query(ADJUST_RETURNING_SQL,
+                    (rs, rowNum) -> new StockLevel(productId, rs.getInt(1), rs.getLong(2)), total, productId);
+        } catch (RuntimeException e) {
+            if (buffered != null) {
+                pending.merge(productId, buffered, Long::sum);
+            }
+            throw e;
+        }
+        cache.invalidateProduct(productId);
+        if (result.isEmpty()) {
+            return null;
+        }
+        StockLevel level = result.get(0);
+        summaryIndex.setQuantity(productId, level.quantity(), level.version());
+        catalog.replicate(List.of(productId));
+        return level.quantity();
+    }
+
+    public int pendingProducts() {
+        return pending.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("stock.buffer.pending", pending, Map::size)
+                .description("Products with buffered, not yet flushed stock deltas")
+                .register(registry);
+        dropped = Counter.builder("stock.buffer.dropped")
+                .description("Buffered stock deltas dropped after failing app.stock.max-flush-attempts flushes")
+                .register(registry);
+    }
+
+    @Timed(value = "stock.buffer.flush", histogram = true)
+    @Scheduled(fixedDelayString = "${app.stock.flush-interval:PT1S}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        // remove() hands over each sum atomically; deltas arriving later start a new entry
+        List<Map.Entry<String, Long>> drained = new ArrayList<>();
+        for (String productId : pending.keySet()) {
+            Long delta = pending.remove(productId);
+            if (delta != null && delta != 0) {
+                drained.add(Map.entry(productId, delta));
+            }
+        }
+        if (drained.isEmpty()) {
+            return;
+        }
+        for (int from = 0; from < drained.size(); from += flushSize) {
+            List<Map.Entry<String, Long>> chunk = drained.subList(from, Math.min(drained.size(), from + flushSize));
+            Map<String, StockLevel> levels;
+            try {
+                levels = write(chunk);
+            } catch (RuntimeException e) {
+                log.warn("Error flushing stock deltas for {} products, retrying them one by one: {}", chunk.size(), e.toString());
+                chunk.forEach(this::flushOne);
+                continue;
+            }
+            applied(chunk, levels);
+        }
+        log.debug("Flushed stock deltas for {} products", drained.size());
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        if (flushOnShutdown) {
+            flush();
+            if (!pending.isEmpty()) {
+                log.warn("Discarding buffered stock deltas for {} products on shutdown", pending.size());
+            }
+        } else if (!pending.isEmpty()) {
+            log.warn("Discarding buffered stock deltas for {} products (app.stock.flush-on-shutdown=false)", pending.size());
+        }
+    }
+
+    private void flushOne(Map.Entry<String, Long> entry) {
+        Map<String, StockLevel> levels;
+        try {
+            levels = write(List.of(entry));
+        } catch (RuntimeException e) {
+            int attempts = failedFlushes.merge(entry.getKey(), 1, Integer::sum);
+            if (attempts < maxFlushAttempts) {
+                // Later deltas may have been buffered meanwhile; the sum can only be retried as a whole
+                pending.merge(entry.getKey(), entry.getValue(), Long::sum);
+                log.error("Error flushing stock delta {} for product {}, attempt {} of {}: ",
+                        entry.getValue(), entry.getKey(), attempts, maxFlushAttempts, e);
+            } else {
+                failedFlushes.remove(entry.getKey());
+                Counter counter = dropped;
+                if (counter != null) {
+                    counter.increment();
+                }
+                log.error("Dropping stock delta {} for product {} after {} failed flushes: ",
+                        entry.getValue(), entry.getKey(), attempts, e);
+            }
+            return;
+        }
+        applied(List.of(entry), levels);
+    }
+
+    // One transaction for the deltas; returns the resulting levels
+    private Map<String, StockLevel> write(List<Map.Entry<String, Long>> deltas) {
+        List<String> productIds = deltas.stream().map(Map.Entry::getKey).toList();
+        return transactionTemplate.execute(status -> {
+            jdbcTemplate.batchUpdate(ADJUST_SQL, deltas, flushSize, (ps, entry) -> {
+                ps.setLong(1, entry.getValue());
+                ps.setString(2, entry.getKey());
+            });
+            return readLevels(productIds);
+        });
+    }
+
+    // Side effects of committed deltas; outside the retry, so a failure here cannot apply them twice
+    private void applied(List<Map.Entry<String, Long>> deltas, Map<String, StockLevel> levels) {
+        List<String> flushed = deltas.stream().map(Map.Entry::getKey).toList();
+        catalog.replicate(flushed);
+        cache.invalidateProducts(flushed);
+        deltas.forEach(entry -> {
+            failedFlushes.remove(entry.getKey());
+            // Absent if the product was deleted before the flush
+            StockLevel level = levels.get(entry.getKey());
+            if (level != null) {
+                summaryIndex.setQuantity(level.productId(), level.quantity(), level.version());
+                changes.quantityChanged(entry.getKey(), entry.getValue(), level.quantity());
+            }
+        });
+    }
+
+    private static long checkedSum(String productId, long buffered, long added) {
+        long sum = buffered + added;
+        if (sum < Integer.MIN_VALUE || sum > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Stock delta " + sum + " for product " + productId
+                    + " is outside the INTEGER range");
+        }
+        return sum;
+    }
+
+    // The rows just updated, read under the same row locks
+    private Map<String, StockLevel> readLevels(List<String> productIds) {
+        Map<String, StockLevel> levels = new HashMap<>(productIds.size() * 2);
+        for (int from = 0; from < productIds.size(); from += flushSize) {
+            namedJdbcTemplate.query(QUANTITIES_SQL,
+                    Map.of("ids", productIds.subList(from, Math.min(productIds.size(), from + flushSize))),
+                    rs -> {
+                        levels.put(rs.getString(1), new StockLevel(rs.getString(1), rs.getInt(2), rs.getLong(3)));
+                    });
+        }
+        return levels;
+    }
+
+    private record StockLevel(String productId, int quantity, long version) {
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.orm.service;
+
+import com.example.orm.datasource.ShardRouter;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Streams the full warehouse inventory as newline-delimited JSON, one warehouse per line.
+ * Rows come from a forward-only cursor (PostgreSQL only honours the fetch size inside a
+ * transaction), and each line is written as soon as its last product row has been read,
+ * so heap use is bounded by the fetch size rather than the inventory size.
+ * <p>
+ * The status line is sent long before the last row is read, so a successful export ends with a
+ * trailer line ({@code {"exportComplete":true,"warehouses":n}}). A body without it was cut short.
+ */
+@Service
+@RequiredArgsConstructor
+public class WarehouseExportService {
+
+    private static final String EXPORT_SQL =
+            "SELECT w.warehouse_id, w.warehouse_name, w.warehouse_address, w.warehouse_postal_code, " +
+            "w.warehouse_city, w.warehouse_country, w.timestamp, " +
+            "p.product_id, p.product_name, p.product_category, p.product_quantity, p.product_unit " +
+            "FROM datawarehouse w " +
+            "LEFT JOIN warehouse_products wp ON wp.warehouse_id = w.warehouse_id " +
+            "LEFT JOIN product p ON p.product_id = wp.product_id " +
+            // Only the grouping needs an order; products within a line come in link order
+            "ORDER BY w.warehouse_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${app.export.fetch-size:1000}")
+    private int fetchSize;
+
+    @Timed(value = "warehouse.export", histogram = true)
+    public void exportNdjson(OutputStream out, boolean fullProducts) throws IOException {
+        TransactionTemplate readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        try (JsonGenerator gen = objectMapper.getFactory().createGenerator(out)) {
+            gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            gen.setRootValueSeparator(null);
+            LineWriter writer = new LineWriter(gen, fullProducts);
+            // One cursor per shard, so with sharding the lines are in ID order within each shard only
+            ShardRouter.forEachShard(jdbcTemplate.getDataSource(), shard -> readOnlyTransaction.executeWithoutResult(status ->
+                    jdbcTemplate.query(con -> {
+                        var ps = con.prepareStatement(EXPORT_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                        ps.setFetchSize(fetchSize);
+                        return ps;
+                    }, writer)));
+            writer.finish();
+            gen.writeStartObject();
+            gen.writeBooleanField("exportComplete", true);
+            gen.writeNumberField("warehouses", writer.warehouses);
+            gen.writeEndObject();
+            gen.writeRaw('\n');
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static final class LineWriter implements RowCallbackHandler {
+
+        private final JsonGenerator gen;
+        private final boolean fullProducts;
+        private Long currentWarehouseId;
+        private long warehouses;
+
+        private LineWriter(JsonGenerator gen, boolean fullProducts) {
+            this.gen = gen;
+            this.fullProducts = fullProducts;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            try {
+                long warehouseId = rs.getLong("warehouse_id");
+                if (currentWarehouseId == null || currentWarehouseId != warehouseId) {
+                    finish();
+                    startWarehouse(rs, warehouseId);
+                }
+                String productId = rs.getString("product_id");
+                if (productId != null) {
+                    writeProduct(rs, productId);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void startWarehouse(ResultSet rs, long warehouseId) throws IOException, SQLException {
+            currentWarehouseId = warehouseId;
+            warehouses++;
+            gen.writeStartObject();
+            gen.writeNumberField("warehouseID", warehouseId);
+            gen.writeStringField("warehouseName", rs.getString("warehouse_name"));
+            gen.writeStringField("warehouseAddress", rs.getString("warehouse_address"));
+            gen.writeStringField("warehousePostalCode", rs.getString("warehouse_postal_code"));
+            gen.writeStringField("warehouseCity", rs.getString("warehouse_city"));
+            gen.writeStringField("warehouseCountry", rs.getString("warehouse_country"));
+            Timestamp timestamp = rs.getTimestamp("timestamp");
+            gen.writeStringField("timestamp", timestamp == null ? null : timestamp.toLocalDateTime().toString());
+            gen.writeArrayFieldStart(fullProducts ? "products" : "productIds");
+        }
+
+        private void writeProduct(ResultSet rs, String productId) throws IOException, SQLException {
+            if (!fullProducts) {
+                gen.writeString(productId);
+                return;
+            }
+            gen.writeStartObject();
+            gen.writeStringField("productID", productId);
+            gen.writeStringField("productName", rs.getString("product_name"));
+            gen.writeStringField("productCategory", rs.getString("product_category"));
+            gen.writeNumberField("productQuantity", rs.getInt("product_quantity"));
+            gen.writeStringField("productUnit", rs.getString("product_unit"));
+            gen.writeEndObject();
+        }
+
+        private void finish() throws IOException {
+            if (currentWarehouseId == null) {
+                return;
+            }
+            gen.writeEndArray();
+            gen.writeEndObject();
+            // No explicit flush: the generator hands its buffer to the response stream whenever
+            // it fills, which keeps time-to-first-byte constant without a write per line
+            gen.writeRaw('\n');
+            currentWarehouseId = null;
+        }
+    }
+}
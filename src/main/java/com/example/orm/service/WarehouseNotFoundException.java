@@ -0,0 +1,13 @@
+package com.example.orm.service;
+
+/**
+ * The requested warehouse does not exist (on its shard). Answered with 404 by the controllers.
+ */
+public class WarehouseNotFoundException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public WarehouseNotFoundException(Long warehouseId) {
+        super("Warehouse not found: " + warehouseId);
+    }
+}
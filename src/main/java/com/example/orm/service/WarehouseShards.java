@@ -0,0 +1,177 @@
+package com.example.orm.service;
+
+import com.example.orm.datasource.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Where warehouse rows live when {@link ShardRouter sharding} is enabled, and a pass-through
+ * otherwise. Single-warehouse work runs on the warehouse's shard; listings query every shard in
+ * parallel, each in its own read-only transaction, and merge the results in warehouse ID order.
+ * <p>
+ * Also the shard-aware ID allocator: at startup each shard's warehouse ID sequence is set to step
+ * by the shard count from an offset of its own, so shard {@code k} only hands out IDs with
+ * {@code (id - 1) mod shards == k} and the ID alone says where the row is. The shard count must
+ * therefore stay fixed once warehouses exist. This happens once the beans are created, before the
+ * web server takes requests. On PostgreSQL it holds an advisory lock per shard and leaves a sequence
+ * that is already aligned alone, so instances starting next to running ones do not restart it
+ * under their inserts. A shard holding warehouses whose IDs belong elsewhere fails the startup.
+ */
+@Component
+@Slf4j
+public class WarehouseShards implements SmartInitializingSingleton {
+
+    private static final String IDENTITY_SQL =
+            "SELECT is_identity FROM information_schema.columns " +
+            "WHERE table_name = 'datawarehouse' AND column_name = 'warehouse_id'";
+
+    private static final String MAX_ID_SQL = "SELECT COALESCE(MAX(warehouse_id), 0) FROM datawarehouse";
+
+    private static final String MISPLACED_SQL = "SELECT COUNT(*) FROM datawarehouse WHERE MOD(warehouse_id - 1, ?) <> ?";
+
+    // Any constant shared by all instances; serializes the alignment of one shard
+    private static final long ALIGNMENT_LOCK = 0x5748534EL;
+
+    private static final String IDENTITY_STATE_SQL =
+            "SELECT identity_increment, identity_base FROM information_schema.columns " +
+            "WHERE table_name = 'datawarehouse' AND column_name = 'warehouse_id'";
+
+    private final ShardRouter router;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transaction;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public WarehouseShards(ObjectProvider<ShardRouter> router, JdbcTemplate jdbcTemplate,
+                           PlatformTransactionManager transactionManager) {
+        this.router = router.getIfAvailable();
+        this.jdbcTemplate = jdbcTemplate;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    public boolean sharded() {
+        return router != null;
+    }
+
+    public <T> T onWarehouse(Long warehouseId, Supplier<T> action) {
+        return router == null ? action.get() : ShardRouter.onShard(router.shardOf(warehouseId), action);
+    }
+
+    /**
+     * Runs {@code action}, which creates one warehouse, on the shard the new row should go to.
+     */
+    public <T> T onNewWarehouse(Supplier<T> action) {
+        return router == null ? action.get() : ShardRouter.onShard(router.nextShard(), action);
+    }
+
+    /**
+     * Rows of {@code query} from every shard, merged by {@code order} and cut to {@code limit}. The
+     * query must return its rows in that order and fully loaded: it runs in a read-only transaction
+     * of its own, one per shard, whose session is closed by the time the rows are used. Callers
+     * must not hold a transaction themselves; it would keep a connection while the shards wait.
+     */
+    public <T> List<T> gather(Supplier<List<T>> query, Comparator<? super T> order, int limit) {
+        if (router == null) {
+            return readOnlyTransaction.execute(status -> query.get());
+        }
+        return merge(router.scatter(shard -> readOnlyTransaction.execute(status -> query.get())), order, limit);
+    }
+
+    /**
+     * Runs {@code query} once per shard with the given warehouse IDs that live there, in parallel,
+     * and merges the rows by {@code order}.
+     */
+    public <T> List<T> gatherByWarehouse(Collection<Long> warehouseIds, Function<Collection<Long>, List<T>> query,
+                                         Comparator<? super T> order) {
+        if (router == null) {
+            return readOnlyTransaction.execute(status -> query.apply(warehouseIds));
+        }
+        Map<Integer, List<Long>> byShard = new TreeMap<>();
+        warehouseIds.forEach(id -> byShard.computeIfAbsent(router.shardOf(id), shard -> new ArrayList<>()).add(id));
+        return merge(router.scatter(byShard.keySet(),
+                shard -> readOnlyTransaction.execute(status -> query.apply(byShard.get(shard)))), order, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (router == null) {
+            return;
+        }
+        int shards = router.shardCount();
+        for (int shard = 0; shard < shards; shard++) {
+            int current = shard;
+            ShardRouter.onShard(current, () -> transaction.executeWithoutResult(status -> alignWarehouseIds(current, shards)));
+        }
+    }
+
+    private void alignWarehouseIds(int shard, int shards) {
+        boolean postgres = "PostgreSQL".equals(jdbcTemplate.execute(
+                (ConnectionCallback<String>) con -> con.getMetaData().getDatabaseProductName()));
+        if (postgres) {
+            // Released at commit; another instance aligning this shard waits here and then finds it aligned
+            jdbcTemplate.queryForList("SELECT pg_advisory_xact_lock(?)", ALIGNMENT_LOCK);
+        }
+        long misplaced = jdbcTemplate.queryForObject(MISPLACED_SQL, Long.class, shards, shard);
+        if (misplaced > 0) {
+            throw new IllegalStateException("Shard " + shard + " holds " + misplaced + " warehouses whose IDs belong to "
+                    + "another shard of " + shards + "; they cannot be found by ID. Move them, or restore the shard count");
+        }
+        long max = jdbcTemplate.queryForObject(MAX_ID_SQL, Long.class);
+        // Smallest ID above every existing one that belongs to this shard
+        long next = max + 1 + Math.floorMod(shard - max, (long) shards);
+        String identity = jdbcTemplate.queryForObject(IDENTITY_SQL, String.class);
+        if ("YES".equalsIgnoreCase(identity)) {
+            Map<String, Object> state = jdbcTemplate.queryForMap(IDENTITY_STATE_SQL);
+            if (aligned(((Number) state.get("identity_increment")).longValue(),
+                    ((Number) state.get("identity_base")).longValue(), max, shard, shards)) {
+                log.info("Shard {} of {} already allocates warehouse IDs in steps of {}", shard, shards, shards);
+                return;
+            }
+            jdbcTemplate.execute("ALTER TABLE datawarehouse ALTER COLUMN warehouse_id SET INCREMENT BY " + shards
+                    + " RESTART WITH " + next);
+        } else {
+            // BIGSERIAL column on PostgreSQL: the sequence is a separate object
+            String sequence = jdbcTemplate.queryForObject(
+                    "SELECT pg_get_serial_sequence('datawarehouse', 'warehouse_id')", String.class);
+            Map<String, Object> state = jdbcTemplate.queryForMap("SELECT s.seqincrement, q.last_value, q.is_called "
+                    + "FROM pg_sequence s, " + sequence + " q WHERE s.seqrelid = ?::regclass", sequence);
+            long increment = ((Number) state.get("seqincrement")).longValue();
+            long lastValue = ((Number) state.get("last_value")).longValue();
+            long nextValue = Boolean.TRUE.equals(state.get("is_called")) ? lastValue + increment : lastValue;
+            if (aligned(increment, nextValue, max, shard, shards)) {
+                log.info("Shard {} of {} already allocates warehouse IDs in steps of {}", shard, shards, shards);
+                return;
+            }
+            jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " INCREMENT BY " + shards + " RESTART WITH " + next);
+        }
+        log.info("Shard {} of {} allocates warehouse IDs from {} in steps of {}", shard, shards, next, shards);
+    }
+
+    // Whether the next ID handed out is above every row and on this shard, with the shard count as step
+    private static boolean aligned(long increment, long nextValue, long max, int shard, int shards) {
+        return increment == shards && nextValue > max && Math.floorMod(nextValue - 1, (long) shards) == shard;
+    }
+
+    private static <T> List<T> merge(List<List<T>> parts, Comparator<? super T> order, int limit) {
+        List<T> merged = new ArrayList<>();
+        parts.forEach(merged::addAll);
+        merged.sort(order);
+        return merged.size() > limit ? merged.subList(0, limit) : merged;
+    }
+}
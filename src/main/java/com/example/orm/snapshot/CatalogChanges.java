@@ -0,0 +1,55 @@
+package com.example.orm.snapshot;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * What the database has that a snapshot does not, as read by one catch-up.
+ */
+final class CatalogChanges {
+
+    record ProductRow(String productId, String name, String category, String unit, int quantity, long version) {
+    }
+
+    // Database time before anything was read; the high-water mark of a snapshot written from these changes
+    final LocalDateTime readAt;
+    // Created or updated since the snapshot's high-water mark
+    final Map<String, ProductRow> products = new HashMap<>();
+    final Set<String> deletedProducts = new HashSet<>();
+    // Every warehouse in the database and its version; empty unless links were read
+    final TreeMap<Long, Long> warehouses = new TreeMap<>();
+    // Links of the warehouses whose version differs from the snapshot's
+    final Map<Long, List<String>> links = new HashMap<>();
+    int changedWarehouses;
+
+    CatalogChanges(LocalDateTime readAt) {
+        this.readAt = readAt;
+    }
+
+    void putProduct(String productId, String name, String category, String unit, int quantity, long version) {
+        products.put(productId, new ProductRow(productId, name, category, unit, quantity, version));
+    }
+
+    void link(long warehouseId, String productId) {
+        links.computeIfAbsent(warehouseId, id -> new ArrayList<>()).add(productId);
+    }
+
+    long rows() {
+        long rows = products.size() + deletedProducts.size() + changedWarehouses;
+        for (List<String> productIds : links.values()) {
+            rows += productIds.size();
+        }
+        return rows;
+    }
+
+    boolean isEmpty(CatalogSnapshot snapshot) {
+        return products.isEmpty() && deletedProducts.isEmpty() && changedWarehouses == 0
+                && warehouses.size() == snapshot.warehouseCount();
+    }
+}
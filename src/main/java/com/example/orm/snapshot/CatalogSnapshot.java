@@ -0,0 +1,358 @@
+package com.example.orm.snapshot;
+
+import com.example.orm.index.CatalogHandler;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * A catalog snapshot file, mapped read-only and validated when opened. Numbers and the link
+ * bitmaps are read in place from the mapping; only strings are decoded onto the heap.
+ * <p>
+ * Format version 1, big-endian:
+ * <pre>
+ * header     magic "WHSN", format version, high-water mark (epoch micros of the database's
+ *            LOCALTIMESTAMP), written at (epoch millis), product count, warehouse count, link count,
+ *            product section length, warehouse section length, CRC32C of each section, CRC32C of
+ *            the header bytes before it
+ * products   per product: ID, name, category, unit as length-prefixed UTF-8 (-1 for null),
+ *            quantity (int), version (long); a product's ordinal is its position
+ * warehouses per warehouse by ID: ID (long), version (long), length-prefixed RoaringBitmap of the
+ *            ordinals of its products (portable serialization)
+ * </pre>
+ * Files are replaced, never modified in place, so a mapping stays valid while a newer file is
+ * written. A single mapping limits the file to 2 GB. Where no file can be written the same bytes
+ * are kept on the heap instead.
+ */
+public final class CatalogSnapshot {
+
+    static final int MAGIC = 0x5748534E;
+    static final int FORMAT_VERSION = 1;
+    static final int HEADER_BYTES = 68;
+
+    private final long sizeInBytes;
+    private final boolean mapped;
+    private final LocalDateTime highWaterMark;
+    private final Instant writtenAt;
+    private final int productCount;
+    private final int warehouseCount;
+    private final long linkCount;
+    private final ByteBuffer products;
+    private final ByteBuffer warehouses;
+    // Warehouse ID to the position of its record in the warehouse section
+    private final Map<Long, Integer> warehousePositions;
+
+    private CatalogSnapshot(ByteBuffer file) throws InvalidSnapshotException {
+        sizeInBytes = file.capacity();
+        mapped = file instanceof MappedByteBuffer;
+        if (sizeInBytes < HEADER_BYTES) {
+            throw new InvalidSnapshotException("File of " + sizeInBytes + " bytes is shorter than the header");
+        }
+        if (file.getInt(0) != MAGIC) {
+            throw new InvalidSnapshotException("Not a catalog snapshot");
+        }
+        if (file.getInt(4) != FORMAT_VERSION) {
+            throw new InvalidSnapshotException("Format version " + file.getInt(4) + ", expected " + FORMAT_VERSION);
+        }
+        if (checksum(file.slice(0, HEADER_BYTES - 4)) != file.getInt(HEADER_BYTES - 4)) {
+            throw new InvalidSnapshotException("Header checksum mismatch");
+        }
+        highWaterMark = fromMicros(file.getLong(8));
+        writtenAt = Instant.ofEpochMilli(file.getLong(16));
+        productCount = file.getInt(24);
+        warehouseCount = file.getInt(28);
+        linkCount = file.getLong(32);
+        long productsLength = file.getLong(40);
+        long warehousesLength = file.getLong(48);
+        if (productCount < 0 || warehouseCount < 0 || productsLength < 0 || warehousesLength < 0
+                || HEADER_BYTES + productsLength + warehousesLength != sizeInBytes) {
+            throw new InvalidSnapshotException("Section lengths do not add up to the file size");
+        }
+        products = file.slice(HEADER_BYTES, (int) productsLength);
+        warehouses = file.slice(HEADER_BYTES + (int) productsLength, (int) warehousesLength);
+        if (checksum(products) != file.getInt(56)) {
+            throw new InvalidSnapshotException("Product section checksum mismatch");
+        }
+        if (checksum(warehouses) != file.getInt(60)) {
+            throw new InvalidSnapshotException("Warehouse section checksum mismatch");
+        }
+        try {
+            validateProducts();
+            warehousePositions = indexWarehouses();
+        } catch (RuntimeException e) {
+            // A checksum over garbage the writer produced; reading it would fail halfway through a load
+            throw new InvalidSnapshotException("Malformed section: " + e, e);
+        }
+    }
+
+    /**
+     * Maps and validates the file.
+     *
+     * @throws java.nio.file.NoSuchFileException if there is no file
+     * @throws InvalidSnapshotException          if it is not a complete snapshot in this format version
+     */
+    public static CatalogSnapshot open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new InvalidSnapshotException("File of " + size + " bytes is larger than a single mapping");
+            }
+            // The mapping outlives the channel
+            MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new CatalogSnapshot(mapping);
+        }
+    }
+
+    /**
+     * Validates a snapshot held in memory, written when no file could be.
+     *
+     * @throws InvalidSnapshotException if it is not a complete snapshot in this format version
+     */
+    static CatalogSnapshot wrap(ByteBuffer snapshot) throws InvalidSnapshotException {
+        return new CatalogSnapshot(snapshot);
+    }
+
+    public LocalDateTime highWaterMark() {
+        return highWaterMark;
+    }
+
+    public Instant writtenAt() {
+        return writtenAt;
+    }
+
+    public int productCount() {
+        return productCount;
+    }
+
+    public int warehouseCount() {
+        return warehouseCount;
+    }
+
+    public long linkCount() {
+        return linkCount;
+    }
+
+    /**
+     * False for a snapshot kept on the heap because no file could be written.
+     */
+    public boolean mapped() {
+        return mapped;
+    }
+
+    public long sizeInBytes() {
+        return sizeInBytes;
+    }
+
+    /**
+     * The warehouse's version as of the snapshot, or null if it is not in the snapshot.
+     */
+    Long warehouseVersion(long warehouseId) {
+        Integer position = warehousePositions.get(warehouseId);
+        return position == null ? null : warehouses.getLong(position + Long.BYTES);
+    }
+
+    /**
+     * How many of the given product IDs the snapshot has, compared as UTF-8 bytes without decoding its IDs.
+     */
+    int countProducts(Collection<String> productIds) {
+        if (productIds.isEmpty()) {
+            return 0;
+        }
+        Set<ByteBuffer> keys = new HashSet<>();
+        productIds.forEach(productId -> keys.add(ByteBuffer.wrap(productId.getBytes(StandardCharsets.UTF_8))));
+        ByteBuffer in = products.duplicate();
+        int found = 0;
+        for (int ordinal = 0; ordinal < productCount; ordinal++) {
+            int length = in.getInt();
+            if (keys.contains(in.slice(in.position(), length))) {
+                found++;
+            }
+            in.position(in.position() + length);
+            skipProductFields(in);
+        }
+        return found;
+    }
+
+    void forEachProductId(Consumer<String> action) {
+        ByteBuffer in = products.duplicate();
+        Strings strings = new Strings();
+        for (int ordinal = 0; ordinal < productCount; ordinal++) {
+            action.accept(strings.read(in));
+            skipProductFields(in);
+        }
+    }
+
+    /**
+     * Streams the snapshot with {@code changes} applied: changed products replace their row,
+     * deleted ones and their links are left out, and products the snapshot does not have follow
+     * its own in ID order. Warehouses are the ones in {@code changes}; a warehouse keeps the
+     * snapshot's links only while its version is unchanged.
+     */
+    void scan(CatalogHandler handler, CatalogChanges changes, boolean withLinks) {
+        ByteBuffer in = products.duplicate();
+        Strings strings = new Strings();
+        String[] productIds = withLinks ? new String[productCount] : null;
+        Set<String> replaced = new HashSet<>();
+        for (int ordinal = 0; ordinal < productCount; ordinal++) {
+            String productId = strings.read(in);
+            String name = strings.read(in);
+            String category = strings.read(in);
+            String unit = strings.read(in);
+            int quantity = in.getInt();
+            long version = in.getLong();
+            if (productIds != null) {
+                productIds[ordinal] = productId;
+            }
+            if (changes.deletedProducts.contains(productId)) {
+                continue;
+            }
+            CatalogChanges.ProductRow row = changes.products.get(productId);
+            if (row == null) {
+                handler.product(productId, name, category, unit, quantity, version);
+            } else {
+                replaced.add(productId);
+                product(handler, row);
+            }
+        }
+        List<CatalogChanges.ProductRow> added = changes.products.values().stream()
+                .filter(row -> !replaced.contains(row.productId()))
+                .sorted(Comparator.comparing(CatalogChanges.ProductRow::productId))
+                .toList();
+        added.forEach(row -> product(handler, row));
+        if (!withLinks) {
+            return;
+        }
+        changes.warehouses.forEach(handler::warehouse);
+        changes.warehouses.forEach((warehouseId, version) -> {
+            Integer position = warehousePositions.get(warehouseId);
+            if (position != null && warehouses.getLong(position + Long.BYTES) == version) {
+                linksAt(position).forEach((int ordinal) -> {
+                    String productId = productIds[ordinal];
+                    if (!changes.deletedProducts.contains(productId)) {
+                        handler.link(warehouseId, productId);
+                    }
+                });
+            } else {
+                changes.links.getOrDefault(warehouseId, List.of()).forEach(productId -> handler.link(warehouseId, productId));
+            }
+        });
+    }
+
+    static long toMicros(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + time.getNano() / 1_000;
+    }
+
+    static int checksum(ByteBuffer bytes) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes.duplicate());
+        return (int) crc.getValue();
+    }
+
+    private static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+
+    private static void product(CatalogHandler handler, CatalogChanges.ProductRow row) {
+        handler.product(row.productId(), row.name(), row.category(), row.unit(), row.quantity(), row.version());
+    }
+
+    // Name, category, unit, quantity and version, after the ID
+    private static void skipProductFields(ByteBuffer in) {
+        for (int i = 0; i < 3; i++) {
+            int length = in.getInt();
+            if (length > 0) {
+                in.position(in.position() + length);
+            }
+        }
+        in.position(in.position() + Integer.BYTES + Long.BYTES);
+    }
+
+    private ImmutableRoaringBitmap linksAt(int position) {
+        int length = warehouses.getInt(position + 2 * Long.BYTES);
+        return new ImmutableRoaringBitmap(warehouses.slice(position + 2 * Long.BYTES + Integer.BYTES, length));
+    }
+
+    private void validateProducts() {
+        ByteBuffer in = products.duplicate();
+        for (int ordinal = 0; ordinal < productCount; ordinal++) {
+            for (int field = 0; field < 4; field++) {
+                int length = in.getInt();
+                if (length < (field == 0 ? 0 : -1) || length > in.remaining()) {
+                    throw new IllegalStateException("string length " + length + " of product " + ordinal);
+                }
+                in.position(in.position() + Math.max(length, 0));
+            }
+            in.position(in.position() + Integer.BYTES + Long.BYTES);
+        }
+        if (in.hasRemaining()) {
+            throw new IllegalStateException(in.remaining() + " bytes after the last product");
+        }
+    }
+
+    private Map<Long, Integer> indexWarehouses() {
+        Map<Long, Integer> positions = new HashMap<>(warehouseCount * 2);
+        ByteBuffer in = warehouses.duplicate();
+        long links = 0;
+        for (int i = 0; i < warehouseCount; i++) {
+            int position = in.position();
+            long warehouseId = in.getLong();
+            in.getLong();
+            int length = in.getInt();
+            if (length < 0 || length > in.remaining()) {
+                throw new IllegalStateException("bitmap length " + length + " of warehouse " + warehouseId);
+            }
+            if (positions.put(warehouseId, position) != null) {
+                throw new IllegalStateException("warehouse " + warehouseId + " appears twice");
+            }
+            ImmutableRoaringBitmap bitmap = linksAt(position);
+            if (bitmap.serializedSizeInBytes() != length || (!bitmap.isEmpty() && Integer.compareUnsigned(bitmap.last(), productCount) >= 0)) {
+                throw new IllegalStateException("links of warehouse " + warehouseId);
+            }
+            links += bitmap.getLongCardinality();
+            in.position(in.position() + length);
+        }
+        if (in.hasRemaining() || links != linkCount) {
+            throw new IllegalStateException("warehouse section does not match the header");
+        }
+        return positions;
+    }
+
+    /**
+     * Decodes length-prefixed UTF-8 through one reused buffer.
+     */
+    private static final class Strings {
+
+        private byte[] scratch = new byte[256];
+
+        String read(ByteBuffer in) {
+            int length = in.getInt();
+            if (length < 0) {
+                return null;
+            }
+            if (length > scratch.length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            in.get(scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
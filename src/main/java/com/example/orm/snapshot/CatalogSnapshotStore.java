@@ -0,0 +1,336 @@
+package com.example.orm.snapshot;
+
+import com.example.orm.datasource.ReplicaRouter;
+import com.example.orm.datasource.ShardRouter;
+import com.example.orm.index.CatalogHandler;
+import com.example.orm.index.CatalogSource;
+import com.example.orm.index.DatabaseCatalogSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Keeps a {@link CatalogSnapshot} of products and warehouse links in a local file, so the in-memory
+ * indexes of a new instance load from disk instead of scanning the tables. Before each load the
+ * snapshot is caught up with the database:
+ * <ul>
+ *     <li>products whose {@code updated_at} is past the snapshot's high-water mark, less
+ *     {@code app.snapshot.catch-up-overlap} for transactions that committed after stamping their rows,</li>
+ *     <li>the IDs of all products, only when the row count shows deletes,</li>
+ *     <li>the version of every warehouse, and the links of those whose version moved.</li>
+ * </ul>
+ * A missing or invalid file, or one the changes cannot account for, is replaced by one full scan
+ * that then serves every index. The file is rewritten from the same catch-up every
+ * {@code app.snapshot.interval}, so instances that keep running keep a recent snapshot for the
+ * next start.
+ */
+@Component
+@ConditionalOnProperty(name = "app.snapshot.enabled", havingValue = "true")
+@Slf4j
+public class CatalogSnapshotStore implements CatalogSource, MeterBinder {
+
+    private static final int CHUNK_SIZE = 500;
+
+    private static final String NOW_SQL = "SELECT LOCALTIMESTAMP";
+    private static final String COUNT_SQL = "SELECT COUNT(*) FROM product";
+    private static final String CHANGED_PRODUCTS_SQL =
+            "SELECT product_id, product_name, product_category, product_unit, product_quantity, version " +
+            "FROM product WHERE updated_at >= ?";
+    private static final String PRODUCT_IDS_SQL = "SELECT product_id FROM product";
+    private static final String WAREHOUSE_VERSIONS_SQL = "SELECT warehouse_id, version FROM datawarehouse";
+    private static final String LINKS_SQL =
+            "SELECT warehouse_id, product_id FROM warehouse_products WHERE warehouse_id IN (:ids)";
+
+    private final Path file;
+    private final Duration overlap;
+    private final int fetchSize;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final DatabaseCatalogSource database;
+    // One refresh at a time; a tick that finds the previous refresh still running is dropped
+    private final ExecutorService refreshes = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new SynchronousQueue<>(), task -> {
+                Thread thread = new Thread(task, "catalog-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.DiscardPolicy());
+    private volatile CatalogSnapshot current;
+    private volatile MeterRegistry registry;
+    private volatile Timer writeTimer;
+    private volatile Counter changedRows;
+
+    public CatalogSnapshotStore(JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${app.snapshot.path:${java.io.tmpdir}/catalog.snapshot}") String file,
+                                @Value("${app.snapshot.catch-up-overlap:PT1M}") Duration overlap,
+                                @Value("${app.snapshot.fetch-size:10000}") int fetchSize) {
+        this.file = Path.of(file).toAbsolutePath();
+        this.overlap = overlap;
+        this.fetchSize = fetchSize;
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.database = new DatabaseCatalogSource(jdbcTemplate, transactionManager, fetchSize);
+    }
+
+    @Override
+    public synchronized void scan(CatalogHandler handler, boolean withLinks) {
+        long start = System.nanoTime();
+        CatalogSnapshot snapshot = current();
+        CatalogChanges changes = snapshot == null ? null : readChanges(snapshot, withLinks);
+        if (snapshot != null && changes == null) {
+            snapshot = replace("stale");
+            changes = snapshot == null ? null : readChanges(snapshot, withLinks);
+        }
+        if (changes == null) {
+            // No usable file could be written, so read the tables as without a snapshot
+            database.scan(handler, withLinks);
+            return;
+        }
+        snapshot.scan(handler, changes, withLinks);
+        log.info("Loaded the catalog from snapshot {} plus {} changed rows in {} ms",
+                file, changes.rows(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Scheduled(fixedDelayString = "${app.snapshot.interval:PT10M}", initialDelayString = "${app.snapshot.interval:PT10M}")
+    public void scheduleRefresh() {
+        // Off the scheduler thread, which also flushes the stock buffer
+        refreshes.execute(() -> {
+            try {
+                refresh();
+            } catch (RuntimeException e) {
+                log.error("Error refreshing catalog snapshot {}: ", file, e);
+            }
+        });
+    }
+
+    /**
+     * Rewrites the file from the current one and the changes since, if there are any.
+     */
+    public synchronized void refresh() {
+        CatalogSnapshot snapshot = current();
+        if (snapshot == null) {
+            return;
+        }
+        CatalogChanges changes = readChanges(snapshot, true);
+        if (changes == null) {
+            replace("stale");
+            return;
+        }
+        if (changes.isEmpty(snapshot) && snapshot.mapped()) {
+            return;
+        }
+        try {
+            write(changes.readAt, handler -> snapshot.scan(handler, changes, true));
+            current = CatalogSnapshot.open(file);
+            log.info("Catalog snapshot {} refreshed with {} changed rows: {} products, {} links, {} bytes",
+                    file, changes.rows(), current.productCount(), current.linkCount(), current.sizeInBytes());
+        } catch (IOException e) {
+            // The current snapshot, mapped or in memory, stays the base for the next catch-up
+            log.error("Could not write catalog snapshot {}: ", file, e);
+        }
+    }
+
+    public long sizeInBytes() {
+        CatalogSnapshot snapshot = current;
+        return snapshot == null ? 0 : snapshot.sizeInBytes();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        Gauge.builder("catalog.snapshot.bytes", this, CatalogSnapshotStore::sizeInBytes)
+                .description("Size of the mapped catalog snapshot")
+                .baseUnit("bytes")
+                .register(registry);
+        writeTimer = Timer.builder("catalog.snapshot.write")
+                .description("Time to write a catalog snapshot file")
+                .register(registry);
+        changedRows = Counter.builder("catalog.snapshot.changes")
+                .description("Rows read from the database to catch a snapshot up")
+                .register(registry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshes.shutdownNow();
+    }
+
+    // The mapped file, opened on first use and replaced by a full load when missing or invalid
+    private CatalogSnapshot current() {
+        if (current == null) {
+            try {
+                current = CatalogSnapshot.open(file);
+                log.info("Mapped catalog snapshot {}: {} products, {} links as of {}, written {}", file,
+                        current.productCount(), current.linkCount(), current.highWaterMark(), current.writtenAt());
+            } catch (NoSuchFileException e) {
+                log.info("No catalog snapshot at {}, loading the catalog from the database", file);
+                replace("missing");
+            } catch (IOException e) {
+                log.warn("Discarding catalog snapshot {}: {}", file, e.getMessage());
+                replace("invalid");
+            }
+        }
+        return current;
+    }
+
+    // Writes a new file from a full scan. If it cannot be written, e.g. on a read-only disk, the scan
+    // is kept in memory instead, so the other indexes and later catch-ups still start from it; the
+    // next refresh tries the file again. Null only if that fails too
+    private CatalogSnapshot replace(String reason) {
+        MeterRegistry meters = registry;
+        if (meters != null) {
+            Counter.builder("catalog.snapshot.fallbacks")
+                    .description("Full loads because the snapshot was missing, invalid or could not be caught up")
+                    .tag("reason", reason)
+                    .register(meters)
+                    .increment();
+        }
+        current = null;
+        LocalDateTime highWaterMark = ReplicaRouter.onPrimary(() -> jdbcTemplate.queryForObject(NOW_SQL, LocalDateTime.class));
+        try {
+            write(highWaterMark, handler -> database.scan(handler, true));
+            current = CatalogSnapshot.open(file);
+            log.info("Catalog snapshot {} written from the database: {} products, {} links, {} bytes",
+                    file, current.productCount(), current.linkCount(), current.sizeInBytes());
+        } catch (IOException e) {
+            log.error("Could not write catalog snapshot {}, keeping it in memory: ", file, e);
+            try {
+                current = CatalogSnapshot.wrap(CatalogSnapshotWriter.write(highWaterMark,
+                        handler -> database.scan(handler, true)));
+            } catch (IOException inMemory) {
+                log.error("Could not build catalog snapshot in memory either: ", inMemory);
+            }
+        }
+        return current;
+    }
+
+    private void write(LocalDateTime highWaterMark, Consumer<CatalogHandler> source) throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            CatalogSnapshotWriter.write(temp, highWaterMark, source);
+            // Readers find the old file or the complete new one; a mapping of the old one stays valid
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        Timer timer = writeTimer;
+        if (timer != null) {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Changes since the snapshot, or null if they do not account for every product in the database.
+     */
+    private CatalogChanges readChanges(CatalogSnapshot snapshot, boolean withLinks) {
+        // Writes are only replayed onto a new index from the scan's start, so it must not read a lagging replica
+        CatalogChanges changes = ReplicaRouter.onPrimary(() -> {
+            CatalogChanges read = ShardRouter.onShard(ShardRouter.REFERENCE_SHARD,
+                    () -> readOnlyTransaction.execute(status -> readProductChanges(snapshot)));
+            if (read != null && withLinks) {
+                readWarehouseChanges(snapshot, read);
+            }
+            return read;
+        });
+        Counter counter = changedRows;
+        if (changes != null && counter != null) {
+            counter.increment(changes.rows());
+        }
+        return changes;
+    }
+
+    private CatalogChanges readProductChanges(CatalogSnapshot snapshot) {
+        CatalogChanges changes = new CatalogChanges(jdbcTemplate.queryForObject(NOW_SQL, LocalDateTime.class));
+        // Counted first: a product created in between only costs an ID scan, a delete cannot slip through
+        long count = jdbcTemplate.queryForObject(COUNT_SQL, Long.class);
+        stream(CHANGED_PRODUCTS_SQL, rs -> changes.putProduct(rs.getString(1), rs.getString(2), rs.getString(3),
+                rs.getString(4), rs.getInt(5), rs.getLong(6)), snapshot.highWaterMark().minus(overlap));
+        long expected = snapshot.productCount() + changes.products.size() - snapshot.countProducts(changes.products.keySet());
+        if (count == expected) {
+            return changes;
+        }
+        // Deletes leave nothing to find by timestamp, so compare the IDs
+        Set<String> productIds = new HashSet<>();
+        stream(PRODUCT_IDS_SQL, rs -> productIds.add(rs.getString(1)));
+        snapshot.forEachProductId(productId -> {
+            if (!productIds.contains(productId)) {
+                changes.deletedProducts.add(productId);
+            }
+        });
+        if (productIds.size() != expected - changes.deletedProducts.size()) {
+            log.warn("Catalog snapshot {} cannot be caught up: {} products in the database, {} after applying the changes",
+                    file, productIds.size(), expected - changes.deletedProducts.size());
+            return null;
+        }
+        return changes;
+    }
+
+    private void readWarehouseChanges(CatalogSnapshot snapshot, CatalogChanges changes) {
+        ShardRouter.forEachShard(jdbcTemplate.getDataSource(), shard -> readOnlyTransaction.executeWithoutResult(status -> {
+            List<Long> moved = new ArrayList<>();
+            stream(WAREHOUSE_VERSIONS_SQL, rs -> {
+                long warehouseId = rs.getLong(1);
+                long version = rs.getLong(2);
+                changes.warehouses.put(warehouseId, version);
+                Long known = snapshot.warehouseVersion(warehouseId);
+                if (known == null || known != version) {
+                    moved.add(warehouseId);
+                }
+            });
+            for (int from = 0; from < moved.size(); from += CHUNK_SIZE) {
+                namedJdbcTemplate.query(LINKS_SQL, Map.of("ids", moved.subList(from, Math.min(moved.size(), from + CHUNK_SIZE))),
+                        (RowCallbackHandler) rs -> changes.link(rs.getLong(1), rs.getString(2)));
+            }
+            changes.changedWarehouses += moved.size();
+        }));
+    }
+
+    private void stream(String sql, RowCallbackHandler handler, Object... args) {
+        // PostgreSQL only streams with a fetch size inside a transaction
+        jdbcTemplate.query(con -> {
+            var ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            for (int i = 0; i < args.length; i++) {
+                ps.setObject(i + 1, args[i]);
+            }
+            return ps;
+        }, handler);
+    }
+}
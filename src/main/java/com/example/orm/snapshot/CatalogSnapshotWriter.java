@@ -0,0 +1,171 @@
+package com.example.orm.snapshot;
+
+import com.example.orm.index.CatalogHandler;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Writes a {@link CatalogSnapshot} file from a catalog scan. Products go straight to the file;
+ * links are collected per warehouse as bitmaps of product ordinals and written at the end,
+ * followed by the header.
+ */
+final class CatalogSnapshotWriter implements CatalogHandler {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final DataOutputStream out;
+    private final Map<String, Integer> productOrdinals = new HashMap<>();
+    private final TreeMap<Long, Links> warehouses = new TreeMap<>();
+
+    private CatalogSnapshotWriter(DataOutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes what {@code source} passes to the handler it is given into {@code target}, and forces it to disk.
+     */
+    static void write(Path target, LocalDateTime highWaterMark, Consumer<CatalogHandler> source) throws IOException {
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(CatalogSnapshot.HEADER_BYTES);
+            ByteBuffer header = writeSections(Channels.newOutputStream(channel), highWaterMark, source);
+            long offset = 0;
+            while (header.hasRemaining()) {
+                offset += channel.write(header, offset);
+            }
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Like {@link #write(Path, LocalDateTime, Consumer)}, into a heap buffer, for when no file can be written.
+     */
+    static ByteBuffer write(LocalDateTime highWaterMark, Consumer<CatalogHandler> source) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.writeBytes(new byte[CatalogSnapshot.HEADER_BYTES]);
+        ByteBuffer header = writeSections(bytes, highWaterMark, source);
+        ByteBuffer snapshot = ByteBuffer.wrap(bytes.toByteArray());
+        snapshot.put(0, header, 0, header.remaining());
+        return snapshot;
+    }
+
+    // Writes both sections to target, which starts right after the header, and returns the header
+    private static ByteBuffer writeSections(OutputStream target, LocalDateTime highWaterMark,
+                                            Consumer<CatalogHandler> source) throws IOException {
+        CRC32C crc = new CRC32C();
+        DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(target, BUFFER_SIZE), crc));
+        CatalogSnapshotWriter writer = new CatalogSnapshotWriter(out);
+        try {
+            source.accept(writer);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        out.flush();
+        long productsLength = out.size();
+        int productsCrc = (int) crc.getValue();
+        crc.reset();
+        long links = writer.writeWarehouses();
+        out.flush();
+        long warehousesLength = out.size() - productsLength;
+        // size() stops counting at Integer.MAX_VALUE, which this check catches as well
+        if (CatalogSnapshot.HEADER_BYTES + (long) out.size() > Integer.MAX_VALUE) {
+            throw new IOException("Catalog snapshot of more than " + out.size() + " bytes is larger than a single mapping");
+        }
+        int warehousesCrc = (int) crc.getValue();
+
+        ByteBuffer header = ByteBuffer.allocate(CatalogSnapshot.HEADER_BYTES);
+        header.putInt(CatalogSnapshot.MAGIC)
+                .putInt(CatalogSnapshot.FORMAT_VERSION)
+                .putLong(CatalogSnapshot.toMicros(highWaterMark))
+                .putLong(System.currentTimeMillis())
+                .putInt(writer.productOrdinals.size())
+                .putInt(writer.warehouses.size())
+                .putLong(links)
+                .putLong(productsLength)
+                .putLong(warehousesLength)
+                .putInt(productsCrc)
+                .putInt(warehousesCrc);
+        header.putInt(CatalogSnapshot.checksum(header.slice(0, header.position())));
+        return header.flip();
+    }
+
+    @Override
+    public void product(String productId, String name, String category, String unit, int quantity, long version) {
+        if (productOrdinals.putIfAbsent(productId, productOrdinals.size()) != null) {
+            return;
+        }
+        try {
+            writeString(productId);
+            writeString(name);
+            writeString(category);
+            writeString(unit);
+            out.writeInt(quantity);
+            out.writeLong(version);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void warehouse(long warehouseId, long version) {
+        warehouses.computeIfAbsent(warehouseId, id -> new Links()).version = version;
+    }
+
+    @Override
+    public void link(long warehouseId, String productId) {
+        Integer ordinal = productOrdinals.get(productId);
+        if (ordinal != null) {
+            // A warehouse created during the scan keeps version -1, so the next catch-up reloads its links
+            warehouses.computeIfAbsent(warehouseId, id -> new Links()).products.add(ordinal);
+        }
+    }
+
+    private long writeWarehouses() throws IOException {
+        long links = 0;
+        for (Map.Entry<Long, Links> entry : warehouses.entrySet()) {
+            RoaringBitmap products = entry.getValue().products;
+            products.runOptimize();
+            out.writeLong(entry.getKey());
+            out.writeLong(entry.getValue().version);
+            out.writeInt(products.serializedSizeInBytes());
+            products.serialize(out);
+            links += products.getLongCardinality();
+        }
+        return links;
+    }
+
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static final class Links {
+        long version = -1;
+        final RoaringBitmap products = new RoaringBitmap();
+    }
+}
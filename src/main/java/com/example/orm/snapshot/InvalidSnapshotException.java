@@ -0,0 +1,19 @@
+package com.example.orm.snapshot;
+
+import java.io.IOException;
+
+/**
+ * A snapshot file that cannot be used: truncated, corrupted, or written in another format version.
+ */
+public class InvalidSnapshotException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public InvalidSnapshotException(String message) {
+        super(message);
+    }
+
+    public InvalidSnapshotException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,327 @@
+package com.example.orm.summary;
+
+import com.example.orm.dto.CategorySummaryDTO;
+import com.example.orm.dto.InventorySummaryStatsDTO;
+import com.example.orm.dto.WarehouseSummaryDTO;
+import com.example.orm.model.Product;
+import com.example.orm.index.CatalogHandler;
+import com.example.orm.index.CatalogIndex;
+import com.example.orm.snapshot.CatalogSnapshotStore;
+import com.example.orm.index.DatabaseCatalogSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Per-warehouse product counts and quantity totals by category and unit, kept in memory and
+ * adjusted after each committed write instead of re-aggregating the links. It keeps its own copy
+ * of each product's category, unit, quantity, version and warehouses so every change is applied
+ * under one lock. Product writes carry absolute values with the row version they produced; one
+ * older than what the index already holds is ignored, so a write that a rebuild both scanned and
+ * replays (see {@link CatalogIndex}) is counted once.
+ */
+@Component
+@Slf4j
+public class InventorySummaryIndex extends CatalogIndex<InventorySummaryIndex.Summaries> implements MeterBinder {
+
+    private static final Comparator<CategorySummaryDTO> CATEGORY_ORDER = Comparator
+            .comparing(CategorySummaryDTO::getProductCategory, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+            .thenComparing(CategorySummaryDTO::getProductUnit, Comparator.nullsFirst(Comparator.<String>naturalOrder()));
+
+    private volatile Timer rebuildTimer;
+    private volatile long lastRebuildMillis;
+
+    public InventorySummaryIndex(JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 Optional<CatalogSnapshotStore> snapshots,
+                                 @Value("${app.summary.fetch-size:10000}") int fetchSize,
+                                 @Value("${app.summary.build-on-startup:true}") boolean buildOnStartup) {
+        super("inventory-summary", new DatabaseCatalogSource(jdbcTemplate, transactionManager, fetchSize), snapshots,
+                buildOnStartup, true);
+    }
+
+    @Override
+    protected Summaries newGeneration() {
+        return new Summaries();
+    }
+
+    @Override
+    protected CatalogHandler loader(Summaries fresh) {
+        // Products come first, so the links find them
+        return new CatalogHandler() {
+            @Override
+            public void product(String productId, String name, String category, String unit, int quantity, long version) {
+                fresh.putProduct(productId, category, unit, quantity, version);
+            }
+
+            @Override
+            public void warehouse(long warehouseId, long version) {
+                fresh.warehouse(warehouseId);
+            }
+
+            @Override
+            public void link(long warehouseId, String productId) {
+                fresh.link(warehouseId, productId);
+            }
+        };
+    }
+
+    @Override
+    protected void loaded(Summaries fresh, long nanos) {
+        Timer timer = rebuildTimer;
+        if (timer != null) {
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+        lastRebuildMillis = nanos / 1_000_000;
+        InventorySummaryStatsDTO stats = fresh.stats(lastRebuildMillis);
+        log.info("Inventory summaries built: {} warehouses, {} products, {} links in {} ms",
+                stats.getWarehouses(), stats.getProducts(), stats.getLinks(), stats.getRebuildMillis());
+    }
+
+    /**
+     * Records a created or updated product; its warehouses move to the new category, unit and quantity.
+     */
+    public void putProduct(Product product) {
+        String productId = product.getProductID();
+        String category = product.getProductCategory();
+        String unit = product.getProductUnit();
+        int quantity = product.getProductQuantity();
+        // Read once the transaction has committed: Hibernate bumps the version when it flushes
+        write(s -> s.putProduct(productId, category, unit, quantity, versionOf(product)));
+    }
+
+    /**
+     * Records the quantity a stock adjustment left behind, together with the row version it produced.
+     */
+    public void setQuantity(String productId, int quantity, long version) {
+        write(s -> s.setQuantity(productId, quantity, version));
+    }
+
+    public void removeProduct(String productId) {
+        write(s -> s.removeProduct(productId));
+    }
+
+    /**
+     * Records links; products must have been recorded with {@link #putProduct} first.
+     */
+    public void link(Long warehouseId, Collection<String> productIds) {
+        List<String> ids = List.copyOf(productIds);
+        write(s -> {
+            s.warehouse(warehouseId);
+            ids.forEach(productId -> s.link(warehouseId, productId));
+        });
+    }
+
+    public void unlink(Long warehouseId, Collection<String> productIds) {
+        List<String> ids = List.copyOf(productIds);
+        write(s -> ids.forEach(productId -> s.unlink(warehouseId, productId)));
+    }
+
+    public void removeWarehouse(Long warehouseId) {
+        write(s -> s.removeWarehouse(warehouseId));
+    }
+
+    public Optional<WarehouseSummaryDTO> summary(Long warehouseId) {
+        return read(s -> {
+            Totals totals = s.byId.get(warehouseId);
+            return totals == null ? Optional.<WarehouseSummaryDTO>empty() : Optional.of(totals.toDto());
+        });
+    }
+
+    /**
+     * Up to {@code limit} summaries of warehouses with an ID above {@code afterWarehouseId}, by ID.
+     */
+    public List<WarehouseSummaryDTO> summaries(long afterWarehouseId, int limit) {
+        return read(s -> {
+            List<WarehouseSummaryDTO> page = new ArrayList<>(limit);
+            for (Totals totals : s.byId.tailMap(afterWarehouseId, false).values()) {
+                if (page.size() == limit) {
+                    break;
+                }
+                page.add(totals.toDto());
+            }
+            return page;
+        });
+    }
+
+    /**
+     * Current sizes and the duration of the last completed rebuild.
+     */
+    public InventorySummaryStatsDTO stats() {
+        return read(s -> s.stats(lastRebuildMillis));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("inventory.summary.warehouses", this, index -> index.stats().getWarehouses())
+                .description("Warehouses with a precomputed inventory summary")
+                .register(registry);
+        rebuildTimer = Timer.builder("inventory.summary.rebuild")
+                .description("Full recomputation of the inventory summaries")
+                .register(registry);
+    }
+
+    private static long versionOf(Product product) {
+        return product.getVersion() == null ? 0 : product.getVersion();
+    }
+
+    private record BucketKey(String category, String unit) {
+    }
+
+    private static final class Bucket {
+        long productCount;
+        long totalQuantity;
+    }
+
+    private static final class ProductFacts {
+        String category;
+        String unit;
+        long quantity;
+        long version;
+        // Warehouse ordinals; removed warehouses leave stale bits behind, which are skipped
+        final RoaringBitmap warehouses = new RoaringBitmap();
+    }
+
+    private static final class Totals {
+
+        private final Long warehouseId;
+        private final Map<BucketKey, Bucket> buckets = new HashMap<>();
+        private long productCount;
+
+        private Totals(Long warehouseId) {
+            this.warehouseId = warehouseId;
+        }
+
+        void add(ProductFacts product, long count, long quantity) {
+            BucketKey key = new BucketKey(product.category, product.unit);
+            Bucket bucket = buckets.computeIfAbsent(key, k -> new Bucket());
+            bucket.productCount += count;
+            bucket.totalQuantity += quantity;
+            if (bucket.productCount == 0) {
+                buckets.remove(key);
+            }
+            productCount += count;
+        }
+
+        WarehouseSummaryDTO toDto() {
+            List<CategorySummaryDTO> categories = new ArrayList<>(buckets.size());
+            buckets.forEach((key, bucket) -> categories.add(
+                    new CategorySummaryDTO(key.category(), key.unit(), bucket.productCount, bucket.totalQuantity)));
+            categories.sort(CATEGORY_ORDER);
+            return new WarehouseSummaryDTO(warehouseId, productCount, categories);
+        }
+    }
+
+    /**
+     * One generation of the summaries. Warehouse ordinals are never reused.
+     */
+    static final class Summaries {
+
+        private final Map<String, ProductFacts> products = new HashMap<>();
+        private final Map<Long, Integer> warehouseOrdinals = new HashMap<>();
+        private final List<Totals> byOrdinal = new ArrayList<>();
+        private final TreeMap<Long, Totals> byId = new TreeMap<>();
+
+        int warehouse(Long warehouseId) {
+            return warehouseOrdinals.computeIfAbsent(warehouseId, id -> {
+                Totals totals = new Totals(id);
+                byOrdinal.add(totals);
+                byId.put(id, totals);
+                return byOrdinal.size() - 1;
+            });
+        }
+
+        void putProduct(String productId, String category, String unit, int quantity, long version) {
+            ProductFacts product = products.get(productId);
+            if (product == null) {
+                product = new ProductFacts();
+                products.put(productId, product);
+            } else if (version < product.version) {
+                return;
+            } else {
+                forEachWarehouse(product, (totals, p) -> totals.add(p, -1, -p.quantity));
+            }
+            product.category = category;
+            product.unit = unit;
+            product.quantity = quantity;
+            product.version = version;
+            forEachWarehouse(product, (totals, p) -> totals.add(p, 1, p.quantity));
+        }
+
+        void setQuantity(String productId, int quantity, long version) {
+            ProductFacts product = products.get(productId);
+            if (product != null && version >= product.version) {
+                long delta = quantity - product.quantity;
+                product.quantity = quantity;
+                product.version = version;
+                forEachWarehouse(product, (totals, p) -> totals.add(p, 0, delta));
+            }
+        }
+
+        void removeProduct(String productId) {
+            ProductFacts product = products.remove(productId);
+            if (product != null) {
+                forEachWarehouse(product, (totals, p) -> totals.add(p, -1, -p.quantity));
+            }
+        }
+
+        void link(Long warehouseId, String productId) {
+            ProductFacts product = products.get(productId);
+            if (product == null) {
+                return;
+            }
+            int ordinal = warehouse(warehouseId);
+            if (product.warehouses.checkedAdd(ordinal)) {
+                byOrdinal.get(ordinal).add(product, 1, product.quantity);
+            }
+        }
+
+        void unlink(Long warehouseId, String productId) {
+            Integer ordinal = warehouseOrdinals.get(warehouseId);
+            ProductFacts product = products.get(productId);
+            if (ordinal != null && product != null && product.warehouses.checkedRemove(ordinal)) {
+                byOrdinal.get(ordinal).add(product, -1, -product.quantity);
+            }
+        }
+
+        void removeWarehouse(Long warehouseId) {
+            Integer ordinal = warehouseOrdinals.remove(warehouseId);
+            if (ordinal != null) {
+                byOrdinal.set(ordinal, null);
+                byId.remove(warehouseId);
+            }
+        }
+
+        InventorySummaryStatsDTO stats(long rebuildMillis) {
+            long links = byId.values().stream().mapToLong(totals -> totals.productCount).sum();
+            return new InventorySummaryStatsDTO(byId.size(), products.size(), links, rebuildMillis);
+        }
+
+        private void forEachWarehouse(ProductFacts product, BiConsumer<Totals, ProductFacts> action) {
+            product.warehouses.forEach((int ordinal) -> {
+                Totals totals = byOrdinal.get(ordinal);
+                if (totals != null) {
+                    action.accept(totals, product);
+                }
+            });
+        }
+    }
+}
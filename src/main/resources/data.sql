@@ -15,7 +15,9 @@ CREATE TABLE product (
                          product_name VARCHAR(255) NOT NULL,
                          product_category VARCHAR(255),
                          product_quantity INTEGER NOT NULL DEFAULT 0,
-                         product_unit VARCHAR(50)
+                         product_unit VARCHAR(50),
+                         version BIGINT NOT NULL DEFAULT 0,
+                         updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
 
 -- =====================================================
@@ -28,6 +30,7 @@ CREATE TABLE datawarehouse (
                                warehouse_postal_code VARCHAR(20),
                                warehouse_city VARCHAR(255),
                                warehouse_country VARCHAR(255),
+                               version BIGINT NOT NULL DEFAULT 0,
                                timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
 
@@ -40,6 +43,15 @@ CREATE TABLE warehouse_products (
                                     PRIMARY KEY (warehouse_id, product_id)
 );
 
+-- =====================================================
+-- Indexes for the keyset-paginated listings
+-- =====================================================
+CREATE INDEX idx_product_category_id ON product (product_category, product_id);
+CREATE INDEX idx_datawarehouse_city_id ON datawarehouse (warehouse_city, warehouse_id);
+
+-- Catalog snapshot catch-up: products changed since a point in time
+CREATE INDEX idx_product_updated_at ON product (updated_at);
+
 -- =====================================================
 -- Insert Sample Products
 -- =====================================================
@@ -0,0 +1,101 @@
+package com.example.orm.cache;
+
+import com.example.orm.model.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductLookupCacheTest {
+
+    private final ProductLookupCache cache = new ProductLookupCache(100, Duration.ofMinutes(5), Duration.ofSeconds(30));
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void invalidationInsideATransactionWaitsForTheCommit() {
+        lookup();
+        TransactionSynchronizationManager.initSynchronization();
+        cache.invalidateWarehouseProducts(1L, List.of("P1"));
+
+        // A reader before the commit would still see the old row, so it may keep the cached miss
+        lookup();
+        assertThat(loads).hasValue(1);
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationUtils.invokeAfterCommit(synchronizations);
+        lookup();
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void rolledBackInvalidationKeepsTheEntry() {
+        lookup();
+        TransactionSynchronizationManager.initSynchronization();
+        cache.invalidateWarehouse(1L);
+        TransactionSynchronizationManager.clearSynchronization();
+
+        lookup();
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void invalidationDropsOnlyTheEntriesOfThatProductOrWarehouse() {
+        lookup(1L, "P1");
+        lookup(2L, "P1");
+        lookup(1L, "P2");
+        lookup(2L, "P2");
+
+        cache.invalidateProduct("P1");
+        lookup(1L, "P1");
+        lookup(2L, "P1");
+        lookup(1L, "P2");
+        assertThat(loads).hasValue(6);
+
+        cache.invalidateWarehouse(2L);
+        lookup(1L, "P1");
+        lookup(1L, "P2");
+        lookup(2L, "P1");
+        lookup(2L, "P2");
+        assertThat(loads).hasValue(8);
+    }
+
+    @Test
+    void invalidateAllWaitsForTheCommit() {
+        lookup();
+        TransactionSynchronizationManager.initSynchronization();
+        cache.invalidateAll();
+
+        lookup();
+        assertThat(loads).hasValue(1);
+
+        TransactionSynchronizationUtils.invokeAfterCommit(TransactionSynchronizationManager.getSynchronizations());
+        lookup();
+        assertThat(loads).hasValue(2);
+    }
+
+    private Optional<Product> lookup() {
+        return lookup(1L, "P1");
+    }
+
+    private Optional<Product> lookup(Long warehouseId, String productId) {
+        return cache.getProductInWarehouse(warehouseId, productId, () -> {
+            loads.incrementAndGet();
+            return Optional.empty();
+        });
+    }
+}
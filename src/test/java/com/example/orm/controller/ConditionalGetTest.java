@@ -0,0 +1,126 @@
+package com.example.orm.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * ETag revalidation and optimistic locking against the sample data from data.sql.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class ConditionalGetTest {
+
+    private static final String PRODUCT_WITHOUT_VERSION = "{\"productName\":\"Mountain Bike Trek\"," +
+            "\"productCategory\":\"Sports & Outdoors\",\"productQuantity\":35,\"productUnit\":\"pieces\"}";
+
+    private static final String WAREHOUSE_WITHOUT_VERSION = "{\"warehouseName\":\"European Distribution Center\"," +
+            "\"warehouseAddress\":\"Hauptstraße 123\",\"warehousePostalCode\":\"10115\",\"warehouseCity\":\"Berlin\"," +
+            "\"warehouseCountry\":\"Germany\"}";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void warehouseEtagChangesWhenLinksChange() throws Exception {
+        String etag = etagOf("/api/warehouses/2");
+        assertThat(etagOf("/api/warehouses/2/products")).isEqualTo(etag);
+
+        mockMvc.perform(get("/api/warehouses/2").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(post("/api/warehouses/2/unlink-products")
+                        .contentType(MediaType.APPLICATION_JSON).content("[\"SPORT004\"]"))
+                .andExpect(status().isOk());
+        String afterUnlink = etagOf("/api/warehouses/2");
+        assertThat(afterUnlink).isNotEqualTo(etag);
+
+        mockMvc.perform(post("/api/warehouses/2/link-products")
+                        .contentType(MediaType.APPLICATION_JSON).content("[\"SPORT004\"]"))
+                .andExpect(status().isOk());
+        assertThat(etagOf("/api/warehouses/2")).isNotIn(etag, afterUnlink);
+    }
+
+    @Test
+    void productUpdateWithStaleVersionConflicts() throws Exception {
+        String etag = etagOf("/api/products/SPORT003");
+        mockMvc.perform(get("/api/products/SPORT003").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        String body = "{\"productName\":\"Yoga Mat\",\"productCategory\":\"Sports\"," +
+                "\"productQuantity\":40,\"productUnit\":\"piece\",\"version\":%d}";
+        long version = Long.parseLong(etag.replaceAll(".*-(\\d+)\"$", "$1"));
+        mockMvc.perform(put("/api/products/SPORT003")
+                        .contentType(MediaType.APPLICATION_JSON).content(String.format(body, version)))
+                .andExpect(status().isOk());
+        mockMvc.perform(put("/api/products/SPORT003")
+                        .contentType(MediaType.APPLICATION_JSON).content(String.format(body, version)))
+                .andExpect(status().isConflict());
+
+        assertThat(etagOf("/api/products/SPORT003")).isNotEqualTo(etag);
+    }
+
+    @Test
+    void updatesWithoutAVersionAreRejected() throws Exception {
+        mockMvc.perform(put("/api/products/SPORT001")
+                        .contentType(MediaType.APPLICATION_JSON).content(PRODUCT_WITHOUT_VERSION))
+                .andExpect(status().isPreconditionRequired());
+        mockMvc.perform(put("/api/warehouses/3")
+                        .contentType(MediaType.APPLICATION_JSON).content(WAREHOUSE_WITHOUT_VERSION))
+                .andExpect(status().isPreconditionRequired());
+    }
+
+    @Test
+    void ifMatchCarriesTheVersion() throws Exception {
+        String productEtag = etagOf("/api/products/SPORT001");
+        String restock = PRODUCT_WITHOUT_VERSION.replace("35", "36");
+        String updatedEtag = mockMvc.perform(put("/api/products/SPORT001").header(HttpHeaders.IF_MATCH, productEtag)
+                        .contentType(MediaType.APPLICATION_JSON).content(restock))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(updatedEtag).isNotEqualTo(productEtag);
+        mockMvc.perform(put("/api/products/SPORT001").header(HttpHeaders.IF_MATCH, productEtag)
+                        .contentType(MediaType.APPLICATION_JSON).content(PRODUCT_WITHOUT_VERSION))
+                .andExpect(status().isPreconditionFailed());
+        mockMvc.perform(put("/api/products/SPORT001").header(HttpHeaders.IF_MATCH, updatedEtag)
+                        .contentType(MediaType.APPLICATION_JSON).content(PRODUCT_WITHOUT_VERSION))
+                .andExpect(status().isOk());
+
+        String warehouseEtag = etagOf("/api/warehouses/3");
+        String moved = WAREHOUSE_WITHOUT_VERSION.replace("10115", "10117");
+        mockMvc.perform(put("/api/warehouses/3").header(HttpHeaders.IF_MATCH, etagOf("/api/products/SPORT001"))
+                        .contentType(MediaType.APPLICATION_JSON).content(moved))
+                .andExpect(status().isPreconditionFailed());
+        mockMvc.perform(put("/api/warehouses/3").header(HttpHeaders.IF_MATCH, warehouseEtag)
+                        .contentType(MediaType.APPLICATION_JSON).content(moved))
+                .andExpect(status().isOk());
+        mockMvc.perform(put("/api/warehouses/3").header(HttpHeaders.IF_MATCH, warehouseEtag)
+                        .contentType(MediaType.APPLICATION_JSON).content(WAREHOUSE_WITHOUT_VERSION))
+                .andExpect(status().isPreconditionFailed());
+        mockMvc.perform(put("/api/warehouses/3").header(HttpHeaders.IF_MATCH, etagOf("/api/warehouses/3"))
+                        .contentType(MediaType.APPLICATION_JSON).content(WAREHOUSE_WITHOUT_VERSION))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void missingWarehouseProductsAreNotFound() throws Exception {
+        mockMvc.perform(get("/api/warehouses/999999/products"))
+                .andExpect(status().isNotFound());
+    }
+
+    private String etagOf(String uri) throws Exception {
+        return mockMvc.perform(get(uri))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+}
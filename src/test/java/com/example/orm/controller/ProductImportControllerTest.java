@@ -0,0 +1,33 @@
+package com.example.orm.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Status codes of the import endpoint that do not need PostgreSQL's COPY.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class ProductImportControllerTest {
+
+    private static final String CSV = "product_id,product_name,product_category,product_quantity,product_unit\n" +
+            "IMP001,Imported lamp,Home,3,piece\n";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void importIntoMissingWarehouseIsNotFound() throws Exception {
+        mockMvc.perform(post("/api/products/import").param("warehouseId", "999999")
+                        .contentType("text/csv").content(CSV))
+                .andExpect(status().isNotFound())
+                .andExpect(content().string(""));
+    }
+}
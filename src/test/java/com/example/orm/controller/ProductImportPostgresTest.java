@@ -0,0 +1,137 @@
+package com.example.orm.controller;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The import end to end on an embedded PostgreSQL, which COPY needs. Each test uses its own
+ * product IDs, so they do not depend on each other's imports.
+ */
+@SpringBootTest(properties = "spring.sql.init.mode=never")
+@AutoConfigureMockMvc
+// The database goes away with the JVM (embedded-postgres stops it from a shutdown hook), so the
+// context must not be reused past this class
+@DirtiesContext
+class ProductImportPostgresTest {
+
+    private static final String HEADER = "product_id,product_name,product_category,product_quantity,product_unit\n";
+
+    private static EmbeddedPostgres postgres;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) throws IOException {
+        postgres = EmbeddedPostgres.builder().start();
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(postgres.getPostgresDatabase());
+        registry.add("spring.datasource.url", () -> postgres.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "");
+        registry.add("spring.datasource.driver-class-name", () -> "org.postgresql.Driver");
+    }
+
+    @Test
+    void insertsNewProducts() throws Exception {
+        importCsv(HEADER + "INS001,Desk lamp,Home,3,piece\nINS002,Floor lamp,Home,,piece\n")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rowsRead").value(2))
+                .andExpect(jsonPath("$.rowsUpserted").value(2))
+                .andExpect(jsonPath("$.rowsLinked").value(0));
+
+        assertThat(product("INS001")).containsEntry("product_name", "Desk lamp").containsEntry("product_quantity", 3);
+        assertThat(product("INS002")).containsEntry("product_quantity", 0);
+    }
+
+    @Test
+    void lastRowWinsForRepeatedIds() throws Exception {
+        importCsv(HEADER + "DUP001,First,Home,1,piece\nDUP001,Second,Home,2,piece\nDUP001,Third,Home,3,piece\n")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rowsRead").value(3))
+                .andExpect(jsonPath("$.rowsUpserted").value(1));
+
+        assertThat(product("DUP001")).containsEntry("product_name", "Third").containsEntry("product_quantity", 3);
+    }
+
+    @Test
+    void updatesExistingProductsAndBumpsTheirVersion() throws Exception {
+        importCsv(HEADER + "UPS001,Kettle,Kitchen,5,piece\n").andExpect(status().isOk());
+        long version = (Long) product("UPS001").get("version");
+
+        importNdjson("{\"productID\":\"UPS001\",\"productName\":\"Steel kettle\",\"productCategory\":\"Kitchen\","
+                + "\"productQuantity\":8,\"productUnit\":\"piece\"}\n")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rowsUpserted").value(1));
+
+        assertThat(product("UPS001"))
+                .containsEntry("product_name", "Steel kettle")
+                .containsEntry("product_quantity", 8)
+                .containsEntry("version", version + 1);
+    }
+
+    @Test
+    void rejectsTheWholeFileForOneBadRow() throws Exception {
+        importCsv(HEADER + "REJ001,Good row,Home,1,piece\nREJ002,Bad row,Home,lots,piece\n")
+                .andExpect(status().isBadRequest());
+        importCsv(HEADER + "REJ003,,Home,1,piece\n")
+                .andExpect(status().isBadRequest());
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM product WHERE product_id LIKE 'REJ%'", Long.class))
+                .isZero();
+    }
+
+    @Test
+    void linksImportedProductsToTheWarehouse() throws Exception {
+        Long warehouseId = jdbcTemplate.queryForObject(
+                "INSERT INTO datawarehouse (warehouse_name) VALUES ('Import target') RETURNING warehouse_id", Long.class);
+        String csv = HEADER + "LNK001,Shelf,Home,2,piece\nLNK002,Crate,Home,4,piece\n";
+
+        mockMvc.perform(post("/api/products/import").param("warehouseId", String.valueOf(warehouseId))
+                        .contentType("text/csv").content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rowsLinked").value(2));
+        // Already linked: upserted again, linked no further
+        mockMvc.perform(post("/api/products/import").param("warehouseId", String.valueOf(warehouseId))
+                        .contentType("text/csv").content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rowsUpserted").value(2))
+                .andExpect(jsonPath("$.rowsLinked").value(0));
+
+        assertThat(jdbcTemplate.queryForList("SELECT product_id FROM warehouse_products WHERE warehouse_id = ? "
+                + "ORDER BY product_id", String.class, warehouseId)).containsExactly("LNK001", "LNK002");
+    }
+
+    private ResultActions importCsv(String csv) throws Exception {
+        return mockMvc.perform(post("/api/products/import").contentType("text/csv").content(csv));
+    }
+
+    private ResultActions importNdjson(String ndjson) throws Exception {
+        return mockMvc.perform(post("/api/products/import").contentType("application/x-ndjson").content(ndjson));
+    }
+
+    private Map<String, Object> product(String productId) {
+        return jdbcTemplate.queryForMap("SELECT * FROM product WHERE product_id = ?", productId);
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.orm.controller;
+
+import com.example.orm.service.WarehouseExportService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.doAnswer;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class WarehouseExportTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoSpyBean
+    private WarehouseExportService exportService;
+
+    @Test
+    void completeExportEndsWithTrailer() throws Exception {
+        String body = mockMvc.perform(get("/api/warehouses/export").param("fullProducts", "true"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            lines.add(objectMapper.readTree(line));
+        }
+        JsonNode trailer = lines.remove(lines.size() - 1);
+        long warehouses = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM datawarehouse", Long.class);
+        long links = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM warehouse_products", Long.class);
+
+        assertThat(trailer.path("exportComplete").asBoolean()).isTrue();
+        assertThat(trailer.path("warehouses").asLong()).isEqualTo(warehouses);
+        assertThat(lines).hasSize((int) warehouses);
+        assertThat(lines).extracting(line -> line.path("warehouseID").asLong()).isSorted().doesNotHaveDuplicates();
+        assertThat(lines.stream().mapToLong(line -> line.path("products").size()).sum()).isEqualTo(links);
+    }
+
+    @Test
+    void failureAfterFirstBytesAbortsTheResponse() throws Exception {
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(0);
+            out.write("{\"warehouseID\":1,\"productIds\":[]}\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            throw new DataAccessResourceFailureException("Connection reset");
+        }).when(exportService).exportNdjson(any(), anyBoolean());
+
+        // Propagates to the container instead of ending the 200 normally, which closes the connection
+        assertThatThrownBy(() -> mockMvc.perform(get("/api/warehouses/export")))
+                .hasRootCauseInstanceOf(DataAccessResourceFailureException.class);
+    }
+
+    @Test
+    void failureBeforeFirstBytesIsAServerError() throws Exception {
+        doAnswer(invocation -> {
+            throw new DataAccessResourceFailureException("Connection refused");
+        }).when(exportService).exportNdjson(any(), anyBoolean());
+
+        mockMvc.perform(get("/api/warehouses/export"))
+                .andExpect(status().isInternalServerError());
+    }
+}
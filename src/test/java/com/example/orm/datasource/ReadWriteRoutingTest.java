@@ -0,0 +1,90 @@
+package com.example.orm.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Routes against two independent in-memory databases: the regular test database as primary and
+ * a copy whose product names are marked as replica, plus a second replica that cannot be reached.
+ */
+@SpringBootTest(properties = {
+        "app.datasource.routing.enabled=true",
+        "app.datasource.replicas[0].jdbc-url=" + ReadWriteRoutingTest.REPLICA_URL,
+        "app.datasource.replicas[1].jdbc-url=jdbc:h2:tcp://localhost:1/unreachable",
+        "app.datasource.replicas[1].connection-timeout=250",
+})
+@AutoConfigureMockMvc
+class ReadWriteRoutingTest {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:replica;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ReplicaRouter router;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @BeforeAll
+    static void createReplica() {
+        DriverManagerDataSource replica = new DriverManagerDataSource(REPLICA_URL, "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql"), new ClassPathResource("data.sql"))
+                .execute(replica);
+        new JdbcTemplate(replica).update("UPDATE product SET product_name = 'replica ' || product_name");
+    }
+
+    @Test
+    void readOnlyTransactionsUseTheReplicaUnlessPinned() throws Exception {
+        double replicaReads = routed("replica-1", "read_only");
+
+        assertThat(productPage(false)).contains("\"productName\":\"replica ");
+        assertThat(routed("replica-1", "read_only")).isGreaterThan(replicaReads);
+
+        assertThat(productPage(true)).doesNotContain("\"productName\":\"replica ");
+        assertThat(routed("primary", "pinned")).isPositive();
+    }
+
+    @Test
+    void ejectsUnreachableReplica() throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (router.healthyReplicas() > 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(router.healthyReplicas()).isEqualTo(1);
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(productPage(false)).contains("\"productName\":\"replica ");
+        }
+        assertThat(routed("replica-2", "read_only")).isZero();
+        assertThat(registry.get("datasource.replicas.healthy").gauge().value()).isEqualTo(1);
+        assertThat(registry.get("datasource.replica.ejections").tag("replica", "replica-2").functionCounter().count()).isPositive();
+    }
+
+    private String productPage(boolean readYourWrites) throws Exception {
+        var request = get("/api/products").param("size", "5");
+        if (readYourWrites) {
+            request.header(ReplicaRouter.READ_YOUR_WRITES_HEADER, "true");
+        }
+        return mockMvc.perform(request).andReturn().getResponse().getContentAsString();
+    }
+
+    private double routed(String target, String reason) {
+        Counter counter = registry.find("datasource.routing").tags("target", target, "reason", reason).counter();
+        return counter == null ? 0 : counter.count();
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.orm.datasource;
+
+import com.example.orm.dto.CursorPageDTO;
+import com.example.orm.dto.WarehouseListItemDTO;
+import com.example.orm.dto.WarehouseWithProductsDTO;
+import com.example.orm.model.DataWarehouse;
+import com.example.orm.model.Product;
+import com.example.orm.service.DataWarehouseService;
+import com.example.orm.service.ProductCatalogReplicator;
+import com.example.orm.service.ProductService;
+import com.example.orm.service.WarehouseShards;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Three independent in-memory databases as shards, each starting from an empty schema.
+ */
+@SpringBootTest(properties = {
+        "app.datasource.sharding.enabled=true",
+        "spring.datasource.url=" + ShardingTest.SHARD_0_URL,
+        "app.datasource.shards[0].jdbc-url=" + ShardingTest.SHARD_1_URL,
+        "app.datasource.shards[1].jdbc-url=" + ShardingTest.SHARD_2_URL,
+        "spring.sql.init.mode=never",
+})
+class ShardingTest {
+
+    static final String SHARD_0_URL = "jdbc:h2:mem:shard0;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    static final String SHARD_1_URL = "jdbc:h2:mem:shard1;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    static final String SHARD_2_URL = "jdbc:h2:mem:shard2;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    private static final List<JdbcTemplate> SHARDS = new ArrayList<>();
+
+    @Autowired
+    private DataWarehouseService warehouseService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductCatalogReplicator catalog;
+
+    @Autowired
+    private WarehouseShards shards;
+
+    @BeforeAll
+    static void createShards() {
+        for (String url : List.of(SHARD_0_URL, SHARD_1_URL, SHARD_2_URL)) {
+            DriverManagerDataSource shard = new DriverManagerDataSource(url, "sa", "");
+            new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(shard);
+            SHARDS.add(new JdbcTemplate(shard));
+        }
+    }
+
+    @Test
+    void spreadsWarehousesAndMergesListingsInIdOrder() {
+        List<Long> created = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            created.add(warehouseService.createWarehouse(warehouse("Spread " + i)).getWarehouseID());
+        }
+
+        for (Long id : created) {
+            int shard = (int) ((id - 1) % 3);
+            assertThat(count(shard, "SELECT COUNT(*) FROM datawarehouse WHERE warehouse_id = ?", id)).isOne();
+            assertThat(count((shard + 1) % 3, "SELECT COUNT(*) FROM datawarehouse WHERE warehouse_id = ?", id)).isZero();
+        }
+        assertThat(created.stream().map(id -> (id - 1) % 3).distinct()).hasSize(3);
+
+        List<Long> listed = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPageDTO<WarehouseListItemDTO> page = warehouseService.getWarehouseListPage(cursor, 4, null);
+            page.getItems().forEach(item -> listed.add(item.getWarehouseID()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        assertThat(listed).isSorted().containsAll(created).doesNotHaveDuplicates();
+        assertThat(warehouseService.getWarehousePage(null, 100, "Shard City").getItems())
+                .extracting(DataWarehouse::getWarehouseID).isSorted().containsAll(created);
+    }
+
+    @Test
+    void copiesProductsToEveryShardAndKeepsLinksOnTheWarehouseShard() {
+        Product product = productService.addProduct(product("Sharded kettle"));
+        String productId = product.getProductID();
+        assertThat(catalog.awaitReplication(List.of(productId))).isTrue();
+        for (int shard = 0; shard < 3; shard++) {
+            assertThat(count(shard, "SELECT COUNT(*) FROM product WHERE product_id = ?", productId)).isOne();
+        }
+
+        Long warehouseId = warehouseService.createWarehouse(warehouse("Links")).getWarehouseID();
+        int home = (int) ((warehouseId - 1) % 3);
+        warehouseService.linkProducts(warehouseId, List.of(productId));
+        assertThat(warehouseService.getWarehouseById(warehouseId).getProducts())
+                .extracting(Product::getProductID).containsExactly(productId);
+        assertThat(count(home, "SELECT COUNT(*) FROM warehouse_products WHERE product_id = ?", productId)).isOne();
+        assertThat(count((home + 1) % 3, "SELECT COUNT(*) FROM warehouse_products WHERE product_id = ?", productId)).isZero();
+
+        product.setProductName("Renamed kettle");
+        Product updated = productService.updateProduct(product);
+        assertThat(catalog.awaitReplication(List.of(productId))).isTrue();
+        assertThat(warehouseService.getProductFromWarehouse(warehouseId, productId).getProductName()).isEqualTo("Renamed kettle");
+        assertThat(count(home, "SELECT version FROM product WHERE product_id = ?", productId)).isEqualTo(updated.getVersion());
+
+        String etag = warehouseService.getWarehouseIfModified(warehouseId, tag -> true).getEtag();
+        productService.deleteProduct(productId);
+        assertThat(catalog.awaitReplication(List.of(productId))).isTrue();
+        for (int shard = 0; shard < 3; shard++) {
+            assertThat(count(shard, "SELECT COUNT(*) FROM product WHERE product_id = ?", productId)).isZero();
+        }
+        assertThat(warehouseService.getProductsFromWarehouse(warehouseId)).isEmpty();
+        assertThat(warehouseService.getWarehouseIfModified(warehouseId, tag -> true).getEtag()).isNotEqualTo(etag);
+    }
+
+    @Test
+    void productsCreatedWithAWarehouseReachTheOtherShards() {
+        WarehouseWithProductsDTO request = new WarehouseWithProductsDTO();
+        request.setWarehouseName("With new products");
+        request.setProducts(List.of(product("Sharded lamp"), product("Sharded tent")));
+
+        DataWarehouse created = warehouseService.createWarehouseWithNewProducts(request);
+        assertThat(catalog.awaitReplication(created.getProducts().stream().map(Product::getProductID).toList())).isTrue();
+
+        for (Product product : created.getProducts()) {
+            for (int shard = 0; shard < 3; shard++) {
+                assertThat(count(shard, "SELECT COUNT(*) FROM product WHERE product_id = ?", product.getProductID())).isOne();
+            }
+            assertThat(productService.getProductById(product.getProductID()).getProductName()).startsWith("Sharded");
+        }
+    }
+
+    @Test
+    void alignsWarehouseIdsOnlyOnceAndRefusesMisplacedRows() {
+        Long first = warehouseService.createWarehouse(warehouse("Aligned")).getWarehouseID();
+        // Another instance starting: the sequences are already aligned and must not restart
+        shards.afterSingletonsInstantiated();
+        Long second = warehouseService.createWarehouse(warehouse("Aligned")).getWarehouseID();
+        assertThat(second).isGreaterThan(first);
+        assertThat(count((int) ((second - 1) % 3), "SELECT COUNT(*) FROM datawarehouse WHERE warehouse_id = ?", second)).isOne();
+
+        long misplaced = 3 * 1000 + 2;
+        SHARDS.get(0).update("INSERT INTO datawarehouse (warehouse_id, warehouse_name, version) VALUES (?, ?, 0)",
+                misplaced, "Misplaced");
+        try {
+            assertThatThrownBy(shards::afterSingletonsInstantiated)
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("Shard 0 holds 1 warehouses");
+        } finally {
+            SHARDS.get(0).update("DELETE FROM datawarehouse WHERE warehouse_id = ?", misplaced);
+        }
+    }
+
+    @Test
+    void reconcileRepairsCopiesThatNeverArrived() {
+        // A product written on shard 2 whose copy was lost, and one whose last update missed shard 1
+        SHARDS.get(2).update("INSERT INTO product (product_id, product_name, product_quantity, version) VALUES (?, ?, ?, ?)",
+                "lost-copy", "Lost copy", 3, 4L);
+        Product product = productService.addProduct(product("Outdated copy"));
+        assertThat(catalog.awaitReplication(List.of(product.getProductID()))).isTrue();
+        for (int shard : List.of(0, 2)) {
+            SHARDS.get(shard).update("UPDATE product SET product_quantity = 9, version = version + 1 WHERE product_id = ?",
+                    product.getProductID());
+        }
+
+        assertThat(catalog.reconcile()).isEqualTo(2);
+
+        for (int shard = 0; shard < 3; shard++) {
+            assertThat(count(shard, "SELECT version FROM product WHERE product_id = ?", "lost-copy")).isEqualTo(4);
+            assertThat(count(shard, "SELECT product_quantity FROM product WHERE product_id = ?", product.getProductID()))
+                    .isEqualTo(9);
+        }
+        assertThat(catalog.reconcile()).isZero();
+    }
+
+    private static long count(int shard, String sql, Object arg) {
+        return SHARDS.get(shard).queryForObject(sql, Long.class, arg);
+    }
+
+    private static DataWarehouse warehouse(String name) {
+        DataWarehouse warehouse = new DataWarehouse();
+        warehouse.setWarehouseName(name);
+        warehouse.setWarehouseCity("Shard City");
+        return warehouse;
+    }
+
+    private static Product product(String name) {
+        Product product = new Product();
+        product.setProductName(name);
+        product.setProductCategory("Home");
+        product.setProductQuantity(5);
+        product.setProductUnit("pieces");
+        return product;
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.orm.events;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Subscribes to the change stream over MockMvc and checks delivery, resume and the RESYNC
+ * answer to an unknown sequence number.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class InventoryChangeStreamTest {
+
+    private static final Pattern UNLINK_ID = Pattern.compile("id:(\\d+)\nevent:PRODUCT_UNLINKED\n");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void deliversCommittedChangesAndResumes() throws Exception {
+        MvcResult live = subscribe(null);
+
+        changeLink("unlink-products");
+        changeLink("link-products");
+        String received = awaitContent(live, "event:PRODUCT_LINKED");
+        assertThat(received).contains("\"warehouseId\":3", "\"productIds\":[\"HOME004\"]");
+
+        Matcher unlink = UNLINK_ID.matcher(received);
+        assertThat(unlink.find()).isTrue();
+        MvcResult resumed = subscribe(unlink.group(1));
+        String replayed = awaitContent(resumed, "event:PRODUCT_LINKED");
+        assertThat(replayed).doesNotContain("PRODUCT_UNLINKED");
+    }
+
+    @Test
+    void publishesOnlyLinksThatChanged() throws Exception {
+        changeLink("link-products");
+        MvcResult live = subscribe(null);
+
+        changeLink("link-products", "[\"HOME004\",\"NO-SUCH-PRODUCT\"]");
+        changeLink("unlink-products", "[\"HOME004\",\"NO-SUCH-PRODUCT\"]");
+        changeLink("unlink-products", "[\"HOME004\"]");
+        changeLink("link-products", "[\"HOME004\",\"NO-SUCH-PRODUCT\"]");
+        String received = awaitContent(live, "event:PRODUCT_LINKED");
+
+        assertThat(received).doesNotContain("NO-SUCH-PRODUCT");
+        assertThat(received.split("\nevent:", -1)).hasSize(3);
+        assertThat(received.indexOf("event:PRODUCT_UNLINKED")).isLessThan(received.indexOf("event:PRODUCT_LINKED"));
+    }
+
+    @Test
+    void unknownSequenceStartsWithResync() throws Exception {
+        MvcResult result = subscribe("999999999");
+        assertThat(awaitContent(result, "event:RESYNC")).startsWith("id:");
+    }
+
+    private MvcResult subscribe(String lastEventId) throws Exception {
+        var builder = get("/api/warehouses/changes").accept(MediaType.TEXT_EVENT_STREAM);
+        if (lastEventId != null) {
+            builder.header("Last-Event-ID", lastEventId);
+        }
+        return mockMvc.perform(builder).andExpect(request().asyncStarted()).andReturn();
+    }
+
+    private void changeLink(String action) throws Exception {
+        changeLink(action, "[\"HOME004\"]");
+    }
+
+    private void changeLink(String action, String productIds) throws Exception {
+        mockMvc.perform(post("/api/warehouses/3/" + action)
+                        .contentType(MediaType.APPLICATION_JSON).content(productIds))
+                .andExpect(status().isOk());
+    }
+
+    private static String awaitContent(MvcResult result, String expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 5_000;
+        String content = result.getResponse().getContentAsString();
+        while (!content.contains(expected) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            content = result.getResponse().getContentAsString();
+        }
+        assertThat(content).contains(expected);
+        return content;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.orm.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UlidGeneratorTest {
+
+    @Test
+    void idsAreStrictlyIncreasingWithinAMillisecond() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            ids.add(UlidGenerator.next());
+        }
+        assertThat(ids).isSortedAccordingTo(String::compareTo).doesNotHaveDuplicates();
+        assertThat(ids).allSatisfy(id -> assertThat(id).matches("[0-7][0-9A-HJKMNP-TV-Z]{25}"));
+    }
+
+    @Test
+    void timestampPrefixEncodesTheCurrentTime() {
+        long before = System.currentTimeMillis();
+        String id = UlidGenerator.next();
+        long millis = 0;
+        for (char c : id.substring(0, 10).toCharArray()) {
+            millis = millis * 32 + "0123456789ABCDEFGHJKMNPQRSTVWXYZ".indexOf(c);
+        }
+        assertThat(millis).isBetween(before, System.currentTimeMillis());
+    }
+
+    @Test
+    void keepsAssignedIdentifiers() {
+        UlidGenerator generator = new UlidGenerator();
+        assertThat(generator.generate(null, null, "ELEC001", null)).isEqualTo("ELEC001");
+        assertThat((String) generator.generate(null, null, " ", null)).hasSize(UlidGenerator.LENGTH);
+    }
+}
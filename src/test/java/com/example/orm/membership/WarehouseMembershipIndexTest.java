@@ -0,0 +1,91 @@
+package com.example.orm.membership;
+
+import com.example.orm.membership.WarehouseMembershipIndex.ProductIdPage;
+import com.example.orm.membership.WarehouseMembershipIndex.SetOperation;
+import com.example.orm.membership.WarehouseMembershipIndex.UnknownWarehouseException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Set operations, paging and incremental updates without a database; outside a transaction
+ * index writes apply immediately.
+ */
+class WarehouseMembershipIndexTest {
+
+    private WarehouseMembershipIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new WarehouseMembershipIndex(null, null, Optional.empty(), 100, false);
+        index.link(1L, List.of("P1", "P2", "P3", "P4"));
+        index.link(2L, List.of("P2", "P3", "P5"));
+        index.link(3L, List.of("P3", "P6"));
+    }
+
+    @Test
+    void combinesWarehouseSets() {
+        assertThat(index.combine(SetOperation.INTERSECTION, List.of(1L, 2L), null, 10).productIds())
+                .containsExactly("P2", "P3");
+        assertThat(index.combine(SetOperation.UNION, List.of(2L, 3L), null, 10).productIds())
+                .containsExactly("P2", "P3", "P5", "P6");
+        assertThat(index.combine(SetOperation.DIFFERENCE, List.of(1L, 2L, 3L), null, 10).productIds())
+                .containsExactly("P1", "P4");
+        assertThatThrownBy(() -> index.combine(SetOperation.UNION, List.of(1L, 99L), null, 10))
+                .isInstanceOf(UnknownWarehouseException.class);
+    }
+
+    @Test
+    void pagesByProductId() {
+        ProductIdPage first = index.combine(SetOperation.UNION, List.of(1L, 2L, 3L), null, 4);
+        assertThat(first.productIds()).containsExactly("P1", "P2", "P3", "P4");
+        assertThat(first.count()).isEqualTo(6);
+        assertThat(first.hasMore()).isTrue();
+
+        ProductIdPage second = index.combine(SetOperation.UNION, List.of(1L, 2L, 3L), "P4", 4);
+        assertThat(second.productIds()).containsExactly("P5", "P6");
+        assertThat(second.hasMore()).isFalse();
+    }
+
+    @Test
+    void cursorSurvivesRemovalAndRebuild() {
+        index.removeProduct("P2");
+        assertThat(index.stats().getRemovedOrdinals()).isOne();
+        assertThat(index.combine(SetOperation.UNION, List.of(1L, 2L, 3L), "P2", 2).productIds())
+                .containsExactly("P3", "P4");
+
+        // P0 sorts first, so every ordinal moves by one
+        index.rebuild((handler, withLinks) -> {
+            List.of("P0", "P1", "P3", "P4", "P5", "P6").forEach(id -> handler.product(id, id, "c", "pcs", 1, 0));
+            List.of(1L, 2L, 3L).forEach(id -> handler.warehouse(id, 0));
+            List.of("P0", "P1", "P3", "P4").forEach(id -> handler.link(1L, id));
+            List.of("P3", "P5").forEach(id -> handler.link(2L, id));
+            List.of("P3", "P6").forEach(id -> handler.link(3L, id));
+        });
+        assertThat(index.stats().getRemovedOrdinals()).isZero();
+        assertThat(index.combine(SetOperation.UNION, List.of(1L, 2L, 3L), "P3", 10).productIds())
+                .containsExactly("P4", "P5", "P6");
+        assertThatThrownBy(() -> index.combine(SetOperation.UNION, List.of(1L, 2L, 3L), "P2", 2))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void appliesUnlinksAndDeletes() {
+        index.unlink(1L, List.of("P2"));
+        index.removeProduct("P3");
+        index.removeWarehouse(3L);
+
+        assertThat(index.contains(1L, "P2")).isFalse();
+        assertThat(index.contains(2L, "P2")).isTrue();
+        assertThat(index.warehousesOf("P3")).isEmpty();
+        assertThat(index.warehousesOf("P2")).containsExactly(2L);
+        assertThat(index.warehousesOf("P6")).isEmpty();
+        assertThat(index.hasWarehouse(3L)).isFalse();
+        assertThat(index.stats().getLinks()).isEqualTo(4);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.orm.monitoring;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs the budgeted read endpoints against the sample data from data.sql. Strict mode is on in
+ * the test profile, so a handler over budget fails here instead of in production.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class QueryBudgetTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private QueryBudgetInterceptor interceptor;
+
+    @BeforeEach
+    void setUp() {
+        interceptor.getViolations().clear();
+    }
+
+    @Test
+    void warehouseReadsStayWithinBudget() throws Exception {
+        mockMvc.perform(get("/api/warehouses"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(QueryStatsHeaderAdvice.QUERY_COUNT_HEADER));
+        mockMvc.perform(get("/api/warehouses/list")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/warehouses/1")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/warehouses/1/products")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/warehouses/1/products/ELEC001")).andExpect(status().isOk());
+
+        assertThat(interceptor.getViolations()).isEmpty();
+    }
+
+    @Test
+    void productReadsStayWithinBudget() throws Exception {
+        mockMvc.perform(get("/api/products")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/products/ELEC001")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/products/search").param("q", "smart").param("warehouseId", "1"))
+                .andExpect(status().isOk());
+
+        assertThat(interceptor.getViolations()).isEmpty();
+    }
+}
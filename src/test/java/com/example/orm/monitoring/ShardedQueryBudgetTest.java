@@ -0,0 +1,77 @@
+package com.example.orm.monitoring;
+
+import com.example.orm.model.DataWarehouse;
+import com.example.orm.service.DataWarehouseService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The budgeted listing with two shards: statements run on the scatter threads are counted for the
+ * request, and the budget is held per shard.
+ */
+@SpringBootTest(properties = {
+        "app.datasource.sharding.enabled=true",
+        "spring.datasource.url=" + ShardedQueryBudgetTest.SHARD_0_URL,
+        "app.datasource.shards[0].jdbc-url=" + ShardedQueryBudgetTest.SHARD_1_URL,
+        "spring.sql.init.mode=never",
+})
+@AutoConfigureMockMvc
+class ShardedQueryBudgetTest {
+
+    static final String SHARD_0_URL = "jdbc:h2:mem:budget0;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    static final String SHARD_1_URL = "jdbc:h2:mem:budget1;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private QueryBudgetInterceptor interceptor;
+
+    @Autowired
+    private DataWarehouseService warehouseService;
+
+    @BeforeAll
+    static void createShards() {
+        for (String url : List.of(SHARD_0_URL, SHARD_1_URL)) {
+            new ResourceDatabasePopulator(new ClassPathResource("schema.sql"))
+                    .execute(new DriverManagerDataSource(url, "sa", ""));
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        interceptor.getViolations().clear();
+    }
+
+    @Test
+    void scatteredStatementsCountTowardTheRequest() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            DataWarehouse warehouse = new DataWarehouse();
+            warehouse.setWarehouseName("Budget " + i);
+            warehouse.setWarehouseCity("Budget City");
+            warehouseService.createWarehouse(warehouse);
+        }
+
+        // Page of IDs, then the warehouses with their products: two statements on each shard
+        mockMvc.perform(get("/api/warehouses"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(QueryStatsHeaderAdvice.QUERY_COUNT_HEADER, "4"));
+
+        assertThat(interceptor.getViolations()).isEmpty();
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.orm.search;
+
+import com.example.orm.dto.ProductSearchHitDTO;
+import com.example.orm.model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Exercises matching, ranking and incremental updates without a database; outside a transaction
+ * index writes apply immediately.
+ */
+class ProductSearchIndexTest {
+
+    private ProductSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ProductSearchIndex(null, null, Optional.empty(), 100, false);
+        index.index(product("ELEC001", "Smartphone Samsung Galaxy S24", "Electronics"));
+        index.index(product("ELEC005", "Smart TV 55\" LG OLED", "Electronics"));
+        index.index(product("CLOTH004", "Running Shoes Nike", "Clothing"));
+        index.index(product("CLOTH005", "Dress Shirt Formal", "Clothing"));
+    }
+
+    @Test
+    void ranksExactOverPrefixOverInfix() {
+        index.index(product("HOME009", "Phone Charger", "Home & Garden"));
+        index.index(product("HOME010", "Phonebook Stand", "Home & Garden"));
+
+        assertThat(ids(index.search("phone", null, null, 10)))
+                .containsExactly("HOME009", "HOME010", "ELEC001");
+    }
+
+    @Test
+    void requiresEveryTermAndFiltersByCategory() {
+        assertThat(ids(index.search("smart", null, null, 10))).containsExactly("ELEC005", "ELEC001");
+        assertThat(ids(index.search("smart oled", null, null, 10))).containsExactly("ELEC005");
+        assertThat(ids(index.search("shirt", "clothing", null, 10))).containsExactly("CLOTH005");
+        assertThat(ids(index.search(null, "Clothing", null, 10))).containsExactly("CLOTH004", "CLOTH005");
+        assertThat(ids(index.search("smart", null, Set.of("ELEC001")::contains, 10))).containsExactly("ELEC001");
+        assertThatThrownBy(() -> index.search(" ", null, null, 10)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void appliesUpdatesAndDeletes() {
+        index.index(product("CLOTH004", "Trail Running Shoes", "Sports"));
+        index.remove("CLOTH005");
+
+        assertThat(ids(index.search("trail", null, null, 10))).containsExactly("CLOTH004");
+        assertThat(index.search(null, "Clothing", null, 10)).isEmpty();
+        assertThat(index.search("shirt", null, null, 10)).isEmpty();
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    @Test
+    void resumesAfterTheLastHit() {
+        index.index(product("HOME009", "Phone Charger", "Home & Garden"));
+        index.index(product("HOME010", "Smartphone Stand", "Home & Garden"));
+
+        List<ProductSearchHitDTO> first = index.search("phone", null, null, 2);
+        assertThat(ids(first)).containsExactly("HOME009", "ELEC001");
+        ProductSearchHitDTO last = first.get(1);
+        assertThat(ids(index.search("phone", null, null, last.getScore(), last.getProductID(), 2)))
+                .containsExactly("HOME010");
+
+        index.remove("ELEC001");
+        assertThatThrownBy(() -> index.search("phone", null, null, last.getScore(), last.getProductID(), 2))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static List<String> ids(List<ProductSearchHitDTO> hits) {
+        return hits.stream().map(ProductSearchHitDTO::getProductID).toList();
+    }
+
+    private static Product product(String id, String name, String category) {
+        Product product = new Product();
+        product.setProductID(id);
+        product.setProductName(name);
+        product.setProductCategory(category);
+        return product;
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.orm.service;
+
+import com.example.orm.dto.CursorPageDTO;
+import com.example.orm.dto.WarehouseListItemDTO;
+import com.example.orm.dto.WarehouseWithProductsDTO;
+import com.example.orm.model.DataWarehouse;
+import com.example.orm.model.Product;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class DataWarehouseServiceQueryCountTest {
+
+    private static final int PRODUCTS_PER_WAREHOUSE = 3;
+
+    @Autowired
+    private DataWarehouseService service;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void warehousePageCostsConstantStatementsRegardlessOfSize() throws Exception {
+        long small = statementsForWarehousePage(5);
+        long large = statementsForWarehousePage(40);
+
+        assertThat(small).isEqualTo(2);
+        assertThat(large).isEqualTo(small);
+    }
+
+    @Test
+    void warehouseListPageCostsConstantStatementsRegardlessOfSize() {
+        seed(5);
+        statistics.clear();
+        CursorPageDTO<WarehouseListItemDTO> small = service.getWarehouseListPage(null, 100, null);
+        long smallCount = statistics.getPrepareStatementCount();
+
+        seed(40);
+        statistics.clear();
+        CursorPageDTO<WarehouseListItemDTO> large = service.getWarehouseListPage(null, 100, null);
+        long largeCount = statistics.getPrepareStatementCount();
+
+        assertThat(small.getItems()).hasSize(5);
+        assertThat(large.getItems()).hasSize(40);
+        assertThat(large.getItems().get(0).getProductIds()).hasSize(PRODUCTS_PER_WAREHOUSE);
+        assertThat(largeCount).isEqualTo(smallCount);
+    }
+
+    @Test
+    void newProductsAreInsertedInBatches() {
+        seed(0);
+        WarehouseWithProductsDTO request = new WarehouseWithProductsDTO();
+        request.setWarehouseName("Batch");
+        request.setWarehouseCity("Vienna");
+        List<Product> products = new ArrayList<>();
+        for (int p = 0; p < 20; p++) {
+            products.add(product("New " + p, p));
+        }
+        request.setProducts(products);
+
+        statistics.clear();
+        DataWarehouse saved = service.createWarehouseWithNewProducts(request);
+        entityManager.flush();
+
+        // Warehouse (IDENTITY), one product batch, one link batch
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+        assertThat(saved.getProducts()).allSatisfy(product -> assertThat(product.getProductID()).hasSize(26));
+    }
+
+    private long statementsForWarehousePage(int warehouses) throws Exception {
+        seed(warehouses);
+        statistics.clear();
+        CursorPageDTO<DataWarehouse> page = service.getWarehousePage(null, 100, null);
+        // Serialising touches every products collection, which is where N+1 used to happen
+        objectMapper.writeValueAsString(page);
+        assertThat(page.getItems()).hasSize(warehouses);
+        return statistics.getPrepareStatementCount();
+    }
+
+    private static Product product(String name, int quantity) {
+        Product product = new Product();
+        product.setProductName(name);
+        product.setProductCategory("Test");
+        product.setProductQuantity(quantity);
+        product.setProductUnit("pieces");
+        return product;
+    }
+
+    private void seed(int warehouses) {
+        entityManager.createNativeQuery("DELETE FROM warehouse_products").executeUpdate();
+        entityManager.createQuery("DELETE FROM DataWarehouse").executeUpdate();
+        entityManager.createQuery("DELETE FROM Product").executeUpdate();
+        for (int w = 0; w < warehouses; w++) {
+            List<Product> products = new ArrayList<>();
+            for (int p = 0; p < PRODUCTS_PER_WAREHOUSE; p++) {
+                Product product = product("Product " + w + "-" + p, p);
+                product.setProductID("P-" + w + "-" + p);
+                entityManager.persist(product);
+                products.add(product);
+            }
+            DataWarehouse warehouse = new DataWarehouse();
+            warehouse.setWarehouseName("Warehouse " + w);
+            warehouse.setWarehouseCity("Vienna");
+            warehouse.setProducts(products);
+            entityManager.persist(warehouse);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.orm.service;
+
+import com.example.orm.dto.CursorPageDTO;
+import com.example.orm.dto.WarehouseListItemDTO;
+import com.example.orm.model.DataWarehouse;
+import com.example.orm.model.Product;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@Transactional
+class KeysetPaginationTest {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private DataWarehouseService warehouseService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void seed() {
+        entityManager.createNativeQuery("DELETE FROM warehouse_products").executeUpdate();
+        entityManager.createQuery("DELETE FROM DataWarehouse").executeUpdate();
+        entityManager.createQuery("DELETE FROM Product").executeUpdate();
+        for (int i = 0; i < 10; i++) {
+            Product product = new Product();
+            product.setProductName("Product " + i);
+            product.setProductCategory(i % 3 == 0 ? "Tools" : "Garden");
+            product.setProductQuantity(i);
+            product.setProductUnit("pieces");
+            entityManager.persist(product);
+
+            DataWarehouse warehouse = new DataWarehouse();
+            warehouse.setWarehouseName("Warehouse " + i);
+            warehouse.setWarehouseCity(i % 2 == 0 ? "Vienna" : "Graz");
+            warehouse.setProducts(new ArrayList<>(List.of(product)));
+            entityManager.persist(warehouse);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void productPagesWalkTheCatalogWithAndWithoutCategory() {
+        List<Product> all = productPages(null);
+        assertThat(all).extracting(Product::getProductID)
+                .hasSize(10).isSorted().doesNotHaveDuplicates();
+
+        List<Product> tools = productPages("Tools");
+        assertThat(tools).extracting(Product::getProductName)
+                .containsExactlyInAnyOrder("Product 0", "Product 3", "Product 6", "Product 9");
+        assertThat(tools).extracting(Product::getProductID).isSorted();
+    }
+
+    @Test
+    void warehousePagesWalkAllWarehousesOrOneCity() {
+        List<DataWarehouse> all = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPageDTO<DataWarehouse> page = warehouseService.getWarehousePage(cursor, 4, null);
+            assertThat(page.getItems()).hasSizeLessThanOrEqualTo(4);
+            all.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        assertThat(all).extracting(DataWarehouse::getWarehouseID).hasSize(10).isSorted().doesNotHaveDuplicates();
+
+        List<WarehouseListItemDTO> vienna = new ArrayList<>();
+        cursor = null;
+        do {
+            CursorPageDTO<WarehouseListItemDTO> page = warehouseService.getWarehouseListPage(cursor, 2, "Vienna");
+            vienna.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        assertThat(vienna).hasSize(5).allSatisfy(item -> {
+            assertThat(item.getWarehouseCity()).isEqualTo("Vienna");
+            assertThat(item.getProductIds()).hasSize(1);
+        });
+        assertThat(vienna).extracting(WarehouseListItemDTO::getWarehouseID).isSorted();
+    }
+
+    @Test
+    void lastPageHasNoCursorAndForeignCursorsAreRejected() {
+        CursorPageDTO<Product> page = productService.getProductPage(null, 10, null);
+        assertThat(page.getItems()).hasSize(10);
+        assertThat(page.getNextCursor()).isNull();
+
+        String productCursor = productService.getProductPage(null, 3, null).getNextCursor();
+        assertThatThrownBy(() -> warehouseService.getWarehousePage(productCursor, 3, null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> productService.getProductPage("not a cursor!", 3, null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private List<Product> productPages(String category) {
+        List<Product> products = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPageDTO<Product> page = productService.getProductPage(cursor, 3, category);
+            products.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return products;
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.orm.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {"app.stock.flush-interval=PT1H", "app.stock.max-flush-attempts=2"})
+class StockAdjustmentBufferTest {
+
+    @Autowired
+    private StockAdjustmentBuffer buffer;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM product WHERE product_id LIKE 'STOCK-%'");
+        jdbcTemplate.update("INSERT INTO product (product_id, product_name, product_quantity) VALUES ('STOCK-1', 'Stock test', 100)");
+    }
+
+    @Test
+    void oneFailingProductDoesNotHoldBackTheOthers() {
+        // The buffered delta fits an INTEGER, the resulting quantity does not
+        jdbcTemplate.update("INSERT INTO product (product_id, product_name, product_quantity) VALUES ('STOCK-2', 'Stock full', ?)",
+                Integer.MAX_VALUE - 10);
+        buffer.add("STOCK-1", 5);
+        buffer.add("STOCK-2", 100);
+
+        buffer.flush();
+
+        assertThat(quantity("STOCK-1")).isEqualTo(105);
+        assertThat(quantity("STOCK-2")).isEqualTo(Integer.MAX_VALUE - 10);
+        assertThat(buffer.buffered("STOCK-2")).isEqualTo(100);
+
+        buffer.flush();
+
+        assertThat(buffer.pendingProducts()).isZero();
+        assertThat(meterRegistry.get("stock.buffer.dropped").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsBufferedSumsOutsideTheIntegerRange() {
+        buffer.add("STOCK-1", Integer.MAX_VALUE);
+        assertThatThrownBy(() -> buffer.add("STOCK-1", 1)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(buffer.buffered("STOCK-1")).isEqualTo(Integer.MAX_VALUE);
+        buffer.add("STOCK-1", -Integer.MAX_VALUE);
+        buffer.flush();
+        assertThat(quantity("STOCK-1")).isEqualTo(100);
+    }
+
+    @Test
+    void concurrentDeltasAreCoalescedWithoutLosingUpdates() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        buffer.add("STOCK-1", i % 2 == 0 ? 2 : -1);
+                        if (i % 250 == 0) {
+                            buffer.flush();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        buffer.flush();
+
+        // 8 threads x 500 x (+2 - 1)
+        assertThat(quantity("STOCK-1")).isEqualTo(100 + 8 * 500);
+        assertThat(buffer.pendingProducts()).isZero();
+    }
+
+    private int quantity(String productId) {
+        return jdbcTemplate.queryForObject("SELECT product_quantity FROM product WHERE product_id = ?", Integer.class, productId);
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.orm.snapshot;
+
+import com.example.orm.dto.StockAdjustmentDTO;
+import com.example.orm.dto.WarehouseSummaryDTO;
+import com.example.orm.index.CatalogHandler;
+import com.example.orm.index.CatalogIndexes;
+import com.example.orm.membership.WarehouseMembershipIndex;
+import com.example.orm.model.DataWarehouse;
+import com.example.orm.model.Product;
+import com.example.orm.search.ProductSearchIndex;
+import com.example.orm.service.DataWarehouseService;
+import com.example.orm.service.ProductService;
+import com.example.orm.service.StockAdjustmentBuffer;
+import com.example.orm.summary.InventorySummaryIndex;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Indexes loaded from the snapshot plus the catch-up must match a fresh scan of the database.
+ */
+@SpringBootTest(properties = {
+        "app.snapshot.enabled=true",
+        "app.snapshot.interval=PT1H",
+        "spring.datasource.url=jdbc:h2:mem:snapshot;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+})
+class CatalogSnapshotStoreTest {
+
+    @TempDir
+    static Path directory;
+
+    @Autowired
+    private CatalogSnapshotStore store;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private DataWarehouseService warehouseService;
+
+    @Autowired
+    private WarehouseMembershipIndex membershipIndex;
+
+    @Autowired
+    private ProductSearchIndex searchIndex;
+
+    @Autowired
+    private InventorySummaryIndex summaryIndex;
+
+    @Autowired
+    private CatalogIndexes indexes;
+
+    @Autowired
+    private StockAdjustmentBuffer stockBuffer;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @DynamicPropertySource
+    static void snapshotPath(DynamicPropertyRegistry registry) {
+        registry.add("app.snapshot.path", () -> directory.resolve("catalog.snapshot").toString());
+    }
+
+    @Test
+    void catchesUpWithChangesSinceTheSnapshot() throws Exception {
+        Path file = directory.resolve("catalog.snapshot");
+        CatalogSnapshot written = CatalogSnapshot.open(file);
+        assertThat(written.productCount()).isEqualTo(count("SELECT COUNT(*) FROM product"));
+        assertThat(written.linkCount()).isEqualTo(count("SELECT COUNT(*) FROM warehouse_products"));
+        List<String> productIds = jdbcTemplate.queryForList("SELECT product_id FROM product ORDER BY product_id", String.class);
+
+        Product added = productService.addProduct(product("Snapshot lantern", "Outdoor", 4));
+        Product renamed = productService.getProductById(productIds.get(0));
+        renamed.setProductName("Snapshot renamed kettle");
+        productService.updateProduct(renamed);
+        String deleted = productIds.get(1);
+        productService.deleteProduct(deleted);
+        StockAdjustmentDTO adjustment = new StockAdjustmentDTO();
+        adjustment.setDelta(5);
+        productService.adjustStock(productIds.get(2), adjustment);
+        stockBuffer.flush();
+        Long warehouseId = warehouseService.createWarehouse(warehouse("Snapshot depot")).getWarehouseID();
+        warehouseService.linkProducts(warehouseId, List.of(added.getProductID(), renamed.getProductID()));
+
+        summaryIndex.rebuild();
+        List<WarehouseSummaryDTO> fromDatabase = summaryIndex.summaries(0, 1000);
+        AtomicInteger catchUps = new AtomicInteger();
+        indexes.rebuild((handler, withLinks) -> {
+            catchUps.incrementAndGet();
+            store.scan(handler, withLinks);
+        });
+
+        assertThat(catchUps).hasValue(1);
+
+        assertThat(summaryIndex.summaries(0, 1000)).usingRecursiveComparison().isEqualTo(fromDatabase);
+        assertThat(membershipIndex.warehousesOf(added.getProductID())).containsExactly(warehouseId);
+        assertThat(membershipIndex.warehousesOf(deleted)).isEmpty();
+        assertThat(membershipIndex.stats().getLinks()).isEqualTo(count("SELECT COUNT(*) FROM warehouse_products"));
+        assertThat(searchIndex.search("renamed kettle", null, id -> true, 10)).hasSize(1);
+        assertThat(searchIndex.size()).isEqualTo(count("SELECT COUNT(*) FROM product"));
+        // Caught up, not replaced by a full load
+        assertThat(meterRegistry.find("catalog.snapshot.fallbacks").tag("reason", "stale").counter()).isNull();
+
+        store.refresh();
+        CatalogSnapshot refreshed = CatalogSnapshot.open(file);
+        assertThat(refreshed.highWaterMark()).isAfter(written.highWaterMark());
+        assertThat(refreshed.productCount()).isEqualTo(count("SELECT COUNT(*) FROM product"));
+        assertThat(refreshed.linkCount()).isEqualTo(count("SELECT COUNT(*) FROM warehouse_products"));
+    }
+
+    @Test
+    void replacesAnInvalidFileWithAFullLoad() throws Exception {
+        Path file = directory.resolve("corrupt.snapshot");
+        Files.copy(directory.resolve("catalog.snapshot"), file);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 0x10;
+        Files.write(file, bytes);
+        assertThatThrownBy(() -> CatalogSnapshot.open(file))
+                .isInstanceOf(InvalidSnapshotException.class)
+                .hasMessageContaining("checksum");
+
+        CatalogSnapshotStore fresh = new CatalogSnapshotStore(jdbcTemplate, transactionManager, file.toString(),
+                Duration.ofMinutes(1), 100);
+        List<String> productIds = new ArrayList<>();
+        fresh.scan(new CatalogHandler() {
+            @Override
+            public void product(String productId, String name, String category, String unit, int quantity, long version) {
+                productIds.add(productId);
+            }
+        }, false);
+
+        assertThat(productIds).containsExactlyElementsOf(
+                jdbcTemplate.queryForList("SELECT product_id FROM product ORDER BY product_id", String.class));
+        assertThat(CatalogSnapshot.open(file).productCount()).isEqualTo(productIds.size());
+
+        ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(file));
+        header.putInt(4, CatalogSnapshot.FORMAT_VERSION + 1);
+        Files.write(file, header.array());
+        assertThatThrownBy(() -> CatalogSnapshot.open(file))
+                .isInstanceOf(InvalidSnapshotException.class)
+                .hasMessageContaining("Format version");
+    }
+
+    @Test
+    void keepsTheSnapshotInMemoryWhenTheFileCannotBeWritten() throws Exception {
+        // A regular file where the snapshot's directory should be
+        Path blocked = Files.createFile(directory.resolve("blocked"));
+        CatalogSnapshotStore inMemory = new CatalogSnapshotStore(jdbcTemplate, transactionManager,
+                blocked.resolve("catalog.snapshot").toString(), Duration.ofMinutes(1), 100);
+        List<String> expected = jdbcTemplate.queryForList("SELECT product_id FROM product ORDER BY product_id", String.class);
+
+        for (int scan = 0; scan < 2; scan++) {
+            List<String> productIds = new ArrayList<>();
+            inMemory.scan(new CatalogHandler() {
+                @Override
+                public void product(String productId, String name, String category, String unit, int quantity, long version) {
+                    productIds.add(productId);
+                }
+            }, false);
+            assertThat(productIds).containsExactlyElementsOf(expected);
+            assertThat(inMemory.sizeInBytes()).isPositive();
+        }
+        assertThat(Files.isRegularFile(blocked)).isTrue();
+    }
+
+    private long count(String sql) {
+        return jdbcTemplate.queryForObject(sql, Long.class);
+    }
+
+    private static Product product(String name, String category, int quantity) {
+        Product product = new Product();
+        product.setProductName(name);
+        product.setProductCategory(category);
+        product.setProductQuantity(quantity);
+        product.setProductUnit("pieces");
+        return product;
+    }
+
+    private static DataWarehouse warehouse(String name) {
+        DataWarehouse warehouse = new DataWarehouse();
+        warehouse.setWarehouseName(name);
+        warehouse.setWarehouseCity("Snapshot City");
+        return warehouse;
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.orm.summary;
+
+import com.example.orm.dto.CategorySummaryDTO;
+import com.example.orm.dto.WarehouseSummaryDTO;
+import com.example.orm.model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Incremental maintenance of the summaries without a database; outside a transaction writes apply immediately.
+ */
+class InventorySummaryIndexTest {
+
+    private InventorySummaryIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new InventorySummaryIndex(null, null, Optional.empty(), 100, false);
+        index.putProduct(product("P1", "Tools", "pcs", 10));
+        index.putProduct(product("P2", "Tools", "pcs", 5));
+        index.putProduct(product("P3", "Paint", "l", 20));
+        index.link(1L, List.of("P1", "P2", "P3"));
+        index.link(2L, List.of("P2", "UNKNOWN"));
+    }
+
+    @Test
+    void totalsByCategoryAndUnit() {
+        WarehouseSummaryDTO first = index.summary(1L).orElseThrow();
+        assertThat(first.getProductCount()).isEqualTo(3);
+        assertThat(first.getCategories()).containsExactly(
+                new CategorySummaryDTO("Paint", "l", 1, 20),
+                new CategorySummaryDTO("Tools", "pcs", 2, 15));
+        assertThat(index.summary(2L).orElseThrow().getCategories())
+                .containsExactly(new CategorySummaryDTO("Tools", "pcs", 1, 5));
+        assertThat(index.summary(3L)).isEmpty();
+    }
+
+    @Test
+    void appliesProductChangesToEveryWarehouse() {
+        index.putProduct(product("P2", "Paint", "l", 7));
+        index.setQuantity("P2", 10, 1);
+        index.link(1L, List.of("P2"));
+
+        assertThat(index.summary(1L).orElseThrow().getCategories()).containsExactly(
+                new CategorySummaryDTO("Paint", "l", 2, 30),
+                new CategorySummaryDTO("Tools", "pcs", 1, 10));
+        assertThat(index.summary(2L).orElseThrow().getCategories())
+                .containsExactly(new CategorySummaryDTO("Paint", "l", 1, 10));
+    }
+
+    @Test
+    void appliesUnlinksAndDeletes() {
+        index.unlink(1L, List.of("P1"));
+        index.removeProduct("P2");
+        index.removeWarehouse(2L);
+
+        WarehouseSummaryDTO first = index.summary(1L).orElseThrow();
+        assertThat(first.getProductCount()).isEqualTo(1);
+        assertThat(first.getCategories()).containsExactly(new CategorySummaryDTO("Paint", "l", 1, 20));
+        assertThat(index.summary(2L)).isEmpty();
+        assertThat(index.summaries(0, 10)).extracting(WarehouseSummaryDTO::getWarehouseID).containsExactly(1L);
+        assertThat(index.stats().getLinks()).isEqualTo(1);
+    }
+
+    @Test
+    void writesDuringARebuildAreCountedOnce() {
+        index.rebuild((handler, withLinks) -> {
+            handler.product("P1", "P1", "Tools", "pcs", 10, 0);
+            // A stock flush the scan already sees, then one it read too early for
+            index.setQuantity("P2", 8, 1);
+            handler.product("P2", "P2", "Tools", "pcs", 8, 1);
+            handler.product("P3", "P3", "Paint", "l", 20, 0);
+            index.setQuantity("P3", 25, 1);
+            handler.warehouse(1L, 0);
+            handler.warehouse(2L, 0);
+            List.of("P1", "P2", "P3").forEach(id -> handler.link(1L, id));
+            handler.link(2L, "P2");
+        });
+
+        assertThat(index.summary(1L).orElseThrow().getCategories()).containsExactly(
+                new CategorySummaryDTO("Paint", "l", 1, 25),
+                new CategorySummaryDTO("Tools", "pcs", 2, 18));
+        assertThat(index.summary(2L).orElseThrow().getCategories())
+                .containsExactly(new CategorySummaryDTO("Tools", "pcs", 1, 8));
+    }
+
+    @Test
+    void ignoresWritesOlderThanTheIndexedRow() {
+        index.setQuantity("P1", 12, 2);
+        index.setQuantity("P1", 11, 1);
+
+        assertThat(index.summary(1L).orElseThrow().getCategories())
+                .contains(new CategorySummaryDTO("Tools", "pcs", 2, 17));
+    }
+
+    private static Product product(String id, String category, String unit, int quantity) {
+        Product product = new Product();
+        product.setProductID(id);
+        product.setProductCategory(category);
+        product.setProductUnit(unit);
+        product.setProductQuantity(quantity);
+        return product;
+    }
+}